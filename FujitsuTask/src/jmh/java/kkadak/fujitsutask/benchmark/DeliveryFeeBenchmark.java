@@ -0,0 +1,127 @@
+package kkadak.fujitsutask.benchmark;
+
+import kkadak.fujitsutask.cache.FeeMatrixCache;
+import kkadak.fujitsutask.cache.FeeRuleCache;
+import kkadak.fujitsutask.cache.WeatherDataCache;
+import kkadak.fujitsutask.enums.City;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
+import kkadak.fujitsutask.model.BaseFeeRule;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.repository.BaseFeeRuleRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
+import kkadak.fujitsutask.repository.RulesVersionRepository;
+import kkadak.fujitsutask.repository.WeatherDataRepository;
+import kkadak.fujitsutask.store.JpaWeatherDataStore;
+import kkadak.fujitsutask.service.DeliveryServiceImpl;
+import kkadak.fujitsutask.translators.WeatherStationTranslator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmarks of current and timestamped delivery fee quotes through
+ * {@link kkadak.fujitsutask.service.DeliveryServiceImpl}
+ * <p>
+ * The repositories are mocked and only read while the caches are built during setup, so the measured path is the
+ * in-memory calculation. The "default" rule set holds the rules of
+ * {@link kkadak.fujitsutask.initializers.FeeRuleInitializer#InitializeDefaultRules()}, the "large" one adds synthetic
+ * rules and a long rule history
+ */
+@State(Scope.Benchmark)
+public class DeliveryFeeBenchmark {
+
+    /**
+     * Size of the rule set
+     */
+    @Param({"default", "large"})
+    public String ruleSet;
+
+    /**
+     * Amount of precalculated query timestamps
+     */
+    private static final int QUERY_COUNT = 1 << 12;
+
+    private DeliveryServiceImpl deliveryService;
+    private long[] timestamps;
+    private int cursor;
+
+    /**
+     * Builds the rule set and weather data history and warms up the caches
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean large = ruleSet.equals("large");
+        List<BaseFeeRule> baseFeeRules = FeeRuleFixtures.baseFeeRules(large ? 200 : 1);
+        List<ExtraFeeRule> extraFeeRules = FeeRuleFixtures.extraFeeRules(large ? 500 : 0, large ? 50 : 0);
+
+        BaseFeeRuleRepository baseFeeRuleRepository = mock(BaseFeeRuleRepository.class);
+        ExtraFeeRuleRepository extraFeeRuleRepository = mock(ExtraFeeRuleRepository.class);
+        WeatherDataRepository weatherDataRepository = mock(WeatherDataRepository.class);
+        when(baseFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(baseFeeRules);
+        when(extraFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(extraFeeRules);
+        for (int stationWmo : WeatherStationTranslator.getStationWmosToFetch())
+            when(weatherDataRepository.findByStationWmoOrderByTimestampAsc(stationWmo))
+                    .thenReturn(FeeRuleFixtures.weatherData(stationWmo, stationWmo));
+
+        FeeRuleCache feeRuleCache = new FeeRuleCache(baseFeeRuleRepository, extraFeeRuleRepository,
+                mock(ExtraFeeRuleHistoryRepository.class), mock(RulesVersionRepository.class),
+                mock(PlatformTransactionManager.class));
+        WeatherDataCache weatherDataCache = new WeatherDataCache(new JpaWeatherDataStore(weatherDataRepository));
+        FeeMatrixCache feeMatrixCache = new FeeMatrixCache(feeRuleCache, weatherDataCache);
+        deliveryService = new DeliveryServiceImpl(feeMatrixCache, feeRuleCache, weatherDataCache);
+        feeMatrixCache.getMatrix();
+        timestamps = FeeRuleFixtures.timestamps(QUERY_COUNT, 42);
+    }
+
+    /**
+     * Quotes the current fee, cycling through every city and vehicle type pair
+     *
+     * @param blackhole consumer of the results
+     */
+    @Benchmark
+    public void currentQuote(Blackhole blackhole) {
+        int index = cursor++ & Integer.MAX_VALUE;
+        quote(blackhole, FeeRuleFixtures.CITIES[index % 3], FeeRuleFixtures.VEHICLE_TYPES[index / 3 % 3], null);
+    }
+
+    /**
+     * Quotes the fee at a random time of the history, cycling through every city and vehicle type pair
+     *
+     * @param blackhole consumer of the results
+     */
+    @Benchmark
+    public void timestampedQuote(Blackhole blackhole) {
+        int index = cursor++ & Integer.MAX_VALUE;
+        quote(blackhole, FeeRuleFixtures.CITIES[index % 3], FeeRuleFixtures.VEHICLE_TYPES[index / 3 % 3],
+                timestamps[index & (QUERY_COUNT - 1)]);
+    }
+
+    /**
+     * Quotes a single fee, consuming either the fee or the error message
+     *
+     * @param blackhole   consumer of the results
+     * @param city        city of the delivery
+     * @param vehicleType vehicle used for the delivery
+     * @param timestamp   time of the quote, null for the current fee
+     */
+    private void quote(Blackhole blackhole, City city, VehicleType vehicleType, Long timestamp) {
+        try {
+            blackhole.consume(timestamp == null ? deliveryService.getDeliveryFee(city, vehicleType)
+                    : deliveryService.getDeliveryFee(city, vehicleType, timestamp));
+        } catch (DeliveryFeeCalculationException e) {
+            blackhole.consume(e.getMessage());
+        }
+    }
+}
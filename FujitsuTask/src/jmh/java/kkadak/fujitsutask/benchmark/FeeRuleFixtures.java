@@ -0,0 +1,198 @@
+package kkadak.fujitsutask.benchmark;
+
+import kkadak.fujitsutask.enums.City;
+import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
+import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.initializers.FeeRuleInitializer;
+import kkadak.fujitsutask.model.BaseFeeRule;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.repository.BaseFeeRuleRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
+import kkadak.fujitsutask.repository.RulesVersionRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Builds rule sets and weather data histories for the benchmarks
+ * <p>
+ * Default rules are the ones saved by
+ * {@link kkadak.fujitsutask.initializers.FeeRuleInitializer#InitializeDefaultRules()}
+ * <p>
+ * All data lies within {@link #HISTORY_LENGTH} seconds from {@link #HISTORY_START}
+ */
+public class FeeRuleFixtures {
+
+    /**
+     * Start of the generated history in seconds past UTC epoch
+     */
+    public static final long HISTORY_START = 1_704_067_200L;
+
+    /**
+     * Length of the generated history in seconds, one year
+     */
+    public static final long HISTORY_LENGTH = 365L * 24 * 3600;
+
+    /**
+     * Cities for which fees are requested
+     */
+    public static final City[] CITIES = {City.TALLINN, City.TARTU, City.PARNU};
+
+    /**
+     * Vehicle types for which fees are requested
+     */
+    public static final VehicleType[] VEHICLE_TYPES = {VehicleType.CAR, VehicleType.SCOOTER, VehicleType.BIKE};
+
+    /**
+     * Phenomenons used for the generated weather data, a mix of rule matches and non-matches
+     */
+    private static final String[] PHENOMENONS = {"", "Clear", "Few clouds", "Overcast", "Light rain", "Moderate rain",
+            "Light snow shower", "Mist", "Heavy shower", "Variable clouds"};
+
+    /**
+     * Returns the default base fee rules, each redefined the specified amount of times over the history, in
+     * descending order of creation
+     *
+     * @param versions amount of versions of every city and vehicle type pair
+     * @return List of base fee rules in descending order of creation
+     */
+    public static List<BaseFeeRule> baseFeeRules(int versions) {
+        List<BaseFeeRule> defaults = captureDefaultRules().baseFeeRules;
+        List<BaseFeeRule> rules = new ArrayList<>();
+        long id = 0;
+
+        for (int version = 0; version < versions; version++) {
+            long validFrom = HISTORY_START + HISTORY_LENGTH * version / versions;
+            for (BaseFeeRule rule : defaults) {
+                BaseFeeRule copy = new BaseFeeRule(rule.getCity(), rule.getVehicleType(),
+                        rule.getFeeAmount() + version % 3 * 0.5);
+                copy.setId(++id);
+                copy.setValidFromTimestamp(validFrom);
+                rules.add(0, copy);
+            }
+        }
+
+        return rules;
+    }
+
+    /**
+     * Returns the default extra fee rules valid over the whole history together with synthetic rules
+     * <p>
+     * Every synthetic phenomenon rule and air temperature threshold is valid for a part of the history only, so the
+     * amount of rules valid at any time stays roughly the specified one
+     *
+     * @param syntheticRules amount of synthetic rules per vehicle type valid at any time
+     * @param versions       amount of times the synthetic rules are replaced over the history
+     * @return List of extra fee rules
+     */
+    public static List<ExtraFeeRule> extraFeeRules(int syntheticRules, int versions) {
+        List<ExtraFeeRule> rules = new ArrayList<>(captureDefaultRules().extraFeeRules);
+        long id = 0;
+        for (ExtraFeeRule rule : rules) {
+            rule.setId(++id);
+            rule.setValidFromTimestamp(HISTORY_START);
+        }
+
+        for (int version = 0; version < versions; version++) {
+            long validFrom = HISTORY_START + HISTORY_LENGTH * version / versions;
+            Long validUntil = version == versions - 1 ? null
+                    : HISTORY_START + HISTORY_LENGTH * (version + 1) / versions;
+
+            for (VehicleType vehicleType : VEHICLE_TYPES) {
+                for (int i = 0; i < syntheticRules; i++) {
+                    ExtraFeeRule rule = i % 2 == 0
+                            ? new ExtraFeeRule(String.format("Synthetic phenomenon %d-%d", version, i), vehicleType,
+                                    0.1)
+                            : new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.UNTIL,
+                                    -20.0 - i - version * 0.001, vehicleType, 0.1);
+                    rule.setId(++id);
+                    rule.setValidFromTimestamp(validFrom);
+                    rule.setValidUntilTimestamp(validUntil);
+                    rules.add(rule);
+                }
+            }
+        }
+
+        return rules;
+    }
+
+    /**
+     * Returns hourly weather data of the specified station over the whole history
+     *
+     * @param stationWmo WMO code of the station
+     * @param seed       seed of the generated values
+     * @return List of weather data in ascending order of measurement
+     */
+    public static List<WeatherData> weatherData(int stationWmo, long seed) {
+        Random random = new Random(seed);
+        List<WeatherData> data = new ArrayList<>();
+
+        for (long timestamp = HISTORY_START; timestamp < HISTORY_START + HISTORY_LENGTH; timestamp += 3600) {
+            // Wind speed stays below the forbidding threshold to keep exceptions out of the measured path
+            data.add(new WeatherData(stationWmo, "Station " + stationWmo, random.nextDouble() * 40 - 20,
+                    random.nextDouble() * 19, PHENOMENONS[random.nextInt(PHENOMENONS.length)], timestamp));
+        }
+
+        return data;
+    }
+
+    /**
+     * Returns random timestamps within the history
+     *
+     * @param count amount of timestamps
+     * @param seed  seed of the generated values
+     * @return array of timestamps in seconds past UTC epoch
+     */
+    public static long[] timestamps(int count, long seed) {
+        Random random = new Random(seed);
+        long[] timestamps = new long[count];
+        for (int i = 0; i < count; i++)
+            timestamps[i] = HISTORY_START + 3600 + (long) (random.nextDouble() * (HISTORY_LENGTH - 3600));
+        return timestamps;
+    }
+
+    /**
+     * Runs {@link kkadak.fujitsutask.initializers.FeeRuleInitializer#InitializeDefaultRules()} against mocked
+     * repositories and captures the rules it saves
+     *
+     * @return the captured default rules
+     */
+    @SuppressWarnings("unchecked")
+    private static DefaultRules captureDefaultRules() {
+        BaseFeeRuleRepository baseFeeRuleRepository = mock(BaseFeeRuleRepository.class);
+        ExtraFeeRuleRepository extraFeeRuleRepository = mock(ExtraFeeRuleRepository.class);
+        DefaultRules defaultRules = new DefaultRules();
+
+        when(baseFeeRuleRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            defaultRules.baseFeeRules.addAll(invocation.getArgument(0, List.class));
+            return invocation.getArgument(0);
+        });
+        when(extraFeeRuleRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            defaultRules.extraFeeRules.addAll(invocation.getArgument(0, List.class));
+            return invocation.getArgument(0);
+        });
+
+        new FeeRuleInitializer(baseFeeRuleRepository, extraFeeRuleRepository,
+                mock(ExtraFeeRuleHistoryRepository.class), mock(RulesVersionRepository.class),
+                mock(ApplicationEventPublisher.class), mock(PlatformTransactionManager.class)).InitializeDefaultRules();
+        return defaultRules;
+    }
+
+    /**
+     * Rules saved by {@link kkadak.fujitsutask.initializers.FeeRuleInitializer#InitializeDefaultRules()}
+     */
+    private static class DefaultRules {
+        private final List<BaseFeeRule> baseFeeRules = new ArrayList<>();
+        private final List<ExtraFeeRule> extraFeeRules = new ArrayList<>();
+    }
+}
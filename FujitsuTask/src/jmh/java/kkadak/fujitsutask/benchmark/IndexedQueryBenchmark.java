@@ -0,0 +1,219 @@
+package kkadak.fujitsutask.benchmark;
+
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+/**
+ * Benchmarks of the historical lookup queries of the repositories against a file database migrated with the
+ * application's Flyway migrations
+ * <p>
+ * The databases are generated under build/benchmark-db on first use and reused afterwards, the queries are the SQL
+ * Hibernate generates for {@link kkadak.fujitsutask.repository.WeatherDataRepository},
+ * {@link kkadak.fujitsutask.repository.BaseFeeRuleRepository} and
+ * {@link kkadak.fujitsutask.repository.ExtraFeeRuleRepository}. With the indexes in place the latency should stay
+ * flat as the amount of observations grows
+ */
+@State(Scope.Benchmark)
+public class IndexedQueryBenchmark {
+
+    /**
+     * Amount of WeatherData rows
+     */
+    @Param({"100000", "1000000", "10000000"})
+    public int rows;
+
+    /**
+     * Amount of stations the observations are spread over
+     */
+    private static final int STATIONS = 100;
+
+    /**
+     * Amount of rows in each of the fee rule tables, independent of the amount of observations
+     */
+    private static final int RULES = 10_000;
+
+    /**
+     * Amount of precalculated query timestamps
+     */
+    private static final int QUERY_COUNT = 1 << 12;
+
+    private Connection connection;
+    private PreparedStatement latestObservation;
+    private PreparedStatement latestBaseFeeRule;
+    private PreparedStatement validExtraFeeRules;
+    private PreparedStatement disabledExtraFeeRules;
+    private long[] timestamps;
+    private int cursor;
+
+    /**
+     * Migrates and, in case needed, fills the database
+     *
+     * @throws SQLException in case of a database error
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        String url = "jdbc:h2:file:" + Path.of("build", "benchmark-db", "rows-" + rows).toAbsolutePath();
+        Flyway.configure().dataSource(url, "sa", "").load().migrate();
+        connection = DriverManager.getConnection(url, "sa", "");
+        fill();
+
+        latestObservation = connection.prepareStatement("select * from weather_data"
+                + " where station_wmo = ? and timestamp <= ?"
+                + " order by station_wmo, timestamp desc fetch first 1 rows only");
+        latestBaseFeeRule = connection.prepareStatement("select * from base_fee_rule"
+                + " where city = ? and vehicle_type = ? and valid_from_timestamp <= ?"
+                + " order by city, vehicle_type, valid_from_timestamp desc fetch first 1 rows only");
+        validExtraFeeRules = connection.prepareStatement("select * from extra_fee_rule"
+                + " where vehicle_type = ? and valid_from_timestamp <= ?");
+        disabledExtraFeeRules = connection.prepareStatement("select * from extra_fee_rule_history"
+                + " where vehicle_type = ? and valid_until_timestamp > ? and valid_from_timestamp <= ?");
+
+        Random random = new Random(42);
+        long historyLength = (long) rows / STATIONS * 3600;
+        timestamps = new long[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++)
+            timestamps[i] = FeeRuleFixtures.HISTORY_START + (long) (random.nextDouble() * historyLength);
+    }
+
+    /**
+     * Generates hourly observations of {@link #STATIONS} stations and rule histories in case the database is empty
+     *
+     * @throws SQLException in case of a database error
+     */
+    private void fill() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery("select count(*) from weather_data")) {
+                resultSet.next();
+                if (resultSet.getLong(1) >= rows) return;
+            }
+
+            statement.execute("truncate table weather_data");
+            statement.execute("truncate table base_fee_rule");
+            statement.execute("truncate table extra_fee_rule");
+            statement.execute("truncate table extra_fee_rule_history");
+
+            statement.execute("merge into phenomenon (id, name) key (name)"
+                    + " values (next value for phenomenon_seq, 'clear')");
+
+            // Inserted in chunks to keep the transactions small
+            int chunk = 1_000_000;
+            for (int start = 1; start <= rows; start += chunk) {
+                statement.execute(String.format("insert into weather_data"
+                        + " (id, station_wmo, station_name, air_temp, wind_speed, phenomenon_code, timestamp)"
+                        + " select x, 26000 + mod(x, %1$d), 'Station', rand() * 40 - 20, rand() * 20,"
+                        + " (select id from phenomenon where name = 'clear'),"
+                        + " %2$d + (x / %1$d) * 3600"
+                        + " from system_range(%3$d, %4$d)",
+                        STATIONS, FeeRuleFixtures.HISTORY_START, start, Math.min(rows, start + chunk - 1)));
+            }
+
+            long ruleInterval = (long) rows / STATIONS * 3600 / RULES;
+            statement.execute(String.format("insert into base_fee_rule"
+                    + " (id, city, vehicle_type, fee_amount, valid_from_timestamp)"
+                    + " select x, mod(x, 3), mod(x / 3, 3), 3.5, %d + x * %d"
+                    + " from system_range(1, %d)", FeeRuleFixtures.HISTORY_START, ruleInterval, RULES));
+            // Every extra fee rule stays valid for 30 rule changes, the last 30 rules are still valid
+            statement.execute(String.format("insert into extra_fee_rule_history"
+                    + " (id, vehicle_type, metric, value_type, numeric_value, value_str, fee_amount,"
+                    + " valid_from_timestamp, valid_until_timestamp)"
+                    + " select x, mod(x, 3), 0, 0, -x, cast(-x as varchar), 0.5, %1$d + x * %2$d,"
+                    + " %1$d + (x + 30) * %2$d"
+                    + " from system_range(1, %3$d)",
+                    FeeRuleFixtures.HISTORY_START, ruleInterval, RULES - 30));
+            statement.execute(String.format("insert into extra_fee_rule"
+                    + " (id, vehicle_type, metric, value_type, numeric_value, value_str, fee_amount,"
+                    + " valid_from_timestamp)"
+                    + " select x, mod(x, 3), 0, 0, -x, cast(-x as varchar), 0.5, %1$d + x * %2$d"
+                    + " from system_range(%3$d, %4$d)",
+                    FeeRuleFixtures.HISTORY_START, ruleInterval, RULES - 29, RULES));
+        }
+    }
+
+    /**
+     * Closes the database connection
+     *
+     * @throws SQLException in case of a database error
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * Most recent observation of a station at a random time
+     *
+     * @param blackhole consumer of the results
+     * @throws SQLException in case of a database error
+     */
+    @Benchmark
+    public void latestObservation(Blackhole blackhole) throws SQLException {
+        int index = cursor++ & Integer.MAX_VALUE;
+        latestObservation.setInt(1, 26000 + index % STATIONS);
+        latestObservation.setLong(2, timestamps[index & (QUERY_COUNT - 1)]);
+        consume(blackhole, latestObservation);
+    }
+
+    /**
+     * Most recent base fee rule of a city and vehicle type at a random time
+     *
+     * @param blackhole consumer of the results
+     * @throws SQLException in case of a database error
+     */
+    @Benchmark
+    public void latestBaseFeeRule(Blackhole blackhole) throws SQLException {
+        int index = cursor++ & Integer.MAX_VALUE;
+        latestBaseFeeRule.setInt(1, index % 3);
+        latestBaseFeeRule.setInt(2, index / 3 % 3);
+        latestBaseFeeRule.setLong(3, timestamps[index & (QUERY_COUNT - 1)]);
+        consume(blackhole, latestBaseFeeRule);
+    }
+
+    /**
+     * Extra fee rules of a vehicle type valid at a random time, read from both the ExtraFeeRule and the
+     * ExtraFeeRuleHistory table
+     *
+     * @param blackhole consumer of the results
+     * @throws SQLException in case of a database error
+     */
+    @Benchmark
+    public void validExtraFeeRules(Blackhole blackhole) throws SQLException {
+        int index = cursor++ & Integer.MAX_VALUE;
+        long timestamp = timestamps[index & (QUERY_COUNT - 1)];
+        validExtraFeeRules.setInt(1, index % 3);
+        validExtraFeeRules.setLong(2, timestamp);
+        consume(blackhole, validExtraFeeRules);
+        disabledExtraFeeRules.setInt(1, index % 3);
+        disabledExtraFeeRules.setLong(2, timestamp);
+        disabledExtraFeeRules.setLong(3, timestamp);
+        consume(blackhole, disabledExtraFeeRules);
+    }
+
+    /**
+     * Executes a query and consumes the first column of every row
+     *
+     * @param blackhole consumer of the results
+     * @param statement query to execute
+     * @throws SQLException in case of a database error
+     */
+    private static void consume(Blackhole blackhole, PreparedStatement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) blackhole.consume(resultSet.getObject(1));
+        }
+    }
+}
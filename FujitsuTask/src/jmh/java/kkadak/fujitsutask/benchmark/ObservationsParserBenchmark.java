@@ -0,0 +1,112 @@
+package kkadak.fujitsutask.benchmark;
+
+import kkadak.fujitsutask.cron.ObservationsParser;
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.translators.WeatherStationTranslator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks of parsing the observations document with {@link kkadak.fujitsutask.cron.ObservationsParser} against
+ * the DOM based parsing it replaced
+ * <p>
+ * The sample document holds 110 stations like the real feed, the scale parameter repeats its stations to simulate a
+ * larger feed
+ */
+@State(Scope.Benchmark)
+public class ObservationsParserBenchmark {
+
+    /**
+     * Amount of times the stations of the sample document are repeated
+     */
+    @Param({"1", "10"})
+    public int scale;
+
+    private final List<Integer> stationWmos = WeatherStationTranslator.getStationWmosToFetch();
+    private byte[] document;
+
+    /**
+     * Loads the sample document into memory
+     *
+     * @throws IOException in case the sample document cannot be read
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String sample;
+        try (InputStream inputStream = getClass().getResourceAsStream("/observations.xml")) {
+            sample = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        int stationsStart = sample.indexOf("<station>"), stationsEnd = sample.lastIndexOf("</observations>");
+        String stations = sample.substring(stationsStart, stationsEnd);
+        document = (sample.substring(0, stationsStart) + stations.repeat(scale) + sample.substring(stationsEnd))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the document with the streaming parser
+     *
+     * @return parsed weather data
+     * @throws Exception in case of a parsing error
+     */
+    @Benchmark
+    public List<WeatherData> stax() throws Exception {
+        return ObservationsParser.parse(new ByteArrayInputStream(document), stationWmos);
+    }
+
+    /**
+     * Parses the document the way {@link kkadak.fujitsutask.cron.WeatherDataImporter} did before the streaming parser
+     *
+     * @return parsed weather data
+     * @throws Exception in case of a parsing error
+     */
+    @Benchmark
+    public List<WeatherData> dom() throws Exception {
+        List<WeatherData> fetchedData = new ArrayList<>();
+        DocumentBuilder dBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        Document doc = dBuilder.parse(new ByteArrayInputStream(document));
+        doc.getDocumentElement().normalize();
+        long timestamp = Long.parseLong(doc.getDocumentElement().getAttribute("timestamp"));
+        NodeList nList = doc.getElementsByTagName("station");
+
+        for (int i = 0, length = nList.getLength(); i < length; i++) {
+            try {
+                Node nNode = nList.item(i);
+                if (nNode.getNodeType() != Node.ELEMENT_NODE) continue;
+                Element eElement = (Element) nNode;
+                String parsedWmoStr = eElement.getElementsByTagName("wmocode").item(0).getTextContent();
+                if (parsedWmoStr.isEmpty()) continue;
+                Integer parsedWmo = Integer.parseInt(parsedWmoStr);
+                if (!stationWmos.contains(parsedWmo)) continue;
+                fetchedData.add(new WeatherData(Integer.parseInt(eElement.getElementsByTagName("wmocode").item(0)
+                        .getTextContent()),
+                        eElement.getElementsByTagName("name").item(0).getTextContent(),
+                        Double.parseDouble(eElement.getElementsByTagName("airtemperature").item(0)
+                                .getTextContent()),
+                        Double.parseDouble(eElement.getElementsByTagName("windspeed").item(0).getTextContent()),
+                        eElement.getElementsByTagName("phenomenon").item(0).getTextContent(),
+                        timestamp));
+            } catch (Exception ignored) {
+            }
+        }
+
+        return fetchedData;
+    }
+}
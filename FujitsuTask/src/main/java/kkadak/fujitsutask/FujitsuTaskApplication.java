@@ -1,6 +1,9 @@
 package kkadak.fujitsutask;
 
-import kkadak.fujitsutask.cron.WeatherDataImporter;
+import kkadak.fujitsutask.cron.RulesVersionPoller;
+import kkadak.fujitsutask.cron.WeatherDataCompactor;
+import kkadak.fujitsutask.initializers.StartupInitializer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -23,25 +26,40 @@ public class FujitsuTaskApplication {
     }
 
     /**
-     * Bean for TaskScheduler used for scheduling weather data import
+     * Bean for TaskScheduler used for scheduling the startup initialization, weather data import and compaction,
+     * weather import lease renewal and rules version polling
+     * <p>
+     * Has a thread for each job so that a long compaction or startup never delays the import, the renewal or the
+     * polling
      *
      * @return a ThreadPoolTaskScheduler
      * @see kkadak.fujitsutask.cron.WeatherDataImporter
+     * @see kkadak.fujitsutask.cron.WeatherDataCompactor
+     * @see kkadak.fujitsutask.cron.RulesVersionPoller
+     * @see kkadak.fujitsutask.initializers.StartupInitializer
      */
     @Bean
     public ThreadPoolTaskScheduler taskScheduler() {
-        return new ThreadPoolTaskScheduler();
+        ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(5);
+        return taskScheduler;
     }
 
     /**
-     * Runs the weather data fetch once at application startup to ensure existence of relevant weather information
-     * and schedules the method to run according to the cron expression specified in application.properties
+     * Starts the initialization of the caches and the weather data fetch in the background, so that the startup does
+     * not wait for the observations document, and schedules the compaction of the weather data history, when the
+     * WeatherData table is used, and the polling of the rules version
+     *
+     * @see kkadak.fujitsutask.initializers.StartupInitializer
      */
     @Bean
-    public ApplicationRunner initialWeatherDataFetch(WeatherDataImporter weatherDataImporter) {
+    public ApplicationRunner startupTasks(StartupInitializer startupInitializer,
+                                          ObjectProvider<WeatherDataCompactor> weatherDataCompactor,
+                                          RulesVersionPoller rulesVersionPoller) {
         return args -> {
-            weatherDataImporter.fetchAndSave();
-            weatherDataImporter.scheduleFetch();
+            startupInitializer.start();
+            weatherDataCompactor.ifAvailable(WeatherDataCompactor::scheduleCompaction);
+            rulesVersionPoller.schedulePolling();
         };
     }
 }
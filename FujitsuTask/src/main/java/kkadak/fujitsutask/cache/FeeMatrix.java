@@ -0,0 +1,79 @@
+package kkadak.fujitsutask.cache;
+
+import kkadak.fujitsutask.enums.City;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
+
+/**
+ * Immutable matrix of the current delivery fees for every {@link kkadak.fujitsutask.enums.City} and
+ * {@link kkadak.fujitsutask.enums.VehicleType} pair
+ * <p>
+ * Every cell either holds a fee or the error message explaining why the fee could not be calculated
+ *
+ * @see kkadak.fujitsutask.cache.FeeMatrixCache
+ */
+public final class FeeMatrix {
+
+    /**
+     * Version of the {@link kkadak.fujitsutask.cache.FeeRuleSnapshot} the matrix was calculated from
+     */
+    private final long ruleVersion;
+
+    /**
+     * Version of the {@link kkadak.fujitsutask.cache.WeatherDataCache} data the matrix was calculated from
+     */
+    private final long weatherVersion;
+
+    /**
+     * Delivery fees indexed by city and vehicle type ordinals
+     */
+    private final double[][] fees;
+
+    /**
+     * Error messages indexed by city and vehicle type ordinals, null where a fee exists
+     */
+    private final String[][] errors;
+
+    /**
+     * Primary constructor
+     *
+     * @param ruleVersion    version of the rule snapshot the matrix was calculated from
+     * @param weatherVersion version of the weather data the matrix was calculated from
+     * @param fees           delivery fees indexed by city and vehicle type ordinals
+     * @param errors         error messages indexed by city and vehicle type ordinals, null where a fee exists
+     */
+    FeeMatrix(long ruleVersion, long weatherVersion, double[][] fees, String[][] errors) {
+        this.ruleVersion = ruleVersion;
+        this.weatherVersion = weatherVersion;
+        this.fees = fees;
+        this.errors = errors;
+    }
+
+    public long getRuleVersion() {
+        return ruleVersion;
+    }
+
+    public long getWeatherVersion() {
+        return weatherVersion;
+    }
+
+    /**
+     * Returns the current delivery fee for the specified city and vehicle type
+     * <p>
+     * In case the fee could not be calculated throws a
+     * {@link kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException} with the reason
+     *
+     * @param city        the {@link kkadak.fujitsutask.enums.City} for delivery
+     * @param vehicleType the {@link kkadak.fujitsutask.enums.VehicleType} used for the delivery
+     * @return the total delivery fee
+     * @throws DeliveryFeeCalculationException in case the fee could not be calculated
+     */
+    public double getFee(City city, VehicleType vehicleType) throws DeliveryFeeCalculationException {
+        if (city == null || vehicleType == null)
+            throw new DeliveryFeeCalculationException("Use of selected vehicle is not allowed in specified city");
+
+        String error = errors[city.ordinal()][vehicleType.ordinal()];
+        if (error != null) throw new DeliveryFeeCalculationException(error);
+        return fees[city.ordinal()][vehicleType.ordinal()];
+    }
+}
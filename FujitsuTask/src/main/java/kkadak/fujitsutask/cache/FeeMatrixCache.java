@@ -0,0 +1,127 @@
+package kkadak.fujitsutask.cache;
+
+import kkadak.fujitsutask.enums.City;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.events.FeeRulesChangedEvent;
+import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.translators.WeatherStationTranslator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the materialized {@link kkadak.fujitsutask.cache.FeeMatrix} of the current delivery fees
+ * <p>
+ * The matrix is recalculated right after a weather data import ({@link #onWeatherDataSaved(List)}) and after a
+ * committed rule change ({@link #onRulesChanged(FeeRulesChangedEvent)}), it is also recalculated on read in case
+ * either source has changed in between
+ *
+ * @see kkadak.fujitsutask.cache.FeeMatrix
+ */
+@Component
+public class FeeMatrixCache {
+    private final FeeRuleCache feeRuleCache;
+    private final WeatherDataCache weatherDataCache;
+
+    /**
+     * Currently used matrix, null until first calculated
+     */
+    private final AtomicReference<FeeMatrix> matrix = new AtomicReference<>();
+
+    @Autowired
+    public FeeMatrixCache(FeeRuleCache feeRuleCache, WeatherDataCache weatherDataCache) {
+        this.feeRuleCache = feeRuleCache;
+        this.weatherDataCache = weatherDataCache;
+    }
+
+    /**
+     * Returns the current fee matrix, recalculating it in case the rules or the weather data have changed
+     *
+     * @return current {@link kkadak.fujitsutask.cache.FeeMatrix}
+     */
+    public FeeMatrix getMatrix() {
+        FeeMatrix current = matrix.get();
+        if (current == null
+                || current.getRuleVersion() != feeRuleCache.getSnapshot().getVersion()
+                || current.getWeatherVersion() != weatherDataCache.getVersion())
+            return recompute();
+        return current;
+    }
+
+    /**
+     * Recalculates the matrix after a committed change of the fee rules, the rule snapshot has already been rebuilt
+     * by {@link kkadak.fujitsutask.cache.FeeRuleCache} at this point
+     *
+     * @param event the change of the fee rules
+     */
+    @Order(1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRulesChanged(FeeRulesChangedEvent event) {
+        recompute();
+    }
+
+    /**
+     * Merges newly saved weather data into the weather cache and recalculates the matrix
+     *
+     * @param savedData weather data which has been saved to the {@link kkadak.fujitsutask.store.WeatherDataStore}
+     */
+    public void onWeatherDataSaved(List<WeatherData> savedData) {
+        weatherDataCache.update(savedData);
+        recompute();
+    }
+
+    /**
+     * Calculates the fee matrix from the current rule snapshot and weather data and swaps it in place of the
+     * current one
+     *
+     * @return the newly calculated {@link kkadak.fujitsutask.cache.FeeMatrix}
+     */
+    public synchronized FeeMatrix recompute() {
+        long weatherVersion = weatherDataCache.getVersion();
+        FeeRuleSnapshot snapshot = feeRuleCache.getSnapshot();
+        double[][] fees = new double[City.values().length][VehicleType.values().length];
+        String[][] errors = new String[City.values().length][VehicleType.values().length];
+
+        for (City city : City.values()) {
+            for (VehicleType vehicleType : VehicleType.values()) {
+                try {
+                    fees[city.ordinal()][vehicleType.ordinal()] = calculate(snapshot, city, vehicleType);
+                } catch (DeliveryFeeCalculationException e) {
+                    errors[city.ordinal()][vehicleType.ordinal()] = e.getMessage();
+                }
+            }
+        }
+
+        FeeMatrix newMatrix = new FeeMatrix(snapshot.getVersion(), weatherVersion, fees, errors);
+        matrix.set(newMatrix);
+        return newMatrix;
+    }
+
+    /**
+     * Calculates the current delivery fee of a single city and vehicle type pair
+     *
+     * @param snapshot    {@link kkadak.fujitsutask.cache.FeeRuleSnapshot} to calculate with
+     * @param city        the {@link kkadak.fujitsutask.enums.City} for delivery
+     * @param vehicleType the {@link kkadak.fujitsutask.enums.VehicleType} used for the delivery
+     * @return the total delivery fee
+     * @throws DeliveryFeeCalculationException in case the fee cannot be calculated
+     */
+    private double calculate(FeeRuleSnapshot snapshot, City city, VehicleType vehicleType)
+            throws DeliveryFeeCalculationException {
+        Double baseFee = snapshot.getBaseFee(city, vehicleType);
+
+        // Handle vehicle not allowed
+        if (baseFee == null)
+            throw new DeliveryFeeCalculationException("Use of selected vehicle is not allowed in specified city");
+
+        WeatherData weatherData = weatherDataCache.getLatest(WeatherStationTranslator.getWmoOfCity(city));
+        if (weatherData == null) throw new DeliveryFeeCalculationException("No valid weather data recorded");
+
+        return baseFee + snapshot.getCompiledExtraFeeRules(vehicleType).getExtraFee(weatherData);
+    }
+}
@@ -0,0 +1,161 @@
+package kkadak.fujitsutask.cache;
+
+import kkadak.fujitsutask.events.FeeRulesChangedEvent;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.repository.BaseFeeRuleRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
+import kkadak.fujitsutask.repository.RulesVersionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link kkadak.fujitsutask.cache.FeeRuleSnapshot} used for fee calculation
+ * <p>
+ * The snapshot is built on first use and replaced atomically whenever the fee rules change, readers always see either
+ * the old or the new rule set as a whole. The rule tables are read in a single repeatable read transaction, so a
+ * snapshot never mixes the tables before and after a concurrent change
+ * <p>
+ * A change which directly follows the version of the current snapshot is applied incrementally: only the rules saved
+ * and disabled by the change are read and applied with
+ * {@link kkadak.fujitsutask.cache.FeeRuleSnapshot#withChange(long, List, List, List)}. The whole rule history is only
+ * read on first use, by {@link #refresh()} and in case the version has advanced by more than one change
+ *
+ * @see kkadak.fujitsutask.cache.FeeRuleSnapshot
+ */
+@Component
+public class FeeRuleCache {
+    private final BaseFeeRuleRepository baseFeeRuleRepository;
+    private final ExtraFeeRuleRepository extraFeeRuleRepository;
+    private final ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository;
+    private final RulesVersionRepository rulesVersionRepository;
+
+    /**
+     * Reads the rule tables in a separate read-only transaction, also when called after the commit of a rule change
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Currently used snapshot, null until first built
+     */
+    private final AtomicReference<FeeRuleSnapshot> snapshot = new AtomicReference<>();
+
+    /**
+     * Source of snapshot versions
+     */
+    private final AtomicLong versionCounter = new AtomicLong();
+
+    /**
+     * Version of the fee rules in the RulesVersion table the current snapshot was built from
+     */
+    private volatile long ruleVersion;
+
+    @Autowired
+    public FeeRuleCache(BaseFeeRuleRepository baseFeeRuleRepository,
+                        ExtraFeeRuleRepository extraFeeRuleRepository,
+                        ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository,
+                        RulesVersionRepository rulesVersionRepository,
+                        PlatformTransactionManager transactionManager) {
+        this.baseFeeRuleRepository = baseFeeRuleRepository;
+        this.extraFeeRuleRepository = extraFeeRuleRepository;
+        this.extraFeeRuleHistoryRepository = extraFeeRuleHistoryRepository;
+        this.rulesVersionRepository = rulesVersionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Returns the current rule snapshot, building it in case it does not exist yet
+     *
+     * @return current {@link kkadak.fujitsutask.cache.FeeRuleSnapshot}
+     */
+    public FeeRuleSnapshot getSnapshot() {
+        FeeRuleSnapshot current = snapshot.get();
+        return current != null ? current : refresh();
+    }
+
+    /**
+     * Returns the version of the fee rules the current snapshot was built from
+     *
+     * @return version of the fee rules in the RulesVersion table, 0 until the first snapshot is built
+     */
+    public long getRuleVersion() {
+        return ruleVersion;
+    }
+
+    /**
+     * Updates the snapshot after a committed change of the fee rules, unless the snapshot already contains it
+     * <p>
+     * Listens before {@link kkadak.fujitsutask.cache.FeeMatrixCache}, which calculates with the rebuilt snapshot. The
+     * changes made by other instances are published outside any transaction by
+     * {@link kkadak.fujitsutask.cron.RulesVersionPoller}
+     *
+     * @param event the change of the fee rules
+     */
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onRulesChanged(FeeRulesChangedEvent event) {
+        if (event.getVersion() > ruleVersion) update(snapshot.get() != null);
+    }
+
+    /**
+     * Rebuilds the rule snapshot from the whole history of the fee rule tables and swaps it in place of the
+     * current one
+     *
+     * @return the newly built {@link kkadak.fujitsutask.cache.FeeRuleSnapshot}
+     */
+    public synchronized FeeRuleSnapshot refresh() {
+        return update(false);
+    }
+
+    /**
+     * Builds a new rule snapshot and swaps it in place of the current one
+     * <p>
+     * The version of the fee rules is read in the same transaction, so it matches the rules of the snapshot
+     *
+     * @param incremental whether the change following the version of the current snapshot may be applied to it
+     *                    instead of reading the whole history
+     * @return the newly built {@link kkadak.fujitsutask.cache.FeeRuleSnapshot}
+     */
+    private FeeRuleSnapshot update(boolean incremental) {
+        long[] newRuleVersion = new long[1];
+        FeeRuleSnapshot newSnapshot = transactionTemplate.execute(status -> {
+            newRuleVersion[0] = rulesVersionRepository.getVersion();
+
+            // Rules of the single change following the current snapshot are marked with its version
+            FeeRuleSnapshot current = snapshot.get();
+            if (incremental && current != null && newRuleVersion[0] == ruleVersion + 1) {
+                List<ExtraFeeRule> disabledRules = new ArrayList<>();
+                extraFeeRuleHistoryRepository.findByRulesVersion(newRuleVersion[0])
+                        .forEach(rule -> disabledRules.add(rule.toExtraFeeRule()));
+                return current.withChange(versionCounter.incrementAndGet(),
+                        baseFeeRuleRepository.findByRulesVersion(newRuleVersion[0]), disabledRules,
+                        extraFeeRuleRepository.findByRulesVersion(newRuleVersion[0]));
+            }
+
+            // Currently valid and disabled extra fee rules are kept in separate tables
+            List<ExtraFeeRule> extraFeeRules = new ArrayList<>(
+                    extraFeeRuleRepository.findByOrderByValidFromTimestampDesc());
+            extraFeeRuleHistoryRepository.findByOrderByValidFromTimestampDesc()
+                    .forEach(rule -> extraFeeRules.add(rule.toExtraFeeRule()));
+
+            return new FeeRuleSnapshot(versionCounter.incrementAndGet(),
+                    baseFeeRuleRepository.findByOrderByValidFromTimestampDesc(), extraFeeRules);
+        });
+        snapshot.set(newSnapshot);
+        ruleVersion = newRuleVersion[0];
+        return newSnapshot;
+    }
+}
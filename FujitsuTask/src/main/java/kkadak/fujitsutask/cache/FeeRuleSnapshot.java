@@ -0,0 +1,279 @@
+package kkadak.fujitsutask.cache;
+
+import kkadak.fujitsutask.calculation.BaseFeeTimeline;
+import kkadak.fujitsutask.calculation.CompiledExtraFeeRules;
+import kkadak.fujitsutask.calculation.ExtraFeeRuleTimeline;
+import kkadak.fujitsutask.enums.City;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.model.BaseFeeRule;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, versioned view of the fee rules indexed by {@link kkadak.fujitsutask.enums.City} and
+ * {@link kkadak.fujitsutask.enums.VehicleType}
+ * <p>
+ * Holds the currently active rules as well as as-of timelines of the whole rule history for historical fee
+ * calculation. Built by {@link kkadak.fujitsutask.cache.FeeRuleCache} and never modified after creation, a change of
+ * the fee rules is applied with {@link #withChange(long, List, List, List)} which returns a new snapshot
+ *
+ * @see kkadak.fujitsutask.cache.FeeRuleCache
+ */
+public final class FeeRuleSnapshot {
+
+    /**
+     * Version of the snapshot, increases with every rebuild
+     */
+    private final long version;
+
+    /**
+     * Currently valid base fee amounts indexed by city and vehicle type ordinals,
+     * null if the use of the vehicle type in the city is prohibited or no rule exists
+     */
+    private final Double[][] baseFees;
+
+    /**
+     * Base fee rule history indexed by city and vehicle type ordinals
+     */
+    private final BaseFeeTimeline[][] baseFeeTimelines;
+
+    /**
+     * All base fee rules indexed by city ordinal multiplied by the amount of vehicle types plus vehicle type ordinal,
+     * kept for updating {@link #baseFeeTimelines}
+     */
+    private final List<List<BaseFeeRule>> baseFeeRuleHistories;
+
+    /**
+     * Currently valid extra fee rules indexed by vehicle type ordinal
+     */
+    private final List<List<ExtraFeeRule>> extraFeeRules;
+
+    /**
+     * Compiled forms of {@link #extraFeeRules} indexed by vehicle type ordinal
+     */
+    private final CompiledExtraFeeRules[] compiledExtraFeeRules;
+
+    /**
+     * Extra fee rule history indexed by vehicle type ordinal
+     */
+    private final ExtraFeeRuleTimeline[] extraFeeRuleTimelines;
+
+    /**
+     * All extra fee rules, both valid and disabled, indexed by vehicle type ordinal in the order of creation, kept for
+     * updating {@link #extraFeeRuleTimelines}
+     */
+    private final List<List<ExtraFeeRule>> extraFeeRuleHistories;
+
+    /**
+     * Primary constructor
+     *
+     * @param version       version of the snapshot
+     * @param baseFeeRules  all base fee rules in descending order of creation, the first rule for every city and
+     *                      vehicle type pair is the currently valid one
+     * @param extraFeeRules all extra fee rules, both valid and disabled
+     */
+    public FeeRuleSnapshot(long version, List<BaseFeeRule> baseFeeRules, List<ExtraFeeRule> extraFeeRules) {
+        int cityCount = City.values().length, vehicleCount = VehicleType.values().length;
+        this.version = version;
+        this.baseFees = new Double[cityCount][vehicleCount];
+        this.baseFeeTimelines = new BaseFeeTimeline[cityCount][vehicleCount];
+        List<List<BaseFeeRule>> baseFeeRulesByPair = new ArrayList<>();
+        boolean[][] seen = new boolean[cityCount][vehicleCount];
+        for (int i = 0; i < cityCount * vehicleCount; i++) baseFeeRulesByPair.add(new ArrayList<>());
+
+        for (BaseFeeRule rule : baseFeeRules) {
+            if (rule.getCity() == null || rule.getVehicleType() == null) continue;
+            int cityIndex = rule.getCity().ordinal(), vehicleIndex = rule.getVehicleType().ordinal();
+            baseFeeRulesByPair.get(cityIndex * vehicleCount + vehicleIndex).add(rule);
+
+            // Most recent rule overrides any older rules
+            if (seen[cityIndex][vehicleIndex]) continue;
+            seen[cityIndex][vehicleIndex] = true;
+            baseFees[cityIndex][vehicleIndex] = rule.getFeeAmount();
+        }
+
+        for (int i = 0; i < cityCount; i++)
+            for (int j = 0; j < vehicleCount; j++)
+                baseFeeTimelines[i][j] = BaseFeeTimeline.of(baseFeeRulesByPair.get(i * vehicleCount + j));
+        this.baseFeeRuleHistories = new ArrayList<>();
+        baseFeeRulesByPair.forEach(rules -> baseFeeRuleHistories.add(List.copyOf(rules)));
+
+        // Extra fee rules are kept in the order of creation
+        List<ExtraFeeRule> orderedExtraFeeRules = new ArrayList<>(extraFeeRules);
+        orderedExtraFeeRules.sort(Comparator.comparing(ExtraFeeRule::getId,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        List<List<ExtraFeeRule>> rulesByVehicle = new ArrayList<>();
+        this.compiledExtraFeeRules = new CompiledExtraFeeRules[vehicleCount];
+        this.extraFeeRuleTimelines = new ExtraFeeRuleTimeline[vehicleCount];
+        this.extraFeeRuleHistories = new ArrayList<>();
+
+        for (VehicleType vehicleType : VehicleType.values()) {
+            List<ExtraFeeRule> history = orderedExtraFeeRules.stream()
+                    .filter(rule -> rule.getVehicleType() == vehicleType).toList();
+            List<ExtraFeeRule> rules = history.stream()
+                    .filter(rule -> rule.getValidUntilTimestamp() == null).toList();
+            rulesByVehicle.add(rules);
+            extraFeeRuleHistories.add(history);
+            compiledExtraFeeRules[vehicleType.ordinal()] = new CompiledExtraFeeRules(rules);
+            extraFeeRuleTimelines[vehicleType.ordinal()] = ExtraFeeRuleTimeline.of(history);
+        }
+
+        this.extraFeeRules = rulesByVehicle;
+    }
+
+    /**
+     * Copies the rules of the specified snapshot under a new version, only used by
+     * {@link #withChange(long, List, List, List)} before replacing the changed rules
+     *
+     * @param version  version of the snapshot
+     * @param snapshot snapshot whose rules are copied
+     */
+    private FeeRuleSnapshot(long version, FeeRuleSnapshot snapshot) {
+        this.version = version;
+        this.baseFees = new Double[snapshot.baseFees.length][];
+        this.baseFeeTimelines = new BaseFeeTimeline[snapshot.baseFeeTimelines.length][];
+        for (int i = 0; i < baseFees.length; i++) {
+            baseFees[i] = snapshot.baseFees[i].clone();
+            baseFeeTimelines[i] = snapshot.baseFeeTimelines[i].clone();
+        }
+        this.baseFeeRuleHistories = new ArrayList<>(snapshot.baseFeeRuleHistories);
+        this.extraFeeRules = new ArrayList<>(snapshot.extraFeeRules);
+        this.compiledExtraFeeRules = snapshot.compiledExtraFeeRules.clone();
+        this.extraFeeRuleTimelines = snapshot.extraFeeRuleTimelines.clone();
+        this.extraFeeRuleHistories = new ArrayList<>(snapshot.extraFeeRuleHistories);
+    }
+
+    /**
+     * Returns a new snapshot with a single change of the fee rules applied to the rules of this snapshot
+     * <p>
+     * Only the city and vehicle type pairs and the vehicle types touched by the change are rebuilt, the rules of the
+     * change are appended to their timelines, see {@link kkadak.fujitsutask.calculation.BaseFeeTimeline#append} and
+     * {@link kkadak.fujitsutask.calculation.ExtraFeeRuleTimeline#append}
+     *
+     * @param version               version of the new snapshot
+     * @param savedBaseFeeRules     base fee rules saved by the change
+     * @param disabledExtraFeeRules extra fee rules disabled by the change, with their validity end
+     * @param savedExtraFeeRules    extra fee rules saved by the change
+     * @return new {@link kkadak.fujitsutask.cache.FeeRuleSnapshot} with the change applied
+     */
+    public FeeRuleSnapshot withChange(long version, List<BaseFeeRule> savedBaseFeeRules,
+                                      List<ExtraFeeRule> disabledExtraFeeRules, List<ExtraFeeRule> savedExtraFeeRules) {
+        FeeRuleSnapshot changed = new FeeRuleSnapshot(version, this);
+        int vehicleCount = VehicleType.values().length;
+
+        Map<Integer, List<BaseFeeRule>> baseFeeRulesByPair = new HashMap<>();
+        for (BaseFeeRule rule : savedBaseFeeRules) {
+            if (rule.getCity() == null || rule.getVehicleType() == null) continue;
+            baseFeeRulesByPair.computeIfAbsent(rule.getCity().ordinal() * vehicleCount
+                    + rule.getVehicleType().ordinal(), pair -> new ArrayList<>()).add(rule);
+        }
+        baseFeeRulesByPair.forEach((pair, rules) -> {
+            int cityIndex = pair / vehicleCount, vehicleIndex = pair % vehicleCount;
+            List<BaseFeeRule> history = new ArrayList<>(baseFeeRuleHistories.get(pair));
+            history.addAll(rules);
+            BaseFeeTimeline timeline = baseFeeTimelines[cityIndex][vehicleIndex].append(history, rules);
+            changed.baseFeeRuleHistories.set(pair, List.copyOf(history));
+            changed.baseFeeTimelines[cityIndex][vehicleIndex] = timeline;
+
+            // Most recent rule overrides any older rules
+            changed.baseFees[cityIndex][vehicleIndex] = timeline.getFeeAt(Long.MAX_VALUE);
+        });
+
+        Map<VehicleType, List<ExtraFeeRule>> extraFeeRulesByVehicle = new EnumMap<>(VehicleType.class);
+        for (ExtraFeeRule rule : disabledExtraFeeRules)
+            if (rule.getVehicleType() != null)
+                extraFeeRulesByVehicle.computeIfAbsent(rule.getVehicleType(), type -> new ArrayList<>()).add(rule);
+        for (ExtraFeeRule rule : savedExtraFeeRules)
+            if (rule.getVehicleType() != null)
+                extraFeeRulesByVehicle.computeIfAbsent(rule.getVehicleType(), type -> new ArrayList<>()).add(rule);
+        extraFeeRulesByVehicle.forEach((vehicleType, rules) -> {
+            // Disabled rules replace their currently valid versions, extra fee rules are kept in the order of creation
+            int vehicleIndex = vehicleType.ordinal();
+            Set<Long> ids = new HashSet<>();
+            rules.forEach(rule -> ids.add(rule.getId()));
+            List<ExtraFeeRule> history = new ArrayList<>(extraFeeRuleHistories.get(vehicleIndex));
+            history.removeIf(rule -> rule.getId() != null && ids.contains(rule.getId()));
+            history.addAll(rules);
+            history.sort(Comparator.comparing(ExtraFeeRule::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+            List<ExtraFeeRule> valid = history.stream().filter(rule -> rule.getValidUntilTimestamp() == null).toList();
+
+            changed.extraFeeRuleHistories.set(vehicleIndex, List.copyOf(history));
+            changed.extraFeeRules.set(vehicleIndex, valid);
+            changed.compiledExtraFeeRules[vehicleIndex] = new CompiledExtraFeeRules(valid);
+            changed.extraFeeRuleTimelines[vehicleIndex] = extraFeeRuleTimelines[vehicleIndex].append(history, rules);
+        });
+        return changed;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the currently valid base fee amount for the specified city and vehicle type
+     *
+     * @param city        {@link kkadak.fujitsutask.enums.City} of the delivery
+     * @param vehicleType {@link kkadak.fujitsutask.enums.VehicleType} used for the delivery
+     * @return base fee amount, null if the use of the vehicle type in the city is prohibited or no rule exists
+     */
+    public Double getBaseFee(City city, VehicleType vehicleType) {
+        if (city == null || vehicleType == null) return null;
+        return baseFees[city.ordinal()][vehicleType.ordinal()];
+    }
+
+    /**
+     * Returns the base fee amount for the specified city and vehicle type valid at the specified time
+     *
+     * @param city        {@link kkadak.fujitsutask.enums.City} of the delivery
+     * @param vehicleType {@link kkadak.fujitsutask.enums.VehicleType} used for the delivery
+     * @param timestamp   amount of seconds past UTC epoch
+     * @return base fee amount, null if the use of the vehicle type in the city was prohibited or no rule existed
+     */
+    public Double getBaseFeeAt(City city, VehicleType vehicleType, long timestamp) {
+        if (city == null || vehicleType == null) return null;
+        return baseFeeTimelines[city.ordinal()][vehicleType.ordinal()].getFeeAt(timestamp);
+    }
+
+    /**
+     * Returns the currently valid extra fee rules for the specified vehicle type
+     *
+     * @param vehicleType {@link kkadak.fujitsutask.enums.VehicleType} used for the delivery
+     * @return unmodifiable List of currently valid extra fee rules for the specified vehicle type
+     */
+    public List<ExtraFeeRule> getExtraFeeRules(VehicleType vehicleType) {
+        if (vehicleType == null) return Collections.emptyList();
+        return extraFeeRules.get(vehicleType.ordinal());
+    }
+
+    /**
+     * Returns the compiled currently valid extra fee rules for the specified vehicle type
+     *
+     * @param vehicleType {@link kkadak.fujitsutask.enums.VehicleType} used for the delivery
+     * @return {@link kkadak.fujitsutask.calculation.CompiledExtraFeeRules} of the specified vehicle type
+     */
+    public CompiledExtraFeeRules getCompiledExtraFeeRules(VehicleType vehicleType) {
+        if (vehicleType == null) return CompiledExtraFeeRules.EMPTY;
+        return compiledExtraFeeRules[vehicleType.ordinal()];
+    }
+
+    /**
+     * Returns the compiled extra fee rules for the specified vehicle type valid at the specified time
+     *
+     * @param vehicleType {@link kkadak.fujitsutask.enums.VehicleType} used for the delivery
+     * @param timestamp   amount of seconds past UTC epoch
+     * @return {@link kkadak.fujitsutask.calculation.CompiledExtraFeeRules} valid at the specified time
+     */
+    public CompiledExtraFeeRules getCompiledExtraFeeRulesAt(VehicleType vehicleType, long timestamp) {
+        if (vehicleType == null) return CompiledExtraFeeRules.EMPTY;
+        return extraFeeRuleTimelines[vehicleType.ordinal()].getRulesAt(timestamp);
+    }
+}
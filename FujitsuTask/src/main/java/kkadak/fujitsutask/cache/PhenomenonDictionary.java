@@ -0,0 +1,117 @@
+package kkadak.fujitsutask.cache;
+
+import kkadak.fujitsutask.model.Phenomenon;
+import kkadak.fujitsutask.repository.PhenomenonRepository;
+import kkadak.fujitsutask.translators.PhenomenonTranslator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of the normalized weather phenomena and their codes, backed by the Phenomenon table
+ * <p>
+ * The whole table is read on first use and new phenomena are added as they are met, so after the first imports the
+ * lookups never reach the database. The table is only accessed in separate transactions, as the lookups are made by
+ * {@link kkadak.fujitsutask.model.PhenomenonConverter} while Hibernate reads or writes weather data
+ */
+@Component
+public class PhenomenonDictionary {
+    private final PhenomenonRepository phenomenonRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Codes of the normalized phenomena
+     */
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+
+    /**
+     * Normalized phenomena of the codes
+     */
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    @Autowired
+    public PhenomenonDictionary(PhenomenonRepository phenomenonRepository,
+                                PlatformTransactionManager transactionManager) {
+        this.phenomenonRepository = phenomenonRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Returns the code of a phenomenon, adding the phenomenon to the dictionary in case it is not stored yet
+     *
+     * @param phenomenon phenomenon description in any form
+     * @return code of the normalized phenomenon, null if the phenomenon is null
+     */
+    public Integer getCode(String phenomenon) {
+        String name = PhenomenonTranslator.normalize(phenomenon);
+        if (name == null) return null;
+        if (!loaded) load();
+
+        Integer code = codes.get(name);
+        return code != null ? code : add(name);
+    }
+
+    /**
+     * Returns the normalized phenomenon of a code
+     *
+     * @param code code of the phenomenon
+     * @return normalized phenomenon, null if the code is null or unknown
+     */
+    public String getName(Integer code) {
+        if (code == null) return null;
+        if (!loaded) load();
+
+        String name = names.get(code);
+        if (name != null) return name;
+
+        // Added by another instance of the application
+        Phenomenon phenomenon = transactionTemplate.execute(status -> phenomenonRepository.findById(code)
+                .orElse(null));
+        if (phenomenon == null) return null;
+        put(phenomenon);
+        return phenomenon.getName();
+    }
+
+    private synchronized void load() {
+        if (loaded) return;
+        List<Phenomenon> phenomena = transactionTemplate.execute(status -> phenomenonRepository.findAll());
+        if (phenomena != null) phenomena.forEach(this::put);
+        loaded = true;
+    }
+
+    /**
+     * Adds a phenomenon to the Phenomenon table, in case another instance of the application has added it in the
+     * meantime, its code is read instead
+     *
+     * @param name normalized phenomenon
+     * @return code of the phenomenon
+     */
+    private synchronized Integer add(String name) {
+        Integer code = codes.get(name);
+        if (code != null) return code;
+
+        Phenomenon phenomenon;
+        try {
+            phenomenon = transactionTemplate.execute(status -> phenomenonRepository.save(new Phenomenon(name)));
+        } catch (DataIntegrityViolationException e) {
+            phenomenon = transactionTemplate.execute(status -> phenomenonRepository.findByName(name));
+        }
+        put(phenomenon);
+        return phenomenon.getId();
+    }
+
+    private void put(Phenomenon phenomenon) {
+        codes.put(phenomenon.getName(), phenomenon.getId());
+        names.put(phenomenon.getId(), phenomenon.getName());
+    }
+}
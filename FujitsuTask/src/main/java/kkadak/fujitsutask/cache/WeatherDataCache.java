@@ -0,0 +1,144 @@
+package kkadak.fujitsutask.cache;
+
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.store.WeatherDataStore;
+import kkadak.fujitsutask.translators.WeatherStationTranslator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds a {@link kkadak.fujitsutask.cache.WeatherTimeline} of the recorded weather data of every station declared in
+ * {@link kkadak.fujitsutask.translators.WeatherStationTranslator}
+ * <p>
+ * Loaded from the {@link kkadak.fujitsutask.store.WeatherDataStore} at startup and kept up to date by
+ * {@link kkadak.fujitsutask.cron.WeatherDataImporter} through {@link #update(List)}, serves both the most recent
+ * weather data, as-of lookups and range scans for historical fee calculation
+ */
+@Component
+public class WeatherDataCache {
+    private final WeatherDataStore weatherDataStore;
+
+    /**
+     * Weather data timelines by station WMO code, null until first loaded
+     */
+    private final AtomicReference<Map<Integer, WeatherTimeline>> timelines = new AtomicReference<>();
+
+    /**
+     * Version of the cached data, increases with every change
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    @Autowired
+    public WeatherDataCache(WeatherDataStore weatherDataStore) {
+        this.weatherDataStore = weatherDataStore;
+    }
+
+    /**
+     * Returns the most recent weather data for the specified station
+     *
+     * @param stationWmo WMO code of the station
+     * @return most recent weather data for the specified station, null if none has been recorded
+     */
+    public WeatherData getLatest(int stationWmo) {
+        return getTimeline(stationWmo).getLatest();
+    }
+
+    /**
+     * Returns the most recent weather data for the specified station measured at or before the specified time
+     *
+     * @param stationWmo WMO code of the station
+     * @param timestamp  amount of seconds past UTC epoch
+     * @return most recent weather data measured at or before the specified time, null if none has been recorded
+     */
+    public WeatherData getAsOf(int stationWmo, long timestamp) {
+        return getTimeline(stationWmo).getAsOf(timestamp);
+    }
+
+    /**
+     * Passes the observations of the specified station measured within the specified time range to the consumer in
+     * ascending order of measurement, used for bulk historical calculations
+     *
+     * @param stationWmo WMO code of the station
+     * @param from       earliest accepted timestamp in seconds past UTC epoch
+     * @param until      latest accepted timestamp in seconds past UTC epoch
+     * @param consumer   consumer of the observations
+     */
+    public void scan(int stationWmo, long from, long until, WeatherTimeline.ObservationConsumer consumer) {
+        getTimeline(stationWmo).scan(from, until, consumer);
+    }
+
+    /**
+     * Returns the weather data timeline of the specified station
+     *
+     * @param stationWmo WMO code of the station
+     * @return {@link kkadak.fujitsutask.cache.WeatherTimeline} of the station, empty if the station is not fetched
+     */
+    public WeatherTimeline getTimeline(int stationWmo) {
+        Map<Integer, WeatherTimeline> current = timelines.get();
+        if (current == null) current = reload();
+        return current.getOrDefault(stationWmo, WeatherTimeline.EMPTY);
+    }
+
+    /**
+     * Returns the version of the cached data, which increases with every change, loading the data in case it has not
+     * been loaded yet
+     *
+     * @return version of the cached data
+     */
+    public long getVersion() {
+        if (timelines.get() == null) reload();
+        return version.get();
+    }
+
+    /**
+     * Reloads the weather data history of every station from the {@link kkadak.fujitsutask.store.WeatherDataStore}
+     *
+     * @return Map of the weather data timelines by station WMO code
+     */
+    public synchronized Map<Integer, WeatherTimeline> reload() {
+        Map<Integer, WeatherTimeline> loaded = new HashMap<>();
+        for (Integer stationWmo : WeatherStationTranslator.getStationWmosToFetch())
+            loaded.put(stationWmo, WeatherTimeline.of(weatherDataStore
+                    .findByStationWmoOrderByTimestampAsc(stationWmo)));
+
+        Map<Integer, WeatherTimeline> result = Collections.unmodifiableMap(loaded);
+        timelines.set(result);
+        version.incrementAndGet();
+        return result;
+    }
+
+    /**
+     * Merges newly saved weather data into the timelines of their stations
+     *
+     * @param savedData weather data which has been saved to the {@link kkadak.fujitsutask.store.WeatherDataStore}
+     */
+    public synchronized void update(List<WeatherData> savedData) {
+        Map<Integer, WeatherTimeline> current = timelines.get();
+        if (current == null) {
+            reload();
+            return;
+        }
+
+        // Group the saved data by station so that every timeline is rebuilt only once
+        Map<Integer, List<WeatherData>> byStation = new HashMap<>();
+        for (WeatherData weatherData : savedData) {
+            if (weatherData.getStationWmo() == null) continue;
+            byStation.computeIfAbsent(weatherData.getStationWmo(), key -> new ArrayList<>()).add(weatherData);
+        }
+
+        Map<Integer, WeatherTimeline> updated = new HashMap<>(current);
+        byStation.forEach((stationWmo, data) -> updated.put(stationWmo,
+                updated.getOrDefault(stationWmo, WeatherTimeline.EMPTY).append(data)));
+
+        timelines.set(Collections.unmodifiableMap(updated));
+        version.incrementAndGet();
+    }
+}
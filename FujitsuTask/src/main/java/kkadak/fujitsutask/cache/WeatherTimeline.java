@@ -0,0 +1,325 @@
+package kkadak.fujitsutask.cache;
+
+import kkadak.fujitsutask.model.WeatherData;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, sorted timeline of the weather data of a single station
+ * <p>
+ * The weather data valid at a given time is the most recent one measured at or before it and is found with a binary
+ * search over the observation timestamps. The observations are stored off-heap in columns of primitives, the strings
+ * as codes of a per-station dictionary, so years of history cost neither per-entry objects nor garbage collection
+ * work. Newer observations are appended to the columns in place, the earlier timelines keep seeing only the prefix
+ * they were created with
+ */
+public final class WeatherTimeline {
+
+    /**
+     * Timeline without any weather data
+     */
+    public static final WeatherTimeline EMPTY = new WeatherTimeline(null, 0);
+
+    /**
+     * Columns of the timeline, shared with the earlier and later timelines of the same station, null if empty
+     */
+    private final Columns columns;
+
+    /**
+     * Amount of observations of this timeline, the prefix of {@link #columns} visible to it
+     */
+    private final int size;
+
+    private WeatherTimeline(Columns columns, int size) {
+        this.columns = columns;
+        this.size = size;
+    }
+
+    /**
+     * Consumer of the observations of a range scan
+     */
+    @FunctionalInterface
+    public interface ObservationConsumer {
+
+        /**
+         * Accepts a single observation
+         *
+         * @param timestamp  amount of seconds past UTC epoch when the data was measured
+         * @param airTemp    air temperature
+         * @param windSpeed  wind speed
+         * @param phenomenon weather phenomenon
+         */
+        void accept(long timestamp, double airTemp, double windSpeed, String phenomenon);
+    }
+
+    /**
+     * Builds a timeline from the weather data of a single station
+     * <p>
+     * In case of several entries with the same timestamp, the one appearing last in the List is used
+     *
+     * @param weatherData weather data of a single station in any order
+     * @return timeline of the weather data
+     */
+    public static WeatherTimeline of(List<WeatherData> weatherData) {
+        return EMPTY.append(weatherData);
+    }
+
+    /**
+     * Returns a new timeline containing the data of this timeline and the specified weather data
+     * <p>
+     * Observations newer than the latest one are written to the shared columns, older ones or appends to a timeline
+     * which is not the latest of its columns require copying the whole timeline
+     *
+     * @param weatherData weather data of the same station in any order
+     * @return new timeline, this timeline in case there is nothing to add
+     */
+    public WeatherTimeline append(List<WeatherData> weatherData) {
+        List<WeatherData> added = new ArrayList<>();
+        for (WeatherData entry : weatherData) if (entry.getTimestamp() != null) added.add(entry);
+        if (added.isEmpty()) return this;
+        added = deduplicate(added);
+
+        if (columns != null && added.get(0).getTimestamp() > getTimestamp(size - 1)) {
+            synchronized (columns) {
+                if (columns.committed == size && size + added.size() <= columns.capacity) {
+                    columns.write(size, added);
+                    return new WeatherTimeline(columns, size + added.size());
+                }
+            }
+
+            // Out of room or not the latest timeline, the rows are copied to new columns without materializing them
+            Columns grown = columns.copy(size, Math.max(columns.capacity, size + added.size()) * 2);
+            grown.write(size, added);
+            return new WeatherTimeline(grown, size + added.size());
+        }
+
+        // Older observations are merged with the whole timeline, which is copied to new columns
+        List<WeatherData> merged = new ArrayList<>(size + added.size());
+        for (int i = 0; i < size; i++) merged.add(get(i));
+        merged.addAll(added);
+        merged = deduplicate(merged);
+
+        Columns copy = new Columns(Math.max(16, merged.size() * 2));
+        copy.write(0, merged);
+        return new WeatherTimeline(copy, merged.size());
+    }
+
+    /**
+     * Sorts the weather data by timestamp, keeping the last entry of every timestamp
+     *
+     * @param weatherData weather data with timestamps
+     * @return sorted weather data without duplicate timestamps
+     */
+    private static List<WeatherData> deduplicate(List<WeatherData> weatherData) {
+        List<WeatherData> sorted = new ArrayList<>(weatherData);
+        sorted.sort(Comparator.comparingLong(WeatherData::getTimestamp));
+        List<WeatherData> result = new ArrayList<>(sorted.size());
+        for (WeatherData entry : sorted) {
+            if (!result.isEmpty() && result.get(result.size() - 1).getTimestamp().equals(entry.getTimestamp()))
+                result.set(result.size() - 1, entry);
+            else result.add(entry);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the most recent weather data of the timeline
+     *
+     * @return most recent weather data, null if the timeline is empty
+     */
+    public WeatherData getLatest() {
+        return size == 0 ? null : get(size - 1);
+    }
+
+    /**
+     * Returns the most recent weather data measured at or before the specified time
+     *
+     * @param timestamp amount of seconds past UTC epoch
+     * @return most recent weather data measured at or before the specified time, null if none exists
+     */
+    public WeatherData getAsOf(long timestamp) {
+        int index = floorIndex(timestamp);
+        return index < 0 ? null : get(index);
+    }
+
+    /**
+     * Passes the observations measured within the specified time range to the consumer in ascending order of
+     * measurement, without creating weather data objects
+     *
+     * @param from     earliest accepted timestamp in seconds past UTC epoch
+     * @param until    latest accepted timestamp in seconds past UTC epoch
+     * @param consumer consumer of the observations
+     */
+    public void scan(long from, long until, ObservationConsumer consumer) {
+        for (int i = floorIndex(from - 1) + 1; i < size && getTimestamp(i) <= until; i++)
+            consumer.accept(getTimestamp(i), columns.airTemps.get(i), columns.windSpeeds.get(i),
+                    columns.decode(columns.phenomena.get(i)));
+    }
+
+    /**
+     * Returns the amount of weather data entries in the timeline
+     *
+     * @return amount of weather data entries in the timeline
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the index of the last observation measured at or before the specified time
+     *
+     * @param timestamp amount of seconds past UTC epoch
+     * @return index of the observation, -1 if none exists
+     */
+    private int floorIndex(long timestamp) {
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (getTimestamp(middle) <= timestamp) low = middle + 1;
+            else high = middle - 1;
+        }
+        return high;
+    }
+
+    private long getTimestamp(int index) {
+        return columns.timestamps.get(index);
+    }
+
+    /**
+     * Materializes a single observation
+     *
+     * @param index index of the observation
+     * @return the observation as weather data, which is not managed by JPA
+     */
+    private WeatherData get(int index) {
+        WeatherData weatherData = new WeatherData(columns.stationWmos.get(index),
+                columns.decode(columns.stationNames.get(index)), 0, 0, columns.decode(columns.phenomena.get(index)),
+                columns.timestamps.get(index));
+        weatherData.setAirTemp(toNullable(columns.airTemps.get(index)));
+        weatherData.setWindSpeed(toNullable(columns.windSpeeds.get(index)));
+        return weatherData;
+    }
+
+    /**
+     * Converts a stored metric back to its nullable form, missing metrics are stored as NaN
+     *
+     * @param value stored value
+     * @return the value, null in case of NaN
+     */
+    private static Double toNullable(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    /**
+     * Off-heap columns of the observations of a station with a fixed capacity
+     * <p>
+     * Rows are only ever written after {@link #committed}, so the rows visible to existing timelines never change
+     */
+    private static final class Columns {
+        private final int capacity;
+        private final LongBuffer timestamps;
+        private final DoubleBuffer airTemps;
+        private final DoubleBuffer windSpeeds;
+        private final IntBuffer phenomena;
+        private final IntBuffer stationWmos;
+        private final IntBuffer stationNames;
+
+        /**
+         * Amount of written rows
+         */
+        private int committed;
+
+        /**
+         * Codes of the strings in {@link #strings}
+         */
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        /**
+         * Strings at the indexes of their codes, replaced as a whole when a string is added
+         */
+        private volatile String[] strings = new String[0];
+
+        private Columns(int capacity) {
+            this.capacity = capacity;
+            timestamps = allocate(capacity, Long.BYTES).asLongBuffer();
+            airTemps = allocate(capacity, Double.BYTES).asDoubleBuffer();
+            windSpeeds = allocate(capacity, Double.BYTES).asDoubleBuffer();
+            phenomena = allocate(capacity, Integer.BYTES).asIntBuffer();
+            stationWmos = allocate(capacity, Integer.BYTES).asIntBuffer();
+            stationNames = allocate(capacity, Integer.BYTES).asIntBuffer();
+        }
+
+        /**
+         * Copies the first rows and the dictionary to new columns
+         *
+         * @param rows     amount of rows to copy
+         * @param capacity capacity of the new columns
+         * @return the new columns
+         */
+        private Columns copy(int rows, int capacity) {
+            Columns copy = new Columns(capacity);
+            copy.timestamps.put(timestamps.slice(0, rows));
+            copy.airTemps.put(airTemps.slice(0, rows));
+            copy.windSpeeds.put(windSpeeds.slice(0, rows));
+            copy.phenomena.put(phenomena.slice(0, rows));
+            copy.stationWmos.put(stationWmos.slice(0, rows));
+            copy.stationNames.put(stationNames.slice(0, rows));
+            copy.strings = strings;
+            for (int i = 0; i < copy.strings.length; i++) copy.codes.put(copy.strings[i], i);
+            copy.committed = rows;
+            return copy;
+        }
+
+        private static ByteBuffer allocate(int capacity, int bytes) {
+            return ByteBuffer.allocateDirect(capacity * bytes).order(ByteOrder.nativeOrder());
+        }
+
+        /**
+         * Writes sorted weather data to the rows from the specified index on, the rows have to be after the
+         * committed ones
+         *
+         * @param start       index of the first written row
+         * @param weatherData weather data sorted by timestamp
+         */
+        private void write(int start, List<WeatherData> weatherData) {
+            int index = start;
+            for (WeatherData entry : weatherData) {
+                timestamps.put(index, entry.getTimestamp());
+                airTemps.put(index, entry.getAirTemp() == null ? Double.NaN : entry.getAirTemp());
+                windSpeeds.put(index, entry.getWindSpeed() == null ? Double.NaN : entry.getWindSpeed());
+                phenomena.put(index, encode(entry.getPhenomenon()));
+                stationWmos.put(index, entry.getStationWmo() == null ? 0 : entry.getStationWmo());
+                stationNames.put(index, encode(entry.getStationName()));
+                index++;
+            }
+            committed = index;
+        }
+
+        private int encode(String value) {
+            if (value == null) return -1;
+            Integer code = codes.get(value);
+            if (code != null) return code;
+
+            String[] current = strings;
+            String[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = value;
+            strings = updated;
+            codes.put(value, current.length);
+            return current.length;
+        }
+
+        private String decode(int code) {
+            return code < 0 ? null : strings[code];
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package kkadak.fujitsutask.calculation;
+
+import kkadak.fujitsutask.model.BaseFeeRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable, sorted timeline of the base fee rules of a single city and vehicle type pair
+ * <p>
+ * Every rule is a change point which stays in effect until the next one, the rule valid at a given time is found
+ * with a binary search
+ */
+public final class BaseFeeTimeline {
+
+    /**
+     * Timeline without any rules
+     */
+    public static final BaseFeeTimeline EMPTY = new BaseFeeTimeline(new long[0], new Double[0]);
+
+    /**
+     * Amounts of seconds past UTC epoch when the rules were set, in ascending order without duplicates
+     */
+    private final long[] validFromTimestamps;
+
+    /**
+     * Fee amounts at the same indexes as {@link #validFromTimestamps}, null if the use of the vehicle type is
+     * prohibited
+     */
+    private final Double[] fees;
+
+    private BaseFeeTimeline(long[] validFromTimestamps, Double[] fees) {
+        this.validFromTimestamps = validFromTimestamps;
+        this.fees = fees;
+    }
+
+    /**
+     * Builds a timeline from the rules of a single city and vehicle type pair
+     * <p>
+     * In case of several rules set at the same second, the one with the highest ID is used
+     *
+     * @param rules base fee rules of a single city and vehicle type pair in any order
+     * @return timeline of the rules
+     */
+    public static BaseFeeTimeline of(List<BaseFeeRule> rules) {
+        List<BaseFeeRule> sorted = new ArrayList<>();
+        for (BaseFeeRule rule : rules) if (rule.getValidFromTimestamp() != null) sorted.add(rule);
+        if (sorted.isEmpty()) return EMPTY;
+
+        sort(sorted);
+        return build(sorted, new long[sorted.size()], new Double[sorted.size()], 0);
+    }
+
+    /**
+     * Returns a timeline with the specified rules added to the rules of this timeline
+     * <p>
+     * The added rules are appended in case they are all set after the last rule of this timeline, which is the case
+     * for rules set at the current time, otherwise the timeline is rebuilt from all the rules
+     *
+     * @param rules all base fee rules of the city and vehicle type pair, including the added ones, in any order
+     * @param added base fee rules added since this timeline was built in any order
+     * @return timeline of all the rules
+     */
+    public BaseFeeTimeline append(List<BaseFeeRule> rules, List<BaseFeeRule> added) {
+        List<BaseFeeRule> sorted = new ArrayList<>();
+        for (BaseFeeRule rule : added) if (rule.getValidFromTimestamp() != null) sorted.add(rule);
+        if (sorted.isEmpty()) return this;
+
+        sort(sorted);
+        int size = validFromTimestamps.length;
+        if (size == 0 || sorted.get(0).getValidFromTimestamp() <= validFromTimestamps[size - 1]) return of(rules);
+        return build(sorted, Arrays.copyOf(validFromTimestamps, size + sorted.size()),
+                Arrays.copyOf(fees, size + sorted.size()), size);
+    }
+
+    private static void sort(List<BaseFeeRule> rules) {
+        rules.sort(Comparator.comparingLong(BaseFeeRule::getValidFromTimestamp)
+                .thenComparing(BaseFeeRule::getId, Comparator.nullsFirst(Comparator.naturalOrder())));
+    }
+
+    /**
+     * Writes the sorted rules after the first entries of the arrays and returns the timeline of the written entries
+     *
+     * @param sorted     rules with a validity start in ascending order of validity start and ID
+     * @param timestamps array with room for the rules after the first entries
+     * @param fees       array with room for the rules after the first entries
+     * @param size       amount of entries already in the arrays
+     * @return timeline of the entries of the arrays
+     */
+    private static BaseFeeTimeline build(List<BaseFeeRule> sorted, long[] timestamps, Double[] fees, int size) {
+        for (BaseFeeRule rule : sorted) {
+            // Later rule of the same second overrides the earlier one
+            if (size > 0 && timestamps[size - 1] == rule.getValidFromTimestamp()) size--;
+            timestamps[size] = rule.getValidFromTimestamp();
+            fees[size] = rule.getFeeAmount();
+            size++;
+        }
+
+        return new BaseFeeTimeline(Arrays.copyOf(timestamps, size), Arrays.copyOf(fees, size));
+    }
+
+    /**
+     * Returns the base fee amount valid at the specified time
+     *
+     * @param timestamp amount of seconds past UTC epoch
+     * @return fee amount, null if the use of the vehicle type was prohibited or no rule was set
+     */
+    public Double getFeeAt(long timestamp) {
+        int index = TimelineSearch.floorIndex(validFromTimestamps, timestamp);
+        return index < 0 ? null : fees[index];
+    }
+}
@@ -0,0 +1,146 @@
+package kkadak.fujitsutask.calculation;
+
+import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
+import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
+import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.translators.PhenomenonTranslator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, precompiled form of the extra fee rules of a single vehicle type
+ * <p>
+ * Numeric rules are held in {@link kkadak.fujitsutask.calculation.ThresholdTable}s per metric and value type and
+ * phenomenon rules in a table keyed by the normalized phenomenon. Pattern rules are compiled into a single
+ * {@link kkadak.fujitsutask.calculation.PhenomenonMatcher}, so calculating the extra fee does not parse, sort or scan
+ * any rules
+ */
+public final class CompiledExtraFeeRules {
+
+    /**
+     * Compiled rule set without any rules
+     */
+    public static final CompiledExtraFeeRules EMPTY = new CompiledExtraFeeRules(List.of());
+
+    /**
+     * 'FROM' rule tables indexed by {@link kkadak.fujitsutask.enums.ExtraFeeRuleMetric} ordinal
+     */
+    private final ThresholdTable[] fromTables;
+
+    /**
+     * 'UNTIL' rule tables indexed by {@link kkadak.fujitsutask.enums.ExtraFeeRuleMetric} ordinal
+     */
+    private final ThresholdTable[] untilTables;
+
+    /**
+     * Rules which are matched against the weather phenomenon, by normalized phenomenon
+     *
+     * @see kkadak.fujitsutask.translators.PhenomenonTranslator#normalize(String)
+     */
+    private final Map<String, ExtraFeeRule> phenomenonRules = new HashMap<>();
+
+    /**
+     * Matcher of the fragments of the pattern rules, in the order of the rules
+     */
+    private final PhenomenonMatcher patternMatcher;
+
+    /**
+     * Pattern rules indexed by the index of their fragments in {@link #patternMatcher}
+     */
+    private final ExtraFeeRule[] fragmentRules;
+
+    /**
+     * Primary constructor
+     *
+     * @param rules extra fee rules of a single vehicle type
+     */
+    public CompiledExtraFeeRules(List<ExtraFeeRule> rules) {
+        ExtraFeeRuleMetric[] metrics = ExtraFeeRuleMetric.values();
+        fromTables = new ThresholdTable[metrics.length];
+        untilTables = new ThresholdTable[metrics.length];
+
+        for (ExtraFeeRuleMetric metric : metrics) {
+            List<ExtraFeeRule> metricRules = rules.stream().filter(rule -> rule.getMetric() == metric).toList();
+            fromTables[metric.ordinal()] = ThresholdTable.of(metricRules, ExtraFeeRuleValueType.FROM);
+            untilTables[metric.ordinal()] = ThresholdTable.of(metricRules, ExtraFeeRuleValueType.UNTIL);
+        }
+
+        // The first of several rules of the same phenomenon applies
+        for (ExtraFeeRule rule : rules) {
+            if (rule.getValueType() != ExtraFeeRuleValueType.PHENOMENON || rule.getValueStr() == null) continue;
+            phenomenonRules.putIfAbsent(PhenomenonTranslator.normalize(rule.getValueStr()), rule);
+        }
+
+        // Fragments are listed in the order of the rules, so the lowest matching fragment belongs to the first rule
+        List<String> fragments = new ArrayList<>();
+        List<ExtraFeeRule> owners = new ArrayList<>();
+        for (ExtraFeeRule rule : rules) {
+            if (rule.getValueType() != ExtraFeeRuleValueType.PATTERN || rule.getValueStr() == null) continue;
+            for (String fragment : PhenomenonTranslator.getFragments(rule.getValueStr())) {
+                fragments.add(fragment);
+                owners.add(rule);
+            }
+        }
+        patternMatcher = PhenomenonMatcher.of(fragments);
+        fragmentRules = owners.toArray(new ExtraFeeRule[0]);
+    }
+
+    /**
+     * Calculates the total extra fee for the specified weather conditions
+     * <p>
+     * In case the use of the vehicle type is forbidden throws a
+     * {@link kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException}
+     *
+     * @param weatherData weather conditions of the delivery
+     * @return the total extra fee
+     * @throws DeliveryFeeCalculationException in case the use of the vehicle type is forbidden
+     */
+    public double getExtraFee(WeatherData weatherData) throws DeliveryFeeCalculationException {
+        double extraFeeTotal = 0;
+
+        // Calculate extra fees from numeric metrics
+        extraFeeTotal += getTableFee(fromTables[ExtraFeeRuleMetric.AIRTEMP.ordinal()], weatherData.getAirTemp());
+        extraFeeTotal += getTableFee(untilTables[ExtraFeeRuleMetric.AIRTEMP.ordinal()], weatherData.getAirTemp());
+        extraFeeTotal += getTableFee(fromTables[ExtraFeeRuleMetric.WINDSPEED.ordinal()], weatherData.getWindSpeed());
+        extraFeeTotal += getTableFee(untilTables[ExtraFeeRuleMetric.WINDSPEED.ordinal()], weatherData.getWindSpeed());
+
+        // Calculate extra fees from phenomenon metric, imported phenomena are already normalized
+        // A rule for the exact phenomenon takes precedence over the pattern rules
+        String phenomenon = PhenomenonTranslator.normalize(weatherData.getPhenomenon());
+        ExtraFeeRule rule = phenomenonRules.get(phenomenon);
+        if (rule == null) {
+            int fragment = patternMatcher.find(phenomenon);
+            if (fragment >= 0) rule = fragmentRules[fragment];
+        }
+        if (rule != null) {
+            if (rule.getFeeAmount() == null)
+                throw new DeliveryFeeCalculationException("Usage of selected vehicle type is currently forbidden");
+            extraFeeTotal += rule.getFeeAmount();
+        }
+
+        return extraFeeTotal;
+    }
+
+    /**
+     * Returns the fee of the rule matching the measured value in the specified table
+     *
+     * @param table {@link kkadak.fujitsutask.calculation.ThresholdTable} of a single metric and value type
+     * @param value measured value of the metric
+     * @return fee of the matching rule, 0 if no rule matches
+     * @throws DeliveryFeeCalculationException in case the matching rule forbids the vehicle type
+     */
+    private static double getTableFee(ThresholdTable table, double value) throws DeliveryFeeCalculationException {
+        int index = table.find(value);
+        if (index < 0) return 0;
+
+        Double fee = table.getFee(index);
+        if (fee == null)
+            throw new DeliveryFeeCalculationException("Usage of selected vehicle type is currently forbidden");
+        return fee;
+    }
+}
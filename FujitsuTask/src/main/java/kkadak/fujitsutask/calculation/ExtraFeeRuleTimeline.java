@@ -0,0 +1,143 @@
+package kkadak.fujitsutask.calculation;
+
+import kkadak.fujitsutask.model.ExtraFeeRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable interval index over the validity periods of the extra fee rules of a single vehicle type
+ * <p>
+ * The time axis is cut at every validFrom and validUntil timestamp into segments during which the set of valid rules
+ * does not change, each segment holds its rules in compiled form and is found with a binary search
+ */
+public final class ExtraFeeRuleTimeline {
+
+    /**
+     * Timeline without any rules
+     */
+    public static final ExtraFeeRuleTimeline EMPTY = new ExtraFeeRuleTimeline(new long[0],
+            new CompiledExtraFeeRules[0]);
+
+    /**
+     * Start timestamps of the segments in ascending order without duplicates
+     */
+    private final long[] changePoints;
+
+    /**
+     * Compiled rules valid during the segments at the same indexes as {@link #changePoints}
+     */
+    private final CompiledExtraFeeRules[] segments;
+
+    private ExtraFeeRuleTimeline(long[] changePoints, CompiledExtraFeeRules[] segments) {
+        this.changePoints = changePoints;
+        this.segments = segments;
+    }
+
+    /**
+     * Builds a timeline from the rules of a single vehicle type
+     *
+     * @param rules extra fee rules of a single vehicle type, both valid and disabled, in any order
+     * @return timeline of the rules
+     */
+    public static ExtraFeeRuleTimeline of(List<ExtraFeeRule> rules) {
+        // Rules are kept in the order of creation within every segment
+        List<ExtraFeeRule> ordered = new ArrayList<>();
+        for (ExtraFeeRule rule : rules) if (rule.getValidFromTimestamp() != null) ordered.add(rule);
+        if (ordered.isEmpty()) return EMPTY;
+        ordered.sort(Comparator.comparing(ExtraFeeRule::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        TreeSet<Long> changePointSet = new TreeSet<>();
+        for (ExtraFeeRule rule : ordered) {
+            changePointSet.add(rule.getValidFromTimestamp());
+            if (rule.getValidUntilTimestamp() != null) changePointSet.add(rule.getValidUntilTimestamp());
+        }
+
+        long[] changePoints = changePointSet.stream().mapToLong(Long::longValue).toArray();
+        CompiledExtraFeeRules[] segments = new CompiledExtraFeeRules[changePoints.length];
+
+        // Sweep over the change points, keeping the currently valid rules by their position in the ordered List
+        List<Integer> byValidFrom = new ArrayList<>();
+        for (int i = 0; i < ordered.size(); i++) byValidFrom.add(i);
+        byValidFrom.sort(Comparator.comparingLong(position -> ordered.get(position).getValidFromTimestamp()));
+        TreeMap<Integer, ExtraFeeRule> valid = new TreeMap<>();
+        int fromCursor = 0;
+
+        for (int i = 0; i < changePoints.length; i++) {
+            long changePoint = changePoints[i];
+
+            while (fromCursor < byValidFrom.size()
+                    && ordered.get(byValidFrom.get(fromCursor)).getValidFromTimestamp() <= changePoint) {
+                int position = byValidFrom.get(fromCursor++);
+                ExtraFeeRule rule = ordered.get(position);
+                if (rule.getValidUntilTimestamp() == null || rule.getValidUntilTimestamp() > changePoint)
+                    valid.put(position, rule);
+            }
+
+            valid.values().removeIf(rule -> rule.getValidUntilTimestamp() != null
+                    && rule.getValidUntilTimestamp() <= changePoint);
+            segments[i] = new CompiledExtraFeeRules(new ArrayList<>(valid.values()));
+        }
+
+        return new ExtraFeeRuleTimeline(changePoints, segments);
+    }
+
+    /**
+     * Returns a timeline with the specified changes applied to the rules of this timeline
+     * <p>
+     * A rule saved since this timeline was built changes the timeline at its validity start and a disabled rule at
+     * its validity end. In case no change precedes the last segment of this timeline, which is the case for changes
+     * made at the current time, the earlier segments are kept and only the segments from the first change on are
+     * compiled, otherwise the timeline is rebuilt from all the rules
+     *
+     * @param rules   extra fee rules of the vehicle type, both valid and disabled, after the changes in any order
+     * @param changed extra fee rules of the vehicle type saved or disabled since this timeline was built
+     * @return timeline of the rules
+     */
+    public ExtraFeeRuleTimeline append(List<ExtraFeeRule> rules, List<ExtraFeeRule> changed) {
+        TreeSet<Long> newChangePoints = new TreeSet<>();
+        for (ExtraFeeRule rule : changed) {
+            if (rule.getValidFromTimestamp() == null) continue;
+            newChangePoints.add(rule.getValidUntilTimestamp() != null
+                    ? rule.getValidUntilTimestamp() : rule.getValidFromTimestamp());
+        }
+        if (newChangePoints.isEmpty()) return this;
+        if (changePoints.length == 0 || newChangePoints.first() < changePoints[changePoints.length - 1])
+            return of(rules);
+
+        // The last segment is compiled again in case it starts at the first change
+        int kept = newChangePoints.first() == changePoints[changePoints.length - 1]
+                ? changePoints.length - 1 : changePoints.length;
+        long[] appendedChangePoints = Arrays.copyOf(changePoints, kept + newChangePoints.size());
+        CompiledExtraFeeRules[] appendedSegments = Arrays.copyOf(segments, appendedChangePoints.length);
+
+        List<ExtraFeeRule> ordered = new ArrayList<>();
+        for (ExtraFeeRule rule : rules) if (rule.getValidFromTimestamp() != null) ordered.add(rule);
+        ordered.sort(Comparator.comparing(ExtraFeeRule::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+        int index = kept;
+        for (long changePoint : newChangePoints) {
+            appendedChangePoints[index] = changePoint;
+            appendedSegments[index++] = new CompiledExtraFeeRules(ordered.stream()
+                    .filter(rule -> rule.getValidFromTimestamp() <= changePoint
+                            && (rule.getValidUntilTimestamp() == null || rule.getValidUntilTimestamp() > changePoint))
+                    .toList());
+        }
+
+        return new ExtraFeeRuleTimeline(appendedChangePoints, appendedSegments);
+    }
+
+    /**
+     * Returns the compiled extra fee rules valid at the specified time
+     *
+     * @param timestamp amount of seconds past UTC epoch
+     * @return {@link kkadak.fujitsutask.calculation.CompiledExtraFeeRules} valid at the specified time
+     */
+    public CompiledExtraFeeRules getRulesAt(long timestamp) {
+        int index = TimelineSearch.floorIndex(changePoints, timestamp);
+        return index < 0 ? CompiledExtraFeeRules.EMPTY : segments[index];
+    }
+}
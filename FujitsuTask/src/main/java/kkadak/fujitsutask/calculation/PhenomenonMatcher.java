@@ -0,0 +1,136 @@
+package kkadak.fujitsutask.calculation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+
+/**
+ * Immutable Aho-Corasick automaton finding the first of a set of fragments occurring in a phenomenon
+ * <p>
+ * The fragments are compiled into a deterministic automaton over the characters they contain, every state knows the
+ * lowest index of the fragments ending in it, so a phenomenon is matched by reading each of its characters once
+ * regardless of the amount of fragments
+ */
+public final class PhenomenonMatcher {
+
+    /**
+     * Matcher without any fragments
+     */
+    public static final PhenomenonMatcher EMPTY = of(List.of());
+
+    /**
+     * Marks a state in which no fragment ends
+     */
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    /**
+     * Characters of the fragments in ascending order, the columns of {@link #transitions}
+     */
+    private final char[] alphabet;
+
+    /**
+     * Next state of every state and character of {@link #alphabet}, a row per state
+     */
+    private final int[] transitions;
+
+    /**
+     * Lowest index of the fragments ending in every state, {@link #NO_MATCH} if none ends in it
+     */
+    private final int[] matches;
+
+    private PhenomenonMatcher(char[] alphabet, int[] transitions, int[] matches) {
+        this.alphabet = alphabet;
+        this.transitions = transitions;
+        this.matches = matches;
+    }
+
+    /**
+     * Compiles the fragments into a matcher
+     *
+     * @param fragments normalized fragments, empty fragments are ignored
+     * @return matcher of the fragments
+     */
+    public static PhenomenonMatcher of(List<String> fragments) {
+        // Trie of the fragments, state 0 is the root
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        children.add(new HashMap<>());
+        ends.add(NO_MATCH);
+        TreeSet<Character> characters = new TreeSet<>();
+
+        for (int i = 0; i < fragments.size(); i++) {
+            String fragment = fragments.get(i);
+            if (fragment == null || fragment.isEmpty()) continue;
+
+            int state = 0;
+            for (char c : fragment.toCharArray()) {
+                characters.add(c);
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(c, next);
+                    children.add(new HashMap<>());
+                    ends.add(NO_MATCH);
+                }
+                state = next;
+            }
+            ends.set(state, Math.min(ends.get(state), i));
+        }
+
+        char[] alphabet = new char[characters.size()];
+        int column = 0;
+        for (char c : characters) alphabet[column++] = c;
+
+        int width = alphabet.length;
+        int[] transitions = new int[children.size() * width];
+        int[] matches = ends.stream().mapToInt(Integer::intValue).toArray();
+        int[] failures = new int[children.size()];
+
+        // Breadth-first over the trie, the missing transitions of a state are those of its failure state, which is
+        // shallower and therefore already complete
+        Queue<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            if (state != 0) matches[state] = Math.min(matches[state], matches[failures[state]]);
+
+            for (column = 0; column < width; column++) {
+                Integer child = children.get(state).get(alphabet[column]);
+                int fallback = state == 0 ? 0 : transitions[failures[state] * width + column];
+                if (child == null) {
+                    transitions[state * width + column] = fallback;
+                    continue;
+                }
+                failures[child] = fallback;
+                transitions[state * width + column] = child;
+                queue.add(child);
+            }
+        }
+
+        return new PhenomenonMatcher(alphabet, transitions, matches);
+    }
+
+    /**
+     * Returns the lowest index of the fragments occurring in the phenomenon
+     *
+     * @param phenomenon normalized phenomenon
+     * @return index of the fragment in the List the matcher was compiled from, -1 if none occurs
+     */
+    public int find(String phenomenon) {
+        if (phenomenon == null || alphabet.length == 0) return -1;
+
+        int state = 0, found = NO_MATCH;
+        for (int i = 0; i < phenomenon.length(); i++) {
+            // Characters which do not occur in any fragment lead back to the root
+            int column = Arrays.binarySearch(alphabet, phenomenon.charAt(i));
+            state = column < 0 ? 0 : transitions[state * alphabet.length + column];
+            found = Math.min(found, matches[state]);
+        }
+        return found == NO_MATCH ? -1 : found;
+    }
+}
@@ -0,0 +1,116 @@
+package kkadak.fujitsutask.calculation;
+
+import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable table of numeric extra fee rule thresholds of a single metric and value type,
+ * sorted in ascending order for binary search
+ * <p>
+ * A 'FROM' table matches the highest threshold which is lower than or equal to the measured value,
+ * an 'UNTIL' table matches the lowest threshold which is higher than or equal to the measured value
+ */
+public final class ThresholdTable {
+
+    /**
+     * Table without any thresholds, never matches
+     */
+    private static final ThresholdTable EMPTY = new ThresholdTable(new double[0], new Double[0], false);
+
+    /**
+     * Rule values in ascending order
+     */
+    private final double[] thresholds;
+
+    /**
+     * Fee amounts of the rules at the same indexes as {@link #thresholds}, null if the rule forbids the vehicle type
+     */
+    private final Double[] fees;
+
+    /**
+     * Whether the table matches values from its thresholds upwards ('FROM') or downwards ('UNTIL')
+     */
+    private final boolean from;
+
+    private ThresholdTable(double[] thresholds, Double[] fees, boolean from) {
+        this.thresholds = thresholds;
+        this.fees = fees;
+        this.from = from;
+    }
+
+    /**
+     * Builds a table from the rules with numeric value of the specified value type
+     * <p>
+     * In case of several rules with the same value, the one appearing first in the List is used
+     *
+     * @param rules     rules of a single metric and vehicle type
+     * @param valueType {@link kkadak.fujitsutask.enums.ExtraFeeRuleValueType}.FROM or
+     *                  {@link kkadak.fujitsutask.enums.ExtraFeeRuleValueType}.UNTIL
+     * @return table of the rules with the specified value type
+     */
+    public static ThresholdTable of(List<ExtraFeeRule> rules, ExtraFeeRuleValueType valueType) {
+        List<ExtraFeeRule> matching = new ArrayList<>();
+        for (ExtraFeeRule rule : rules)
+            if (rule.getValueType() == valueType && rule.getNumericValue() != null) matching.add(rule);
+        if (matching.isEmpty()) return EMPTY;
+
+        // Stable sort keeps the List order among rules with equal values
+        matching.sort(Comparator.comparingDouble(rule -> rule.getNumericValue() + 0.0));
+        double[] thresholds = new double[matching.size()];
+        Double[] fees = new Double[matching.size()];
+        int size = 0;
+
+        for (ExtraFeeRule rule : matching) {
+            // Adding 0.0 turns negative zero into zero so that binary search treats them as equal values
+            double threshold = rule.getNumericValue() + 0.0;
+            if (size > 0 && thresholds[size - 1] == threshold) continue;
+            thresholds[size] = threshold;
+            fees[size] = rule.getFeeAmount();
+            size++;
+        }
+
+        return new ThresholdTable(Arrays.copyOf(thresholds, size), Arrays.copyOf(fees, size),
+                valueType == ExtraFeeRuleValueType.FROM);
+    }
+
+    /**
+     * Returns the index of the rule matching the measured value
+     *
+     * @param value measured value of the metric
+     * @return index of the matching rule, -1 if no rule matches
+     */
+    public int find(double value) {
+        if (thresholds.length == 0) return -1;
+        int index = Arrays.binarySearch(thresholds, value + 0.0);
+        if (index >= 0) return index;
+
+        // Insertion point is the index of the first threshold higher than the value
+        int insertionPoint = -index - 1;
+        if (from) return insertionPoint - 1;
+        return insertionPoint < thresholds.length ? insertionPoint : -1;
+    }
+
+    /**
+     * Returns the fee amount of the rule at the specified index
+     *
+     * @param index index returned by {@link #find(double)}
+     * @return fee amount, null if the rule forbids the vehicle type
+     */
+    public Double getFee(int index) {
+        return fees[index];
+    }
+
+    /**
+     * Returns the amount of thresholds in the table
+     *
+     * @return amount of thresholds in the table
+     */
+    public int size() {
+        return thresholds.length;
+    }
+}
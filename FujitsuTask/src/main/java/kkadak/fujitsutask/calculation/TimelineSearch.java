@@ -0,0 +1,34 @@
+package kkadak.fujitsutask.calculation;
+
+import java.util.Arrays;
+
+/**
+ * Binary search helpers shared by the sorted timelines used for historical fee calculation
+ */
+public class TimelineSearch {
+
+    /**
+     * Returns the index of the last timestamp which is lower than or equal to the specified timestamp
+     *
+     * @param timestamps timestamps in ascending order without duplicates
+     * @param timestamp  timestamp to search for
+     * @return index of the last timestamp lower than or equal to the specified one, -1 if none exists
+     */
+    public static int floorIndex(long[] timestamps, long timestamp) {
+        return floorIndex(timestamps, timestamps.length, timestamp);
+    }
+
+    /**
+     * Returns the index of the last timestamp which is lower than or equal to the specified timestamp among the
+     * first {@code length} timestamps
+     *
+     * @param timestamps timestamps in ascending order without duplicates
+     * @param length     amount of timestamps in use from the beginning of the array
+     * @param timestamp  timestamp to search for
+     * @return index of the last timestamp lower than or equal to the specified one, -1 if none exists
+     */
+    public static int floorIndex(long[] timestamps, int length, long timestamp) {
+        int index = Arrays.binarySearch(timestamps, 0, length, timestamp);
+        return index >= 0 ? index : -index - 2;
+    }
+}
@@ -1,22 +1,37 @@
 package kkadak.fujitsutask.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import kkadak.fujitsutask.enums.City;
 import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
 import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
 import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.exceptions.IncompatibleFeeRuleException;
 import kkadak.fujitsutask.initializers.FeeRuleInitializer;
 import kkadak.fujitsutask.model.BaseFeeRule;
 import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.model.FeeQuery;
+import kkadak.fujitsutask.model.FeeQuote;
+import kkadak.fujitsutask.model.FeeRuleDefinition;
+import kkadak.fujitsutask.model.FeeRuleImportResult;
 import kkadak.fujitsutask.repository.BaseFeeRuleRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository;
 import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
 import kkadak.fujitsutask.service.DeliveryServiceImpl;
+import kkadak.fujitsutask.service.FeeQueryStreamProcessor;
+import kkadak.fujitsutask.translators.FeeRuleCsvTranslator;
 import kkadak.fujitsutask.translators.StringEnumTranslator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.time.Instant;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,16 +44,22 @@ public class DeliveryController {
     private final FeeRuleInitializer feeRuleInitializer;
     private final BaseFeeRuleRepository baseFeeRuleRepository;
     private final ExtraFeeRuleRepository extraFeeRuleRepository;
+    private final ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository;
+    private final FeeQueryStreamProcessor feeQueryStreamProcessor;
 
     @Autowired
     public DeliveryController(DeliveryServiceImpl deliveryService,
                               FeeRuleInitializer feeRuleInitializer,
                               BaseFeeRuleRepository baseFeeRuleRepository,
-                              ExtraFeeRuleRepository extraFeeRuleRepository) {
+                              ExtraFeeRuleRepository extraFeeRuleRepository,
+                              ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository,
+                              FeeQueryStreamProcessor feeQueryStreamProcessor) {
         this.deliveryService = deliveryService;
         this.feeRuleInitializer = feeRuleInitializer;
         this.baseFeeRuleRepository = baseFeeRuleRepository;
         this.extraFeeRuleRepository = extraFeeRuleRepository;
+        this.extraFeeRuleHistoryRepository = extraFeeRuleHistoryRepository;
+        this.feeQueryStreamProcessor = feeQueryStreamProcessor;
     }
 
     /**
@@ -49,7 +70,7 @@ public class DeliveryController {
      *                     "reset", "print", "history", "disable", "add"
      * @param idStr        specifies the ID of the rule to be removed in case modeStr is set to "disable"
      * @param typeStr      specifies the type of rule to be added in case modeStr is set to "add",
-     *                     valid options are: "base", "from", "until", "phenomenon",
+     *                     valid options are: "base", "from", "until", "phenomenon", "pattern",
      *                     translated to {@link kkadak.fujitsutask.enums.ExtraFeeRuleValueType} in case of extra fee
      *                     using {@link kkadak.fujitsutask.translators.StringEnumTranslator}
      * @param metricStr    specifies the metric for which the rule to be added applies,
@@ -150,7 +171,9 @@ public class DeliveryController {
                         if (rule.getMetric() != ExtraFeeRuleMetric.PHENOMENON)
                             result = result.concat(String.format("<td>%s %s %.2f</td>",
                                     rule.getMetric().name().toLowerCase(), rule.getValueType().name().toLowerCase(),
-                                    Double.parseDouble(rule.getValueStr())));
+                                    rule.getNumericValue()));
+                        else if (rule.getValueType() == ExtraFeeRuleValueType.PATTERN)
+                            result = result.concat(String.format("<td>pattern %s</td>", rule.getValueStr()));
                         else result = result.concat(String.format("<td>%s</td>", rule.getValueStr()));
 
                         Double amount = rule.getFeeAmount();
@@ -189,7 +212,12 @@ public class DeliveryController {
                 result = result.concat("<h3>EXTRA FEES</h3><table style=\"border-spacing:10px\">"
                         + "<tr><th>ID</th><th>vehicle type</th><th>condition</th>"
                         + "<th>valid from</th><th>valid until</th><th>fee</th></tr>");
-                List<ExtraFeeRule> extraFeeRuleHistory = extraFeeRuleRepository.findByOrderByValidFromTimestampDesc();
+                // Currently valid and disabled rules are kept in separate tables
+                List<ExtraFeeRule> extraFeeRuleHistory = new ArrayList<>(
+                        extraFeeRuleRepository.findByOrderByValidFromTimestampDesc());
+                extraFeeRuleHistoryRepository.findByOrderByValidFromTimestampDesc()
+                        .forEach(rule -> extraFeeRuleHistory.add(rule.toExtraFeeRule()));
+                extraFeeRuleHistory.sort(Comparator.comparing(ExtraFeeRule::getValidFromTimestamp).reversed());
 
                 // Iterate over every base fee rule
                 for (ExtraFeeRule rule : extraFeeRuleHistory) {
@@ -199,7 +227,9 @@ public class DeliveryController {
                     if (rule.getMetric() != ExtraFeeRuleMetric.PHENOMENON)
                         result = result.concat(String.format("<td>%s %s %.2f</td>",
                                 rule.getMetric().name().toLowerCase(), rule.getValueType().name().toLowerCase(),
-                                Double.parseDouble(rule.getValueStr())));
+                                rule.getNumericValue()));
+                    else if (rule.getValueType() == ExtraFeeRuleValueType.PATTERN)
+                        result = result.concat(String.format("<td>pattern %s</td>", rule.getValueStr()));
                     else result = result.concat(String.format("<td>%s</td>", rule.getValueStr()));
 
                     result = result.concat(String.format("<td>%d</td>", rule.getValidFromTimestamp()));
@@ -230,16 +260,12 @@ public class DeliveryController {
                     return "Unknown value for 'id' parameter";
                 }
 
-                Optional<ExtraFeeRule> rule = extraFeeRuleRepository.findById(ruleId);
-                if (rule.isPresent()) {
-                    if (rule.get().getValidUntilTimestamp() != null) return "Rule already disabled";
-
-                    rule.get().setValidUntilTimestamp(Instant.now().getEpochSecond());
-                    extraFeeRuleRepository.save(rule.get());
+                try {
+                    feeRuleInitializer.DisableRule(ruleId);
                     return "Rule disabled";
+                } catch (IncompatibleFeeRuleException e) {
+                    return e.getMessage();
                 }
-
-                return "Rule not found";
             }
 
             // Add a rule
@@ -297,11 +323,13 @@ public class DeliveryController {
 
                     // Adding a String value extra fee rule
                     case "phenomenon":
+                    case "pattern":
                         if (valueStr == null) return "Specify 'value' parameter";
+                        ExtraFeeRuleValueType stringValueType = StringEnumTranslator.getValueTypeFromStr(typeStr);
 
                         try {
                             if (amountStr.equalsIgnoreCase("forbid"))
-                                feeRuleInitializer.InitializeNewRule(valueStr, selectedVehicle, null);
+                                feeRuleInitializer.InitializeNewRule(stringValueType, valueStr, selectedVehicle, null);
                             else {
                                 double amount;
                                 try {
@@ -310,7 +338,8 @@ public class DeliveryController {
                                     return "Unknown value for 'amount' parameter";
                                 }
 
-                                feeRuleInitializer.InitializeNewRule(valueStr, selectedVehicle, amount);
+                                feeRuleInitializer.InitializeNewRule(stringValueType, valueStr, selectedVehicle,
+                                        amount);
                             }
 
                             return "Rule added";
@@ -348,4 +377,70 @@ public class DeliveryController {
             return e.getMessage();
         }
     }
+
+    /**
+     * REST endpoint handler for batch delivery fee calculation
+     * <p>
+     * Queries for the same weather station and time share the weather data and rule lookups
+     *
+     * @param queries List of {@link kkadak.fujitsutask.model.FeeQuery} items, each holding the city, the vehicle and
+     *                optionally the time for the calculation, translated the same way as in {@link #getFee}
+     * @return List of {@link kkadak.fujitsutask.model.FeeQuote} items in the order of the queries, each holding
+     * either the fee or the error message
+     */
+    @PostMapping("/getFees")
+    public List<FeeQuote> getFees(@RequestBody List<FeeQuery> queries) {
+        return deliveryService.getDeliveryFees(queries);
+    }
+
+    /**
+     * REST endpoint handler for importing a whole rule set from JSON
+     * <p>
+     * The rule set is validated as a whole and saved in a single transaction, nothing is saved in case of any error
+     *
+     * @param rules List of {@link kkadak.fujitsutask.model.FeeRuleDefinition} items, their fields are translated the
+     *              same way as the parameters of the rule adding mode of {@link #getFee}
+     * @return {@link kkadak.fujitsutask.model.FeeRuleImportResult} holding either the amount of imported rules or
+     * every error found in the rule set
+     */
+    @PostMapping(value = "/importRules", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public FeeRuleImportResult importRules(@RequestBody List<FeeRuleDefinition> rules) {
+        return feeRuleInitializer.ImportRules(rules);
+    }
+
+    /**
+     * REST endpoint handler for importing a whole rule set from CSV
+     *
+     * @param csv rule set with a header line naming the columns, see
+     *            {@link kkadak.fujitsutask.translators.FeeRuleCsvTranslator}
+     * @return {@link kkadak.fujitsutask.model.FeeRuleImportResult} holding either the amount of imported rules or
+     * every error found in the rule set
+     * @see #importRules(List)
+     */
+    @PostMapping(value = "/importRules", consumes = "text/csv")
+    public FeeRuleImportResult importRulesCsv(@RequestBody String csv) {
+        try {
+            return feeRuleInitializer.ImportRules(FeeRuleCsvTranslator.parse(csv));
+        } catch (IllegalArgumentException e) {
+            return FeeRuleImportResult.ofErrors(List.of(e.getMessage()));
+        }
+    }
+
+    /**
+     * REST endpoint handler for streamed bulk delivery fee calculation
+     * <p>
+     * Reads newline-delimited JSON {@link kkadak.fujitsutask.model.FeeQuery} items from the request body and writes a
+     * newline-delimited JSON {@link kkadak.fujitsutask.model.FeeQuote} for each of them to the response while the
+     * input is still being read
+     *
+     * @param inputStream request body
+     * @param response    response to write the results to
+     * @throws IOException in case reading the request or writing the response fails
+     */
+    @PostMapping("/getFees/stream")
+    public void getFeesStream(InputStream inputStream, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        feeQueryStreamProcessor.process(inputStream, response.getOutputStream());
+    }
 }
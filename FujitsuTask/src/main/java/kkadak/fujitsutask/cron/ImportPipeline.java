@@ -0,0 +1,210 @@
+package kkadak.fujitsutask.cron;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executors of the weather data import, separate from the task scheduler and the web server threads
+ * <p>
+ * A run of the import is coordinated on a thread of its own and every {@link Stage} of it runs on a single-thread
+ * executor with a bounded queue, so a stuck stage only holds its own thread. The coordinator waits for each stage at
+ * most the timeout of the stage from application.properties and interrupts it when the timeout passes. An interrupted
+ * stage is not necessarily stopped, a JDBC call ignores the interrupt and may still commit, so the importer does not
+ * treat a failed stage as one which had no effect. Only one run is in progress at a time, a run submitted while the
+ * previous one is still in progress is rejected
+ * <p>
+ * The duration of the stages, their queue depths and the rejected runs are published as metrics
+ *
+ * @see kkadak.fujitsutask.cron.WeatherDataImporter
+ */
+@Component
+public class ImportPipeline {
+
+    /**
+     * Stages of an import run in the order they run in
+     */
+    public enum Stage {
+        FETCH, PARSE, VALIDATE, PERSIST, PUBLISH;
+
+        /**
+         * Returns the name of the stage used in the properties and the metric tags
+         *
+         * @return lower case name of the stage
+         */
+        public String getName() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Thread coordinating the runs, the queue holds the single run in progress
+     */
+    private final ThreadPoolExecutor coordinator;
+
+    private final Map<Stage, ThreadPoolExecutor> executors = new EnumMap<>(Stage.class);
+    private final Map<Stage, Duration> timeouts = new EnumMap<>(Stage.class);
+
+    /**
+     * Whether a run is in progress
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Amount of runs rejected because the previous run was still in progress
+     */
+    private final Counter skippedRuns;
+
+    @Autowired
+    public ImportPipeline(MeterRegistry meterRegistry, Environment environment) {
+        this.meterRegistry = meterRegistry;
+        this.coordinator = newExecutor("weather-import-", 1);
+        this.skippedRuns = Counter.builder("weather.import.skipped")
+                .description("Weather data import runs skipped because the previous run was still in progress")
+                .register(meterRegistry);
+
+        int queueCapacity = environment.getRequiredProperty("weather.import.queue-capacity", Integer.class);
+        for (Stage stage : Stage.values()) {
+            ThreadPoolExecutor executor = newExecutor(String.format("weather-import-%s-", stage.getName()),
+                    queueCapacity);
+            executors.put(stage, executor);
+            timeouts.put(stage, Duration.ofMillis(environment.getRequiredProperty(
+                    String.format("weather.import.%s-timeout-ms", stage.getName()), Long.class)));
+            meterRegistry.gauge("weather.import.stage.queue", Tags.of("stage", stage.getName()), executor,
+                    pool -> pool.getQueue().size());
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor(String threadNamePrefix, int queueCapacity) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+        threadFactory.setDaemon(true);
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Starts a run on the coordinator thread unless the previous run is still in progress
+     *
+     * @param run the run of the import, which runs its stages with {@link #stage(Stage, Callable)}
+     * @return Future completing when the run has finished
+     * @throws RejectedExecutionException in case the previous run is still in progress
+     */
+    public Future<?> submit(Runnable run) {
+        Future<?> future = start(run);
+        if (future == null) {
+            skippedRuns.increment();
+            throw new RejectedExecutionException("Previous weather data import is still in progress");
+        }
+        return future;
+    }
+
+    /**
+     * Starts a task on the coordinator thread in case no run is in progress, such as the pick-up of the data saved by
+     * another instance
+     * <p>
+     * The task is left out without being counted as a skipped run in case a run is in progress, the run makes the
+     * task unnecessary
+     *
+     * @param task the task, which does not overlap a run
+     * @return Future completing when the task has finished, null in case it was left out
+     */
+    public Future<?> submitIfIdle(Runnable task) {
+        try {
+            return start(task);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Starts a run on the coordinator thread in case no run is in progress
+     *
+     * @param run the run
+     * @return Future completing when the run has finished, null in case a run is in progress
+     * @throws RejectedExecutionException in case the coordinator has been shut down
+     */
+    private Future<?> start(Runnable run) {
+        if (!running.compareAndSet(false, true)) return null;
+        try {
+            return coordinator.submit(() -> {
+                try {
+                    run.run();
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a stage on its executor and waits for it at most the timeout of the stage
+     *
+     * @param stage the stage
+     * @param task  work of the stage
+     * @param <T>   type of the result of the stage
+     * @return result of the stage
+     * @throws Exception in case the stage failed, timed out or its queue was full
+     */
+    public <T> T stage(Stage stage, Callable<T> task) throws Exception {
+        Duration timeout = timeouts.get(stage);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+
+        try {
+            Future<T> future = executors.get(stage).submit(task);
+            try {
+                T result = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                outcome = "success";
+                return result;
+            } catch (TimeoutException e) {
+                // Interrupts the stage, so that its thread is free for the next run
+                future.cancel(true);
+                outcome = "timeout";
+                throw new TimeoutException(String.format("Stage %s timed out after %d ms", stage.getName(),
+                        timeout.toMillis()));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) throw cause;
+                throw e;
+            }
+        } finally {
+            sample.stop(Timer.builder("weather.import.stage")
+                    .description("Duration of the weather data import stages")
+                    .tag("stage", stage.getName())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Stops the coordinator and the stages, interrupting a run in progress
+     */
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        for (ThreadPoolExecutor executor : executors.values()) executor.shutdownNow();
+    }
+}
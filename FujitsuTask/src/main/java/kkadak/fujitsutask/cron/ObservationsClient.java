@@ -0,0 +1,136 @@
+package kkadak.fujitsutask.cron;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * HTTP client used by {@link kkadak.fujitsutask.cron.WeatherDataImporter} for fetching the observations document
+ * <p>
+ * Keeps a single {@link java.net.http.HttpClient} so that connections are reused between fetches, negotiates gzip
+ * compression, enforces connect and read timeouts and sends conditional requests based on the validators of the
+ * last imported response
+ * <p>
+ * The validators of a response are only used once the importer has saved its document and called {@link #commit()},
+ * so a document which failed to be parsed or saved is fetched again in full by the next fetch
+ */
+@Component
+public class ObservationsClient {
+    private final HttpClient httpClient;
+    private final URI uri;
+
+    /**
+     * Maximum time for receiving the whole response
+     */
+    private final Duration readTimeout;
+
+    /**
+     * ETag header of the last imported response, null if none was sent
+     */
+    private String eTag;
+
+    /**
+     * Last-Modified header of the last imported response, null if none was sent
+     */
+    private String lastModified;
+
+    /**
+     * ETag header of the last fetched response, used once its document is imported
+     */
+    private String pendingETag;
+
+    /**
+     * Last-Modified header of the last fetched response, used once its document is imported
+     */
+    private String pendingLastModified;
+
+    @Autowired
+    public ObservationsClient(@Value("${weather.url}") String url,
+                              @Value("${weather.connect-timeout-ms}") long connectTimeoutMs,
+                              @Value("${weather.read-timeout-ms}") long readTimeoutMs) {
+        this.uri = URI.create(url);
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Fetches the observations document
+     * <p>
+     * The response body is read completely within the read timeout before it is returned
+     *
+     * @return the decompressed document, null if it has not been modified since the previous fetch
+     * @throws IOException          in case of a connection error, timeout or unexpected response status
+     * @throws InterruptedException in case the thread is interrupted while waiting for the response
+     */
+    public synchronized InputStream fetch() throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(readTimeout)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        if (eTag != null) builder.header("If-None-Match", eTag);
+        if (lastModified != null) builder.header("If-Modified-Since", lastModified);
+
+        // Request timeout only covers the response headers, the whole body is awaited within the same limit
+        CompletableFuture<HttpResponse<byte[]>> future = httpClient.sendAsync(builder.build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        HttpResponse<byte[]> response;
+        try {
+            response = future.get(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new HttpTimeoutException("Observations request timed out");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) throw cause;
+            throw new IOException(e.getCause());
+        }
+
+        if (response.statusCode() == 304) return null;
+        if (response.statusCode() != 200)
+            throw new IOException(String.format("Unexpected response status %d", response.statusCode()));
+
+        // Validators are kept pending until the document has been imported, see commit()
+        eTag = null;
+        lastModified = null;
+        pendingETag = response.headers().firstValue("ETag").orElse(null);
+        pendingLastModified = response.headers().firstValue("Last-Modified").orElse(null);
+
+        InputStream body = new ByteArrayInputStream(response.body());
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip")).orElse(false);
+        return gzip ? new GZIPInputStream(body) : body;
+    }
+
+    /**
+     * Marks the document of the last fetched response as imported, the following fetches are conditional on its
+     * validators
+     * <p>
+     * Called by the importer only after the data of the document has been saved, does nothing in case no document
+     * has been fetched since the last call
+     */
+    public synchronized void commit() {
+        if (pendingETag == null && pendingLastModified == null) return;
+        eTag = pendingETag;
+        lastModified = pendingLastModified;
+        pendingETag = null;
+        pendingLastModified = null;
+    }
+}
@@ -0,0 +1,175 @@
+package kkadak.fujitsutask.cron;
+
+import kkadak.fujitsutask.model.WeatherData;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Streaming parser for the observations XML document of the
+ * <a href="https://www.ilmateenistus.ee/teenused/ilmainfo/eesti-vaatlusandmed-xml/">Estonian Environment Agency</a>
+ * <p>
+ * Reads the document with a StAX pull parser, stations which are not requested are skipped as soon as their WMO code
+ * has been read and are never materialized
+ */
+public class ObservationsParser {
+
+    /**
+     * Shared factory, configured not to resolve DTDs or external entities
+     */
+    private static final XMLInputFactory xmlInputFactory = createFactory();
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Parses the weather data of the requested stations from the observations document
+     * <p>
+     * Stations with missing or unparsable metrics are left out, as well as all stations in case the document has no
+     * valid 'timestamp' attribute
+     *
+     * @param inputStream source of the observations document
+     * @param stationWmos WMO codes of the stations to parse
+     * @return List of {@link kkadak.fujitsutask.model.WeatherData} of the requested stations in document order
+     * @throws XMLStreamException in case the document is malformed
+     */
+    public static List<WeatherData> parse(InputStream inputStream, Collection<Integer> stationWmos)
+            throws XMLStreamException {
+        return parse(inputStream, stationWmos, null);
+    }
+
+    /**
+     * Parses the weather data of the requested stations from the observations document unless the document has
+     * the specified timestamp
+     * <p>
+     * Stations with missing or unparsable metrics are left out, as well as all stations in case the document has no
+     * valid 'timestamp' attribute
+     *
+     * @param inputStream      source of the observations document
+     * @param stationWmos      WMO codes of the stations to parse
+     * @param skippedTimestamp timestamp of an already imported document in seconds past UTC epoch,
+     *                         null to parse any document
+     * @return List of {@link kkadak.fujitsutask.model.WeatherData} of the requested stations in document order,
+     * empty if the document has the skipped timestamp
+     * @throws XMLStreamException in case the document is malformed
+     */
+    public static List<WeatherData> parse(InputStream inputStream, Collection<Integer> stationWmos,
+                                          Long skippedTimestamp) throws XMLStreamException {
+        List<WeatherData> result = new ArrayList<>();
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(inputStream);
+
+        try {
+            // Attempt to retrieve the 'timestamp' attribute of the root element, in case of failure return
+            if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) return result;
+            long timestamp;
+            try {
+                timestamp = Long.parseLong(reader.getAttributeValue(null, "timestamp"));
+            } catch (NumberFormatException e) {
+                return result;
+            }
+
+            // The document has already been imported, the stations are not read at all
+            if (skippedTimestamp != null && timestamp == skippedTimestamp) return result;
+
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) continue;
+                if (!reader.getLocalName().equals("station")) continue;
+
+                WeatherData weatherData = parseStation(reader, stationWmos, timestamp);
+                if (weatherData != null) result.add(weatherData);
+            }
+        } finally {
+            reader.close();
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses a single 'station' element, leaving the reader at its end tag
+     *
+     * @param reader      reader positioned at the start tag of the 'station' element
+     * @param stationWmos WMO codes of the stations to parse
+     * @param timestamp   timestamp of the observations in seconds past UTC epoch
+     * @return {@link kkadak.fujitsutask.model.WeatherData} of the station,
+     * null if the station was not requested or its data is incomplete
+     * @throws XMLStreamException in case the document is malformed
+     */
+    private static WeatherData parseStation(XMLStreamReader reader, Collection<Integer> stationWmos, long timestamp)
+            throws XMLStreamException {
+        Integer stationWmo = null;
+        String name = null, phenomenon = null, airTemp = null, windSpeed = null;
+        int depth = 1;
+
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            if (depth > 1) {
+                depth++;
+                continue;
+            }
+
+            // Only the direct children of the station are read, getElementText leaves the reader at their end tag
+            switch (reader.getLocalName()) {
+                case "name" -> name = reader.getElementText();
+                case "phenomenon" -> phenomenon = reader.getElementText();
+                case "airtemperature" -> airTemp = reader.getElementText();
+                case "windspeed" -> windSpeed = reader.getElementText();
+                case "wmocode" -> {
+                    try {
+                        stationWmo = Integer.parseInt(reader.getElementText().trim());
+                    } catch (NumberFormatException e) {
+                        stationWmo = null;
+                    }
+
+                    // Skip the rest of a station which is not requested
+                    if (stationWmo == null || !stationWmos.contains(stationWmo)) {
+                        skipToEnd(reader);
+                        return null;
+                    }
+                }
+                default -> depth++;
+            }
+        }
+
+        if (stationWmo == null || name == null || phenomenon == null || airTemp == null || windSpeed == null)
+            return null;
+
+        try {
+            return new WeatherData(stationWmo, name, Double.parseDouble(airTemp), Double.parseDouble(windSpeed),
+                    phenomenon, timestamp);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Advances the reader to the end tag of the element it is currently inside of
+     *
+     * @param reader reader positioned inside an element
+     * @throws XMLStreamException in case the document is malformed
+     */
+    private static void skipToEnd(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+}
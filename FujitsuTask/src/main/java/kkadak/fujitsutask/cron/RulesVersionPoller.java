@@ -0,0 +1,72 @@
+package kkadak.fujitsutask.cron;
+
+import kkadak.fujitsutask.cache.FeeRuleCache;
+import kkadak.fujitsutask.events.FeeRulesChangedEvent;
+import kkadak.fujitsutask.repository.RulesVersionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Class used for learning about the fee rule changes made by other instances of the application using the same
+ * database
+ * <p>
+ * Every rule change increments the version in the RulesVersion table. The version is polled with a single primary
+ * key read and a {@link kkadak.fujitsutask.events.FeeRulesChangedEvent} is published when it is newer than the one
+ * of the current rule snapshot, so a change made elsewhere reaches the caches of this instance within the polling
+ * delay
+ */
+@Component
+public class RulesVersionPoller {
+    private final RulesVersionRepository rulesVersionRepository;
+    private final FeeRuleCache feeRuleCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TaskScheduler taskScheduler;
+
+    /**
+     * Delay between the end of a poll and the start of the next one
+     */
+    private final Duration pollDelay;
+
+    @Autowired
+    public RulesVersionPoller(RulesVersionRepository rulesVersionRepository, FeeRuleCache feeRuleCache,
+                              ApplicationEventPublisher eventPublisher, TaskScheduler taskScheduler,
+                              @Value("${rules.version.poll-delay-ms}") long pollDelayMs) {
+        this.rulesVersionRepository = rulesVersionRepository;
+        this.feeRuleCache = feeRuleCache;
+        this.eventPublisher = eventPublisher;
+        this.taskScheduler = taskScheduler;
+        this.pollDelay = Duration.ofMillis(pollDelayMs);
+    }
+
+    /**
+     * Schedules the {@link #poll()} method to run with the delay specified in application.properties
+     */
+    public void schedulePolling() {
+        taskScheduler.scheduleWithFixedDelay(this::poll, pollDelay);
+    }
+
+    /**
+     * Publishes a {@link kkadak.fujitsutask.events.FeeRulesChangedEvent} in case the version of the fee rules is
+     * newer than the one the current rule snapshot was built from
+     *
+     * @return true if a change was published
+     */
+    public boolean poll() {
+        long version;
+        try {
+            version = rulesVersionRepository.getVersion();
+        } catch (Exception e) {
+            System.out.printf("Exception thrown while polling rules version: %s%n", e.getMessage());
+            return false;
+        }
+
+        if (version <= feeRuleCache.getRuleVersion()) return false;
+        eventPublisher.publishEvent(new FeeRulesChangedEvent(version));
+        return true;
+    }
+}
@@ -0,0 +1,225 @@
+package kkadak.fujitsutask.cron;
+
+import kkadak.fujitsutask.cache.WeatherDataCache;
+import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
+import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.model.ExtraFeeRuleHistory;
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
+import kkadak.fujitsutask.repository.WeatherDataRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Class used for compacting the history in the WeatherData table
+ * <p>
+ * Observations inside the hot window are kept at full resolution, older observations are only kept in case they
+ * change the outcome of a historical fee query: an observation is deleted when its air temperature and wind speed
+ * are matched by the same threshold rules and its phenomenon equals the one of the last kept observation of
+ * the station. The outdated observations are read and deleted in bounded batches, every batch in its own short
+ * transaction, so the import and the quotes are never blocked for long
+ * <p>
+ * Only created with the default weather data store, the log of
+ * {@link kkadak.fujitsutask.store.SegmentedWeatherDataStore} is not compacted
+ */
+@Component
+@ConditionalOnProperty(name = "weather.store.type", havingValue = "jpa", matchIfMissing = true)
+public class WeatherDataCompactor {
+    private final WeatherDataRepository weatherDataRepository;
+    private final ExtraFeeRuleRepository extraFeeRuleRepository;
+    private final ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository;
+    private final WeatherDataCache weatherDataCache;
+    private final TaskScheduler taskScheduler;
+
+    /**
+     * Cron expression based on which {@link #taskScheduler} runs {@link #compact()}
+     */
+    private final String cronExpression;
+
+    /**
+     * Amount of seconds before the current time for which the observations are kept at full resolution
+     */
+    private final long hotWindowSeconds;
+
+    /**
+     * Maximum amount of observations read and deleted in a single transaction
+     */
+    private final int batchSize;
+
+    @Autowired
+    public WeatherDataCompactor(WeatherDataRepository weatherDataRepository,
+                                ExtraFeeRuleRepository extraFeeRuleRepository,
+                                ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository,
+                                WeatherDataCache weatherDataCache, TaskScheduler taskScheduler,
+                                @Value("${weather.compaction.cron}") String cronExpression,
+                                @Value("${weather.compaction.hot-window-days}") int hotWindowDays,
+                                @Value("${weather.compaction.batch-size}") int batchSize) {
+        this.weatherDataRepository = weatherDataRepository;
+        this.extraFeeRuleRepository = extraFeeRuleRepository;
+        this.extraFeeRuleHistoryRepository = extraFeeRuleHistoryRepository;
+        this.weatherDataCache = weatherDataCache;
+        this.taskScheduler = taskScheduler;
+        this.cronExpression = cronExpression;
+        this.hotWindowSeconds = hotWindowDays * 86400L;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Schedules the {@link #compact()} method to run using the cron expression specified in application.properties
+     */
+    public void scheduleCompaction() {
+        taskScheduler.schedule(this::compact, new CronTrigger(cronExpression));
+    }
+
+    /**
+     * Deletes the observations older than the hot window which do not affect any historical fee query and reloads
+     * the weather data cache in case anything was deleted
+     *
+     * @return amount of deleted observations
+     */
+    public int compact() {
+        long cutoff = Instant.now().getEpochSecond() - hotWindowSeconds;
+        List<ExtraFeeRule> rules = Stream.concat(extraFeeRuleRepository.findAll().stream(),
+                extraFeeRuleHistoryRepository.findAll().stream().map(ExtraFeeRuleHistory::toExtraFeeRule)).toList();
+        Thresholds airTempThresholds = Thresholds.of(rules, ExtraFeeRuleMetric.AIRTEMP);
+        Thresholds windSpeedThresholds = Thresholds.of(rules, ExtraFeeRuleMetric.WINDSPEED);
+
+        int deleted = 0;
+        // In case of Exception, prints it to the console and stops, the next run continues where this one stopped
+        try {
+            for (Integer stationWmo : weatherDataRepository.findStationWmos())
+                deleted += compactStation(stationWmo, cutoff, airTempThresholds, windSpeedThresholds);
+        } catch (Exception e) {
+            System.out.printf("Exception thrown while compacting weather data: %s%n", e.getMessage());
+        }
+
+        if (deleted > 0) weatherDataCache.reload();
+        return deleted;
+    }
+
+    /**
+     * Deletes the redundant observations of a single station older than the cutoff, one batch at a time
+     *
+     * @param stationWmo          WMO code of the station
+     * @param cutoff              timestamp in seconds past UTC epoch before which the observations are compacted
+     * @param airTempThresholds   thresholds of the air temperature rules
+     * @param windSpeedThresholds thresholds of the wind speed rules
+     * @return amount of deleted observations
+     */
+    private int compactStation(int stationWmo, long cutoff, Thresholds airTempThresholds,
+                               Thresholds windSpeedThresholds) {
+        WeatherData kept = null;
+        long from = Long.MIN_VALUE;
+        int deleted = 0;
+
+        while (true) {
+            List<WeatherData> batch = weatherDataRepository.findByStationWmoAndTimestampBetweenOrderByTimestampAsc(
+                    stationWmo, from, cutoff - 1, Limit.of(batchSize));
+            if (batch.isEmpty()) return deleted;
+
+            // Every observation is compared to the last kept one, as that is what the queries of its time resolve to
+            List<Long> redundantIds = new ArrayList<>();
+            for (WeatherData weatherData : batch) {
+                if (kept != null && isEquivalent(kept, weatherData, airTempThresholds, windSpeedThresholds))
+                    redundantIds.add(weatherData.getId());
+                else kept = weatherData;
+            }
+
+            if (!redundantIds.isEmpty()) {
+                weatherDataRepository.deleteAllByIdInBatch(redundantIds);
+                deleted += redundantIds.size();
+            }
+            if (batch.size() < batchSize) return deleted;
+            from = batch.get(batch.size() - 1).getTimestamp() + 1;
+        }
+    }
+
+    /**
+     * Returns whether two observations result in the same extra fees under every rule
+     *
+     * @param first               first observation
+     * @param second              second observation
+     * @param airTempThresholds   thresholds of the air temperature rules
+     * @param windSpeedThresholds thresholds of the wind speed rules
+     * @return true if the observations result in the same extra fees under every rule
+     */
+    static boolean isEquivalent(WeatherData first, WeatherData second, Thresholds airTempThresholds,
+                                Thresholds windSpeedThresholds) {
+        return airTempThresholds.isSameBand(first.getAirTemp(), second.getAirTemp())
+                && windSpeedThresholds.isSameBand(first.getWindSpeed(), second.getWindSpeed())
+                && Objects.equals(first.getPhenomenon(), second.getPhenomenon());
+    }
+
+    /**
+     * Sorted distinct thresholds of the rules of a single metric
+     *
+     * @param from  thresholds of the rules matching values from the threshold upwards
+     * @param until thresholds of the rules matching values until the threshold
+     */
+    record Thresholds(double[] from, double[] until) {
+
+        /**
+         * Collects the thresholds of the rules of a metric
+         *
+         * @param rules  active and disabled extra fee rules
+         * @param metric {@link kkadak.fujitsutask.enums.ExtraFeeRuleMetric} of which the thresholds are collected
+         * @return thresholds of the rules of the metric
+         */
+        static Thresholds of(List<ExtraFeeRule> rules, ExtraFeeRuleMetric metric) {
+            return new Thresholds(collect(rules, metric, ExtraFeeRuleValueType.FROM),
+                    collect(rules, metric, ExtraFeeRuleValueType.UNTIL));
+        }
+
+        private static double[] collect(List<ExtraFeeRule> rules, ExtraFeeRuleMetric metric,
+                                        ExtraFeeRuleValueType valueType) {
+            return rules.stream()
+                    .filter(rule -> rule.getMetric() == metric && rule.getValueType() == valueType
+                            && rule.getNumericValue() != null)
+                    .mapToDouble(ExtraFeeRule::getNumericValue)
+                    .distinct()
+                    .sorted()
+                    .toArray();
+        }
+
+        /**
+         * Returns whether two values are matched by the same 'from' and 'until' rules
+         *
+         * @param first  first value, null values only match each other
+         * @param second second value, null values only match each other
+         * @return true if the values are matched by the same rules
+         */
+        boolean isSameBand(Double first, Double second) {
+            if (first == null || second == null) return first == second;
+            return countBelow(from, first, true) == countBelow(from, second, true)
+                    && countBelow(until, first, false) == countBelow(until, second, false);
+        }
+
+        /**
+         * Returns the amount of thresholds below the value
+         *
+         * @param thresholds sorted distinct thresholds
+         * @param value      value of the metric
+         * @param inclusive  whether thresholds equal to the value are counted
+         * @return amount of thresholds below the value
+         */
+        private static int countBelow(double[] thresholds, double value, boolean inclusive) {
+            int index = Arrays.binarySearch(thresholds, value);
+            if (index < 0) return -index - 1;
+            return inclusive ? index + 1 : index;
+        }
+    }
+}
@@ -1,52 +1,140 @@
 package kkadak.fujitsutask.cron;
 
+import kkadak.fujitsutask.cache.FeeMatrixCache;
+import kkadak.fujitsutask.cache.WeatherDataCache;
+import kkadak.fujitsutask.cron.ImportPipeline.Stage;
 import kkadak.fujitsutask.model.WeatherData;
-import kkadak.fujitsutask.repository.WeatherDataRepository;
+import kkadak.fujitsutask.store.WeatherDataStore;
+import kkadak.fujitsutask.translators.PhenomenonTranslator;
 import kkadak.fujitsutask.translators.WeatherStationTranslator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.support.CronTrigger;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.InputStream;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
- * Class used for importing weather data to the WeatherData table
+ * Class used for importing weather data to the {@link kkadak.fujitsutask.store.WeatherDataStore}
+ * <p>
+ * In case the store is shared by several instances, only the holder of the
+ * {@link kkadak.fujitsutask.cron.WeatherImportLease} fetches and saves the data, the other instances pick up the saved
+ * data from the store
+ * <p>
+ * The import runs in the {@link kkadak.fujitsutask.cron.ImportPipeline}, so a slow upstream or database never holds
+ * the threads of the task scheduler or the web server, and a run never overlaps the previous one
  */
 @Component
 @PropertySource("classpath:application.properties")
 public class WeatherDataImporter {
-    private final WeatherDataRepository repository;
+    private final WeatherDataStore store;
     private final TaskScheduler taskScheduler;
+    private final FeeMatrixCache feeMatrixCache;
+    private final ObservationsClient observationsClient;
+    private final WeatherImportLease weatherImportLease;
+    private final WeatherDataCache weatherDataCache;
+    private final ImportPipeline importPipeline;
 
     /**
      * Cron expression gathered from application.properties based on which {@link #taskScheduler} runs
-     * {@link #fetchAndSave()}
+     * {@link #startFetch()}
      */
     @Value("${cron.expression}")
     private String cronExpression;
 
-    public WeatherDataImporter(WeatherDataRepository repository, TaskScheduler taskScheduler) {
-        this.repository = repository;
+    /**
+     * Timestamp of the last imported observations document, null if none has been imported since startup
+     */
+    private volatile Long lastImportedTimestamp;
+
+    /**
+     * Whether a run failed while persisting or publishing the data, the store may have saved the data regardless, so
+     * the following runs pick it up from the store until a pick-up succeeds
+     */
+    private volatile boolean reconciliationPending;
+
+    public WeatherDataImporter(WeatherDataStore store, TaskScheduler taskScheduler,
+                               FeeMatrixCache feeMatrixCache, ObservationsClient observationsClient,
+                               WeatherImportLease weatherImportLease, WeatherDataCache weatherDataCache,
+                               ImportPipeline importPipeline) {
+        this.store = store;
         this.taskScheduler = taskScheduler;
+        this.feeMatrixCache = feeMatrixCache;
+        this.observationsClient = observationsClient;
+        this.weatherImportLease = weatherImportLease;
+        this.weatherDataCache = weatherDataCache;
+        this.importPipeline = importPipeline;
     }
 
     /**
-     * Schedules the {@link #fetchAndSave()} method to run using the cron expression specified in application.properties
+     * Schedules the {@link #startFetch()} method to run using the cron expression specified in application.properties
+     * <p>
+     * In case the store is shared, also schedules the renewal of the {@link kkadak.fujitsutask.cron.WeatherImportLease}
      */
     public void scheduleFetch() {
-        taskScheduler.schedule(this::fetchAndSave, new CronTrigger(cronExpression));
+        taskScheduler.schedule(this::startFetch, new CronTrigger(cronExpression));
+        if (store.isShared())
+            taskScheduler.scheduleWithFixedDelay(this::renewLeadership, weatherImportLease.getRenewalInterval());
+    }
+
+    /**
+     * Renews the {@link kkadak.fujitsutask.cron.WeatherImportLease}, an instance which has just taken over from a
+     * stopped leader imports right away in case the leader missed an import, the other instances pick up the data
+     * saved by the leader
+     * <p>
+     * The import and the pick-up run in the {@link kkadak.fujitsutask.cron.ImportPipeline}, the calling thread only
+     * renews the lease. A pick-up is left out while an import run is in progress, the run picks up the data itself
+     */
+    void renewLeadership() {
+        boolean wasHeld = weatherImportLease.isHeld();
+        if (weatherImportLease.tryAcquire()) {
+            if (!wasHeld) startFetch();
+        } else {
+            importPipeline.submitIfIdle(this::pickUp);
+        }
+    }
+
+    /**
+     * Starts a run of {@link #importObservations()} in the {@link kkadak.fujitsutask.cron.ImportPipeline} without
+     * waiting for it, the run is skipped in case the previous one is still in progress
+     */
+    public void startFetch() {
+        submit(this::importObservations);
+    }
+
+    /**
+     * Runs {@link #importObservations()} in the {@link kkadak.fujitsutask.cron.ImportPipeline} and waits for it to
+     * finish, the run is skipped in case the previous one is still in progress
+     */
+    public void fetchAndSave() {
+        Future<?> run = submit(this::importObservations);
+        if (run == null) return;
+        try {
+            run.get();
+        } catch (ExecutionException e) {
+            System.out.printf("Exception thrown while importing data: %s%n", e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Future<?> submit(Runnable run) {
+        try {
+            return importPipeline.submit(run);
+        } catch (RejectedExecutionException e) {
+            System.out.printf("Skipping weather data import: %s%n", e.getMessage());
+            return null;
+        }
     }
 
     /**
@@ -55,71 +143,174 @@ public class WeatherDataImporter {
      * and saves it to the database for the stations declared in
      * {@link kkadak.fujitsutask.translators.WeatherStationTranslator}
      * <p>
-     * Configured to automatically run using cron expression in application.properties file
+     * Every step runs as a stage of the {@link kkadak.fujitsutask.cron.ImportPipeline} with its own timeout: fetch of
+     * the document, parsing, validation against the imported data, persisting and publishing to the caches
+     * <p>
+     * A persist or publish stage which failed or timed out may still have saved the data, so the data is then picked
+     * up from the store, and the document is marked as imported only once its data has been published
      *
      * @see kkadak.fujitsutask.translators.WeatherStationTranslator
      */
-    public void fetchAndSave() {
-        final List<Integer> stationWmosToFetch = WeatherStationTranslator.getStationWmosToFetch();
-        List<WeatherData> fetchedData = new ArrayList<>();
-        Document doc;
+    void importObservations() {
+        // In case the store is shared, the data is imported only by the holder of the lease
+        if (store.isShared() && !weatherImportLease.tryAcquire()) {
+            pickUp();
+            return;
+        }
+
+        // Data of a failed run may have been saved after the run gave up on it
+        if (reconciliationPending && reconcile()) reconciliationPending = false;
 
-        // Fetches the XML from the URL and builds a Document object from it
-        // In case of Exception, prints it to the console and returns
+        Stage stage = Stage.FETCH;
         try {
-            URL url = new URL("https://www.ilmateenistus.ee/ilma_andmed/xml/observations.php");
-            URLConnection connection = url.openConnection();
-            InputStream inputStream = connection.getInputStream();
-
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            doc = dBuilder.parse(inputStream);
-            doc.getDocumentElement().normalize();
+            // Nothing is parsed or saved in case the document has not changed since the last import
+            InputStream inputStream = importPipeline.stage(stage, observationsClient::fetch);
+            if (inputStream == null) return;
+
+            // Parses the data of the stations declared in WeatherStationTranslator
+            stage = Stage.PARSE;
+            List<WeatherData> fetchedData = importPipeline.stage(stage, () -> {
+                try (inputStream) {
+                    return ObservationsParser.parse(inputStream, WeatherStationTranslator.getStationWmosToFetch(),
+                            lastImportedTimestamp);
+                }
+            });
+            if (fetchedData.isEmpty()) {
+                observationsClient.commit();
+                return;
+            }
+
+            stage = Stage.VALIDATE;
+            List<WeatherData> newData = importPipeline.stage(stage, () -> validate(fetchedData));
+            if (newData.isEmpty()) {
+                markImported(fetchedData);
+                return;
+            }
+
+            stage = Stage.PERSIST;
+            List<WeatherData> savedData = importPipeline.stage(stage, () -> store.saveAll(newData));
+
+            stage = Stage.PUBLISH;
+            importPipeline.stage(stage, () -> {
+                feeMatrixCache.onWeatherDataSaved(savedData);
+                return null;
+            });
+            markImported(fetchedData);
+        } catch (InterruptedException e) {
+            if (stage == Stage.PERSIST || stage == Stage.PUBLISH) reconciliationPending = true;
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            System.out.printf("Exception thrown while fetching data: %s%n", e.getMessage());
-            return;
+            // In case of Exception, prints it to the console and returns
+            System.out.printf("Exception thrown while importing data in stage %s: %s%n", stage.getName(),
+                    e.getMessage());
+
+            // The store may have saved the data even though the stage failed, so the caches pick it up from there
+            if (stage == Stage.PERSIST || stage == Stage.PUBLISH) {
+                reconciliationPending = true;
+                reconcile();
+            }
         }
+    }
+
+    /**
+     * Marks the observations document as imported once its data has been saved and published, the document is
+     * skipped by the parser and the following fetches are conditional on its validators
+     * <p>
+     * Nothing is marked before the data is published, so a document which failed to be saved is imported again by
+     * the next run
+     *
+     * @param fetchedData weather data parsed from the observations document
+     */
+    private void markImported(List<WeatherData> fetchedData) {
+        lastImportedTimestamp = fetchedData.get(0).getTimestamp();
+        observationsClient.commit();
+    }
+
+    /**
+     * Normalizes the phenomena and leaves out the weather data which already exists in the store
+     * <p>
+     * Phenomena are normalized once here, the cache and the rule matching rely on the normalized form
+     *
+     * @param fetchedData weather data parsed from the observations document
+     * @return List of weather data which does not exist in the store
+     */
+    private List<WeatherData> validate(List<WeatherData> fetchedData) {
+        for (WeatherData weatherData : fetchedData)
+            weatherData.setPhenomenon(PhenomenonTranslator.normalize(weatherData.getPhenomenon()));
+        return filterImported(fetchedData);
+    }
 
-        // Attempt to retrieve the 'timestamp' attribute from the XML, in case of failure abort the function and return
-        long timestamp;
+    /**
+     * Passes the weather data saved to the shared store by another instance to the
+     * {@link kkadak.fujitsutask.cache.FeeMatrixCache}, newer than the latest cached data of each station
+     *
+     * @return List of weather data which was picked up
+     */
+    List<WeatherData> pickUp() {
         try {
-            timestamp = Long.parseLong(doc.getDocumentElement().getAttribute("timestamp"));
+            return publishNewerThanCached();
         } catch (Exception e) {
-            return;
+            System.out.printf("Exception thrown while picking up weather data: %s%n", e.getMessage());
+            return List.of();
         }
+    }
 
-        // Build a NodeList from the 'station' elements
-        NodeList nList = doc.getElementsByTagName("station");
-
-        // Iterate over the Nodes in the NodeList
-        // In case the WMO code of current Node is present in stationWmosToFetch, attempt to:
-        // - parse the elements of the Node
-        // - build a WeatherData object with the metrics and timestamp from XML
-        // - add the new object to the database
-        // In case an Exception is thrown continue to the next Node
-        for (int i = 0, length = nList.getLength(); i < length; i++) {
-            try {
-                Node nNode = nList.item(i);
-                if (nNode.getNodeType() != Node.ELEMENT_NODE) continue;
-                Element eElement = (Element) nNode;
-                String parsedWmoStr = eElement.getElementsByTagName("wmocode").item(0).getTextContent();
-                if (parsedWmoStr.isEmpty()) continue;
-                Integer parsedWmo = Integer.parseInt(parsedWmoStr);
-                if (!stationWmosToFetch.contains(parsedWmo)) continue;
-                fetchedData.add(new WeatherData(Integer.parseInt(eElement.getElementsByTagName("wmocode").item(0)
-                            .getTextContent()),
-                        eElement.getElementsByTagName("name").item(0)
-                                .getTextContent(),
-                        Double.parseDouble(eElement.getElementsByTagName("airtemperature").item(0)
-                                .getTextContent()),
-                        Double.parseDouble(eElement.getElementsByTagName("windspeed").item(0)
-                                .getTextContent()),
-                        eElement.getElementsByTagName("phenomenon").item(0)
-                                .getTextContent(),
-                        timestamp));
-            } catch (Exception ignored) {
-            }
+    /**
+     * Passes the weather data which a failed run may have saved to the store to the
+     * {@link kkadak.fujitsutask.cache.FeeMatrixCache}, the same way as {@link #pickUp()}
+     *
+     * @return whether the data was picked up
+     */
+    private boolean reconcile() {
+        try {
+            publishNewerThanCached();
+            return true;
+        } catch (Exception e) {
+            System.out.printf("Exception thrown while picking up weather data: %s%n", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Passes the weather data of the store newer than the latest cached data of each station to the
+     * {@link kkadak.fujitsutask.cache.FeeMatrixCache}
+     *
+     * @return List of weather data which was passed to the cache
+     */
+    private List<WeatherData> publishNewerThanCached() {
+        List<WeatherData> newData = new ArrayList<>();
+        for (int stationWmo : WeatherStationTranslator.getStationWmosToFetch()) {
+            WeatherData latest = weatherDataCache.getLatest(stationWmo);
+            long after = latest == null ? Long.MIN_VALUE : latest.getTimestamp();
+            newData.addAll(store.findNewerThan(stationWmo, after));
         }
-        repository.saveAll(fetchedData);
+
+        if (!newData.isEmpty()) feeMatrixCache.onWeatherDataSaved(newData);
+        return newData;
+    }
+
+    /**
+     * Leaves out the weather data which already exists in the {@link kkadak.fujitsutask.store.WeatherDataStore}
+     * <p>
+     * Issues a single query per distinct timestamp, which is a single query per imported document
+     *
+     * @param fetchedData weather data parsed from the observations document
+     * @return List of weather data which does not exist in the store
+     */
+    private List<WeatherData> filterImported(List<WeatherData> fetchedData) {
+        Map<Long, Set<Integer>> stationWmosByTimestamp = new HashMap<>();
+        for (WeatherData weatherData : fetchedData)
+            stationWmosByTimestamp.computeIfAbsent(weatherData.getTimestamp(), key -> new HashSet<>())
+                    .add(weatherData.getStationWmo());
+
+        Map<Long, Set<Integer>> importedByTimestamp = new HashMap<>();
+        stationWmosByTimestamp.forEach((timestamp, stationWmos) -> importedByTimestamp.put(timestamp,
+                new HashSet<>(store.findStationWmosWithTimestamp(timestamp, stationWmos))));
+
+        List<WeatherData> newData = new ArrayList<>();
+        for (WeatherData weatherData : fetchedData)
+            if (!importedByTimestamp.get(weatherData.getTimestamp()).contains(weatherData.getStationWmo()))
+                newData.add(weatherData);
+        return newData;
     }
 }
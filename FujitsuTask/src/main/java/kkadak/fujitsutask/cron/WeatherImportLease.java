@@ -0,0 +1,110 @@
+package kkadak.fujitsutask.cron;
+
+import jakarta.annotation.PreDestroy;
+import kkadak.fujitsutask.repository.LeaderLeaseRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Database lease electing the single instance which imports the weather data, in case several instances of the
+ * application use the same database
+ * <p>
+ * The leader renews the lease well before it expires. In case the leader stops, the lease expires and the next
+ * instance trying to acquire it becomes the leader, a leader shutting down releases the lease right away
+ *
+ * @see kkadak.fujitsutask.cron.WeatherDataImporter
+ */
+@Component
+public class WeatherImportLease {
+
+    /**
+     * Name of the lease in the LeaderLease table
+     */
+    static final String NAME = "weather-import";
+
+    private final LeaderLeaseRepository leaderLeaseRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * ID of this instance
+     */
+    private final String holder = UUID.randomUUID().toString();
+
+    /**
+     * Amount of milliseconds the lease is valid for after every renewal
+     */
+    private final long durationMs;
+
+    /**
+     * Whether the last attempt to acquire the lease succeeded
+     */
+    private volatile boolean held;
+
+    @Autowired
+    public WeatherImportLease(LeaderLeaseRepository leaderLeaseRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${weather.leader.lease-ms}") long durationMs) {
+        this.leaderLeaseRepository = leaderLeaseRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * Acquires the lease in case it is free or expired, or renews it in case this instance already holds it
+     *
+     * @return true if this instance holds the lease
+     */
+    public boolean tryAcquire() {
+        try {
+            Integer updated = transactionTemplate.execute(status ->
+                    leaderLeaseRepository.acquire(NAME, holder, durationMs));
+            held = updated != null && updated == 1;
+        } catch (Exception e) {
+            System.out.printf("Exception thrown while acquiring weather import lease: %s%n", e.getMessage());
+            held = false;
+        }
+        return held;
+    }
+
+    /**
+     * Returns whether the last attempt to acquire the lease succeeded, without accessing the database
+     *
+     * @return true if this instance held the lease after the last attempt
+     */
+    public boolean isHeld() {
+        return held;
+    }
+
+    /**
+     * Returns the interval at which the lease has to be renewed, a third of its duration, so that a single failed
+     * renewal does not lose it
+     *
+     * @return interval between the renewals
+     */
+    public Duration getRenewalInterval() {
+        return Duration.ofMillis(Math.max(1, durationMs / 3));
+    }
+
+    /**
+     * Releases the lease in case this instance holds it, so that another instance can take over without waiting for
+     * the lease to expire
+     */
+    @PreDestroy
+    public void release() {
+        if (!held) return;
+        held = false;
+        try {
+            transactionTemplate.executeWithoutResult(status -> leaderLeaseRepository.release(NAME, holder));
+        } catch (Exception e) {
+            System.out.printf("Exception thrown while releasing weather import lease: %s%n", e.getMessage());
+        }
+    }
+}
@@ -20,6 +20,11 @@ public enum ExtraFeeRuleValueType {
      */
     PHENOMENON,
 
+    /**
+     * A String value; phenomenon fragments separated by '|', matching any phenomenon containing one of them
+     */
+    PATTERN,
+
     /**
      * Used in case of a String translation error
      */
@@ -0,0 +1,29 @@
+package kkadak.fujitsutask.events;
+
+/**
+ * Published by {@link kkadak.fujitsutask.initializers.FeeRuleInitializer} for every change of the fee rules and
+ * delivered to the listeners after the transaction of the change has committed
+ * <p>
+ * The versions of the events grow in the order of the commits, so a listener can skip an event whose change it has
+ * already seen
+ */
+public class FeeRulesChangedEvent {
+
+    /**
+     * Version of the fee rules after the change
+     */
+    private final long version;
+
+    /**
+     * Primary constructor
+     *
+     * @param version version of the fee rules after the change
+     */
+    public FeeRulesChangedEvent(long version) {
+        this.version = version;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,141 @@
+package kkadak.fujitsutask.initializers;
+
+import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds the conflicts of the extra fee rules of a rule set with the currently valid rules and with each other
+ * <p>
+ * Threshold rules of the same vehicle type and metric conflict in case they have the same value type and value, or
+ * in case an 'UNTIL' value is at or above a 'FROM' value. The rules of every vehicle type and metric are sorted once,
+ * after which the duplicates are neighbours and every rule only has to be compared with the highest 'UNTIL' or the
+ * lowest 'FROM' rule, so a rule set of n rules is checked in O(n log n). Phenomenon and pattern rules conflict with
+ * a rule of the same value type and value
+ */
+final class ExtraFeeRuleConflicts {
+
+    /**
+     * A rule taking part in the check
+     *
+     * @param rule   the rule
+     * @param number number of the rule in the rule set, null for a currently valid rule
+     */
+    private record Candidate(ExtraFeeRule rule, Integer number) {
+        private boolean isThreshold() {
+            return rule.getValueType() == ExtraFeeRuleValueType.FROM
+                    || rule.getValueType() == ExtraFeeRuleValueType.UNTIL;
+        }
+
+        private double value() {
+            return rule.getNumericValue();
+        }
+
+        private String describe() {
+            return number == null
+                    ? String.format("Conflicting rule (ID: %d)", rule.getId())
+                    : String.format("Conflicting rule %d of the rule set", number);
+        }
+    }
+
+    private ExtraFeeRuleConflicts() {
+    }
+
+    /**
+     * Finds a conflicting rule for every rule of the rule set which conflicts with any other rule
+     *
+     * @param existing currently valid extra fee rules, assumed to be free of conflicts among themselves
+     * @param added    rules of the rule set by their number in the rule set
+     * @return conflict message of every conflicting rule of the rule set by its number, in ascending order
+     */
+    static Map<Integer, String> find(List<ExtraFeeRule> existing, Map<Integer, ExtraFeeRule> added) {
+        // Currently valid rules come first, so a conflict is reported against them rather than the rule set
+        List<Candidate> candidates = new ArrayList<>();
+        existing.forEach(rule -> candidates.add(new Candidate(rule, null)));
+        added.forEach((number, rule) -> candidates.add(new Candidate(rule, number)));
+
+        TreeMap<Integer, String> conflicts = new TreeMap<>();
+        Map<List<Object>, List<Candidate>> thresholdGroups = new HashMap<>();
+        Map<List<Object>, Candidate> valueRules = new HashMap<>();
+
+        for (Candidate candidate : candidates) {
+            ExtraFeeRule rule = candidate.rule();
+            if (candidate.isThreshold())
+                thresholdGroups.computeIfAbsent(Arrays.asList(rule.getVehicleType(), rule.getMetric()),
+                        key -> new ArrayList<>()).add(candidate);
+            else {
+                Candidate first = valueRules.putIfAbsent(
+                        Arrays.asList(rule.getVehicleType(), rule.getValueType(), rule.getValueStr()), candidate);
+                if (first != null) reportPair(conflicts, first, candidate);
+            }
+        }
+
+        for (List<Candidate> group : thresholdGroups.values()) findThresholdConflicts(group, conflicts);
+        return conflicts;
+    }
+
+    /**
+     * Finds the conflicts among the threshold rules of a single vehicle type and metric
+     *
+     * @param group     threshold rules of a single vehicle type and metric
+     * @param conflicts conflict messages by rule number, the found conflicts are added to it
+     */
+    private static void findThresholdConflicts(List<Candidate> group, Map<Integer, String> conflicts) {
+        List<Candidate> sorted = new ArrayList<>(group);
+        sorted.sort(Comparator.comparing((Candidate candidate) -> candidate.rule().getValueType())
+                .thenComparingDouble(Candidate::value)
+                .thenComparing(candidate -> candidate.number() != null));
+
+        Candidate runStart = null, highestUntil = null, lowestFrom = null;
+        for (Candidate candidate : sorted) {
+            // Rules with the same value type and value as the first rule of their run
+            if (runStart != null && runStart.rule().getValueType() == candidate.rule().getValueType()
+                    && runStart.value() == candidate.value())
+                reportPair(conflicts, runStart, candidate);
+            else runStart = candidate;
+
+            if (candidate.rule().getValueType() == ExtraFeeRuleValueType.UNTIL) highestUntil = candidate;
+            else if (lowestFrom == null) lowestFrom = candidate;
+        }
+
+        for (Candidate candidate : group) {
+            if (candidate.number() == null) continue;
+            if (candidate.rule().getValueType() == ExtraFeeRuleValueType.FROM
+                    && highestUntil != null && highestUntil.value() >= candidate.value())
+                report(conflicts, highestUntil, candidate);
+            if (candidate.rule().getValueType() == ExtraFeeRuleValueType.UNTIL
+                    && lowestFrom != null && lowestFrom.value() <= candidate.value())
+                report(conflicts, lowestFrom, candidate);
+        }
+    }
+
+    /**
+     * Records the conflict of two rules for both of them
+     *
+     * @param conflicts conflict messages by rule number
+     * @param first     rule found first
+     * @param second    rule conflicting with the first one
+     */
+    private static void reportPair(Map<Integer, String> conflicts, Candidate first, Candidate second) {
+        report(conflicts, first, second);
+        report(conflicts, second, first);
+    }
+
+    /**
+     * Records the first found conflict of a rule of the rule set
+     *
+     * @param conflicts   conflict messages by rule number
+     * @param conflicting rule the candidate conflicts with
+     * @param candidate   conflicting rule, ignored in case it is a currently valid rule
+     */
+    private static void report(Map<Integer, String> conflicts, Candidate conflicting, Candidate candidate) {
+        if (candidate.number() != null) conflicts.putIfAbsent(candidate.number(), conflicting.describe());
+    }
+}
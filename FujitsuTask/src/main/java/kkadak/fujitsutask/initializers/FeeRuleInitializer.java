@@ -4,32 +4,71 @@ import kkadak.fujitsutask.enums.City;
 import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
 import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
 import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.events.FeeRulesChangedEvent;
 import kkadak.fujitsutask.exceptions.IncompatibleFeeRuleException;
 import kkadak.fujitsutask.model.BaseFeeRule;
 import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.model.ExtraFeeRuleHistory;
+import kkadak.fujitsutask.model.FeeRule;
+import kkadak.fujitsutask.model.FeeRuleDefinition;
+import kkadak.fujitsutask.model.FeeRuleImportResult;
 import kkadak.fujitsutask.repository.BaseFeeRuleRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository;
 import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
+import kkadak.fujitsutask.repository.RulesVersionRepository;
+import kkadak.fujitsutask.translators.StringEnumTranslator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
 
 /**
  * Used to create new fee rules or initialize them to the default values
+ * <p>
+ * Every change of the fee rules goes through this class: each is saved in a transaction which increments the version
+ * in the RulesVersion table and publishes a {@link kkadak.fujitsutask.events.FeeRulesChangedEvent}, the caches
+ * listening for the event are only notified after the transaction has committed. The other instances using the
+ * database learn about the change from the version, see {@link kkadak.fujitsutask.cron.RulesVersionPoller}
  */
 @Component
 public class FeeRuleInitializer {
     private final BaseFeeRuleRepository baseFeeRuleRepository;
     private final ExtraFeeRuleRepository extraFeeRuleRepository;
+    private final ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository;
+    private final RulesVersionRepository rulesVersionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Runs every rule change in a single transaction
+     */
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
     public FeeRuleInitializer(BaseFeeRuleRepository baseFeeRuleRepository,
-                              ExtraFeeRuleRepository extraFeeRuleRepository) {
+                              ExtraFeeRuleRepository extraFeeRuleRepository,
+                              ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository,
+                              RulesVersionRepository rulesVersionRepository,
+                              ApplicationEventPublisher eventPublisher,
+                              PlatformTransactionManager transactionManager) {
         this.baseFeeRuleRepository = baseFeeRuleRepository;
         this.extraFeeRuleRepository = extraFeeRuleRepository;
+        this.extraFeeRuleHistoryRepository = extraFeeRuleHistoryRepository;
+        this.rulesVersionRepository = rulesVersionRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -43,7 +82,7 @@ public class FeeRuleInitializer {
      * @param feeAmount   the amount of the fee, null if the use of specified vehicle in specified city is prohibited
      * @throws IncompatibleFeeRuleException in case of existence of conflicting rule or invalid parameters
      */
-    public void InitializeNewRule(City city,
+    public synchronized void InitializeNewRule(City city,
                                   VehicleType vehicleType,
                                   Double feeAmount) throws IncompatibleFeeRuleException {
         // Check parameter validity
@@ -56,7 +95,11 @@ public class FeeRuleInitializer {
         }
 
         // Save new rule, application logic prefers most recent rule, so old rule gets automatically overridden
-        baseFeeRuleRepository.save(new BaseFeeRule(city, vehicleType, feeAmount));
+        BaseFeeRule newRule = new BaseFeeRule(city, vehicleType, feeAmount);
+        commitChange(version -> {
+            newRule.setRulesVersion(version);
+            baseFeeRuleRepository.save(newRule);
+        });
     }
 
     /**
@@ -72,7 +115,7 @@ public class FeeRuleInitializer {
      * @param feeAmount   the amount of the fee, null if the use of specified vehicle is prohibited in the conditions
      * @throws IncompatibleFeeRuleException in case of existence of conflicting rule or invalid parameters
      */
-    public void InitializeNewRule(ExtraFeeRuleMetric ruleMetric,
+    public synchronized void InitializeNewRule(ExtraFeeRuleMetric ruleMetric,
                                   ExtraFeeRuleValueType valueType,
                                   double value, VehicleType vehicleType,
                                   Double feeAmount) throws IncompatibleFeeRuleException {
@@ -81,26 +124,30 @@ public class FeeRuleInitializer {
                 || vehicleType == VehicleType.UNKNOWN
                 || ruleMetric == ExtraFeeRuleMetric.PHENOMENON
                 || valueType == ExtraFeeRuleValueType.PHENOMENON
+                || valueType == ExtraFeeRuleValueType.PATTERN
                 || (feeAmount != null && feeAmount <= 0))
             throw new IncompatibleFeeRuleException("Invalid rule parameter(s)");
 
-        // Check conflicting rules
-        for (ExtraFeeRule existingRule : extraFeeRuleRepository.getRules(vehicleType).stream()
-                .filter(rule -> rule.getMetric() == ruleMetric).toList()) {
-            ExtraFeeRuleValueType existingType = existingRule.getValueType();
-            if ((existingType == valueType && value == Double.parseDouble(existingRule.getValueStr()))
-                    || (existingType == ExtraFeeRuleValueType.UNTIL
-                        && valueType == ExtraFeeRuleValueType.FROM
-                        && Double.parseDouble(existingRule.getValueStr()) >= value)
-                    || (existingType == ExtraFeeRuleValueType.FROM
-                        && valueType == ExtraFeeRuleValueType.UNTIL
-                        && Double.parseDouble(existingRule.getValueStr()) <= value))
-                throw new IncompatibleFeeRuleException(String.format("Conflicting rule (ID: %d)",
-                        existingRule.getId()));
-        }
-
-        // Save new rule
-        extraFeeRuleRepository.save(new ExtraFeeRule(ruleMetric, valueType, value, vehicleType, feeAmount));
+        // Check conflicting rules under the lock of the version row and save new rule
+        ExtraFeeRule newRule = new ExtraFeeRule(ruleMetric, valueType, value, vehicleType, feeAmount);
+        List<String> conflicts = commitCheckedChange(version -> {
+            for (ExtraFeeRule existingRule : extraFeeRuleRepository.getRules(vehicleType).stream()
+                    .filter(rule -> rule.getMetric() == ruleMetric).toList()) {
+                ExtraFeeRuleValueType existingType = existingRule.getValueType();
+                if ((existingType == valueType && value == existingRule.getNumericValue())
+                        || (existingType == ExtraFeeRuleValueType.UNTIL
+                            && valueType == ExtraFeeRuleValueType.FROM
+                            && existingRule.getNumericValue() >= value)
+                        || (existingType == ExtraFeeRuleValueType.FROM
+                            && valueType == ExtraFeeRuleValueType.UNTIL
+                            && existingRule.getNumericValue() <= value))
+                    return List.of(String.format("Conflicting rule (ID: %d)", existingRule.getId()));
+            }
+            newRule.setRulesVersion(version);
+            extraFeeRuleRepository.save(newRule);
+            return List.of();
+        });
+        if (!conflicts.isEmpty()) throw new IncompatibleFeeRuleException(conflicts.get(0));
     }
 
     /**
@@ -115,29 +162,196 @@ public class FeeRuleInitializer {
      * @throws IncompatibleFeeRuleException in case of existence of conflicting rule or invalid parameters
      */
     public void InitializeNewRule(String phenomenon, VehicleType vehicleType, Double amount) throws IncompatibleFeeRuleException {
+        InitializeNewRule(ExtraFeeRuleValueType.PHENOMENON, phenomenon, vehicleType, amount);
+    }
+
+    /**
+     * Attempts to set a new extra fee rule with a phenomenon or phenomenon pattern value in the ExtraFeeRule table
+     * <p>
+     * In case of existence of conflicting rule throws
+     * {@link kkadak.fujitsutask.exceptions.IncompatibleFeeRuleException}
+     *
+     * @param valueType   {@link kkadak.fujitsutask.enums.ExtraFeeRuleValueType}.PHENOMENON or
+     *                    {@link kkadak.fujitsutask.enums.ExtraFeeRuleValueType}.PATTERN
+     * @param value       phenomenon or phenomenon fragments separated by '|' for which the rule applies
+     * @param vehicleType {@link kkadak.fujitsutask.enums.VehicleType} for which the rule applies
+     * @param amount      the amount of the fee, null if the use of specified vehicle is prohibited in the conditions
+     * @throws IncompatibleFeeRuleException in case of existence of conflicting rule or invalid parameters
+     */
+    public synchronized void InitializeNewRule(ExtraFeeRuleValueType valueType, String value, VehicleType vehicleType,
+                                  Double amount) throws IncompatibleFeeRuleException {
         // Check parameter validity
         if (vehicleType == null
                 || vehicleType == VehicleType.UNKNOWN
-                || phenomenon == null
-                || phenomenon.isEmpty()
+                || (valueType != ExtraFeeRuleValueType.PHENOMENON && valueType != ExtraFeeRuleValueType.PATTERN)
+                || value == null
                 || (amount != null && amount <= 0))
             throw new IncompatibleFeeRuleException("Invalid rule parameter(s)");
+        ExtraFeeRule newRule = new ExtraFeeRule(valueType, value, vehicleType, amount);
+        if (newRule.getValueStr().isEmpty()) throw new IncompatibleFeeRuleException("Invalid rule parameter(s)");
+
+        // Check conflicting rules under the lock of the version row and save new rule
+        List<String> conflicts = commitCheckedChange(version -> {
+            for (ExtraFeeRule rule : extraFeeRuleRepository.getRules(vehicleType)) {
+                if (rule.getValueType() == valueType && Objects.equals(rule.getValueStr(), newRule.getValueStr()))
+                    return List.of(String.format("Conflicting rule (ID: %d)", rule.getId()));
+            }
+            newRule.setRulesVersion(version);
+            extraFeeRuleRepository.save(newRule);
+            return List.of();
+        });
+        if (!conflicts.isEmpty()) throw new IncompatibleFeeRuleException(conflicts.get(0));
+    }
 
-        // Check conflicting rules
-        for (ExtraFeeRule rule : extraFeeRuleRepository.getRules(vehicleType)) {
-            if (rule.getValueType() == ExtraFeeRuleValueType.PHENOMENON
-                    && Objects.equals(rule.getValueStr(), phenomenon))
-                throw new IncompatibleFeeRuleException(String.format("Conflicting rule (ID: %d)", rule.getId()));
+    /**
+     * Validates a whole rule set and saves it in a single transaction
+     * <p>
+     * Every rule is translated and checked against the currently valid extra fee rules and the other rules of the
+     * set with {@link kkadak.fujitsutask.initializers.ExtraFeeRuleConflicts}. In case of any invalid or conflicting
+     * rule nothing is saved and every error is reported. Base fee rules override the current ones, but a set may
+     * only hold one for every city and vehicle type
+     *
+     * @param definitions rules of the rule set
+     * @return the amount of saved rules or every error found in the rule set, numbered from 1 in the order of the set
+     */
+    public synchronized FeeRuleImportResult ImportRules(List<FeeRuleDefinition> definitions) {
+        TreeMap<Integer, String> errors = new TreeMap<>();
+        Map<Integer, ExtraFeeRule> extraFeeRules = new LinkedHashMap<>();
+        List<BaseFeeRule> baseFeeRules = new ArrayList<>();
+        Map<List<Object>, Integer> baseFeeRuleNumbers = new HashMap<>();
+
+        for (int number = 1; number <= definitions.size(); number++) {
+            try {
+                FeeRule rule = toRule(definitions.get(number - 1));
+                if (rule instanceof ExtraFeeRule extraFeeRule) {
+                    extraFeeRules.put(number, extraFeeRule);
+                    continue;
+                }
+
+                BaseFeeRule baseFeeRule = (BaseFeeRule) rule;
+                Integer previous = baseFeeRuleNumbers.putIfAbsent(
+                        List.of(baseFeeRule.getCity(), baseFeeRule.getVehicleType()), number);
+                if (previous == null) {
+                    baseFeeRules.add(baseFeeRule);
+                    continue;
+                }
+                errors.put(number, String.format("Conflicting rule %d of the rule set", previous));
+                errors.putIfAbsent(previous, String.format("Conflicting rule %d of the rule set", number));
+            } catch (IncompatibleFeeRuleException e) {
+                errors.put(number, e.getMessage());
+            }
         }
 
-        // Save new rule
-        extraFeeRuleRepository.save(new ExtraFeeRule(phenomenon, vehicleType, amount));
+        // The rules of the set become valid at the same moment
+        long timestamp = Instant.now().getEpochSecond();
+        baseFeeRules.forEach(rule -> rule.setValidFromTimestamp(timestamp));
+        extraFeeRules.values().forEach(rule -> rule.setValidFromTimestamp(timestamp));
+
+        List<String> messages = commitCheckedChange(version -> {
+            // A single query for the currently valid rules of every vehicle type, under the lock of the version row
+            ExtraFeeRuleConflicts.find(extraFeeRuleRepository.findAll(), extraFeeRules).forEach(errors::putIfAbsent);
+            if (!errors.isEmpty()) {
+                List<String> errorMessages = new ArrayList<>();
+                errors.forEach((number, message) -> errorMessages.add(String.format("Rule %d: %s", number, message)));
+                return errorMessages;
+            }
+
+            baseFeeRules.forEach(rule -> rule.setRulesVersion(version));
+            extraFeeRules.values().forEach(rule -> rule.setRulesVersion(version));
+            baseFeeRuleRepository.saveAll(baseFeeRules);
+            extraFeeRuleRepository.saveAll(extraFeeRules.values());
+            return List.of();
+        });
+        if (!messages.isEmpty()) return FeeRuleImportResult.ofErrors(messages);
+        return FeeRuleImportResult.ofImported(baseFeeRules.size() + extraFeeRules.size());
+    }
+
+    /**
+     * Translates a rule of a rule set, validating its parameters the same way as the single rule methods
+     *
+     * @param definition rule of a rule set
+     * @return the translated {@link kkadak.fujitsutask.model.BaseFeeRule} or
+     * {@link kkadak.fujitsutask.model.ExtraFeeRule}
+     * @throws IncompatibleFeeRuleException in case of unknown or invalid parameters
+     */
+    private static FeeRule toRule(FeeRuleDefinition definition) throws IncompatibleFeeRuleException {
+        if (definition == null || definition.getType() == null)
+            throw new IncompatibleFeeRuleException("Specify 'type' parameter");
+        VehicleType vehicleType = StringEnumTranslator.getVehicleTypeFromStr(definition.getVehicle());
+        if (vehicleType == VehicleType.UNKNOWN)
+            throw new IncompatibleFeeRuleException("Unknown value for 'vehicle' parameter");
+
+        // Amount
+        if (definition.getAmount() == null) throw new IncompatibleFeeRuleException("Specify 'amount' parameter");
+        Double amount = null;
+        if (!definition.getAmount().equalsIgnoreCase("forbid")) {
+            try {
+                amount = Double.parseDouble(definition.getAmount());
+            } catch (NumberFormatException e) {
+                throw new IncompatibleFeeRuleException("Unknown value for 'amount' parameter");
+            }
+            if (amount <= 0) throw new IncompatibleFeeRuleException("Invalid rule parameter(s)");
+        }
+
+        if (definition.getType().equalsIgnoreCase("base")) {
+            City city = StringEnumTranslator.getCityFromStr(definition.getCity());
+            if (city == City.UNKNOWN) throw new IncompatibleFeeRuleException("Unknown value for 'city' parameter");
+            return new BaseFeeRule(city, vehicleType, amount);
+        }
+
+        ExtraFeeRuleValueType valueType = StringEnumTranslator.getValueTypeFromStr(definition.getType());
+        if (valueType == ExtraFeeRuleValueType.UNKNOWN)
+            throw new IncompatibleFeeRuleException("Unknown value for 'type' parameter");
+        if (definition.getValue() == null) throw new IncompatibleFeeRuleException("Specify 'value' parameter");
+
+        if (valueType == ExtraFeeRuleValueType.PHENOMENON || valueType == ExtraFeeRuleValueType.PATTERN) {
+            ExtraFeeRule rule = new ExtraFeeRule(valueType, definition.getValue(), vehicleType, amount);
+            if (rule.getValueStr().isEmpty()) throw new IncompatibleFeeRuleException("Invalid rule parameter(s)");
+            return rule;
+        }
+
+        ExtraFeeRuleMetric metric = StringEnumTranslator.getMetricFromStr(definition.getMetric());
+        if (metric == ExtraFeeRuleMetric.UNKNOWN || metric == ExtraFeeRuleMetric.PHENOMENON)
+            throw new IncompatibleFeeRuleException("Unknown value for 'metric' parameter");
+        try {
+            return new ExtraFeeRule(metric, valueType, Double.parseDouble(definition.getValue()), vehicleType, amount);
+        } catch (NumberFormatException e) {
+            throw new IncompatibleFeeRuleException("Unknown value for 'value' parameter");
+        }
+    }
+
+    /**
+     * Disables a currently valid extra fee rule by moving it to the ExtraFeeRuleHistory table
+     * <p>
+     * The rule is read after the version row has been locked, so a rule disabled concurrently by another request or
+     * instance is reported instead of being disabled again. In case the rule is not valid throws
+     * {@link kkadak.fujitsutask.exceptions.IncompatibleFeeRuleException}
+     *
+     * @param ruleId ID of the currently valid {@link kkadak.fujitsutask.model.ExtraFeeRule} to disable
+     * @throws IncompatibleFeeRuleException in case the rule is already disabled or does not exist
+     */
+    public synchronized void DisableRule(long ruleId) throws IncompatibleFeeRuleException {
+        long timestamp = Instant.now().getEpochSecond();
+        List<String> errors = commitCheckedChange(version -> {
+            Optional<ExtraFeeRule> rule = extraFeeRuleRepository.findById(ruleId);
+            if (rule.isEmpty())
+                return List.of(extraFeeRuleHistoryRepository.existsById(ruleId)
+                        ? "Rule already disabled" : "Rule not found");
+            extraFeeRuleHistoryRepository.save(new ExtraFeeRuleHistory(rule.get(), timestamp, version));
+            extraFeeRuleRepository.delete(rule.get());
+            return List.of();
+        });
+        if (!errors.isEmpty()) throw new IncompatibleFeeRuleException(errors.get(0));
     }
 
     /**
      * Initializes the fee rules to their default values in the fee rule tables
+     * <p>
+     * The currently valid extra fee rules are moved to the history table with a single insert and delete and the
+     * default rules are inserted in batches within the same transaction, the rule cache is refreshed only after the
+     * transaction has committed
      */
-    public void InitializeDefaultRules() {
+    public synchronized void InitializeDefaultRules() {
         final List<BaseFeeRule> baseFeeRules = new ArrayList<>() {
             {
                 // Base fees for Tallinn
@@ -203,16 +417,75 @@ public class FeeRuleInitializer {
             }
         };
 
-        List<ExtraFeeRule> currentExtraFeeRules = extraFeeRuleRepository.findAll();
+        // The default rules become valid at the same moment the current ones are disabled
         long timestamp = Instant.now().getEpochSecond();
+        baseFeeRules.forEach(rule -> rule.setValidFromTimestamp(timestamp));
+        extraFeeRules.forEach(rule -> rule.setValidFromTimestamp(timestamp));
+
+        commitChange(version -> {
+            baseFeeRules.forEach(rule -> rule.setRulesVersion(version));
+            extraFeeRules.forEach(rule -> rule.setRulesVersion(version));
+            extraFeeRuleHistoryRepository.archiveActiveRules(timestamp, version);
+            extraFeeRuleRepository.deleteAllInBatch();
+            baseFeeRuleRepository.saveAll(baseFeeRules);
+            extraFeeRuleRepository.saveAll(extraFeeRules);
+        });
+    }
+
+    /**
+     * Saves a change of the fee rules in a transaction and publishes a
+     * {@link kkadak.fujitsutask.events.FeeRulesChangedEvent} within it, the event reaches the listeners only after
+     * the transaction has committed and is dropped in case it rolls back
+     * <p>
+     * The version row is incremented first and stays locked until the commit, so the changes of all instances are
+     * serialized and the versions of the events follow the order of the commits
+     *
+     * @param change saves the change to the fee rule tables, receives the new version of the fee rules which the saved
+     *               rules are marked with
+     */
+    private void commitChange(LongConsumer change) {
+        commitCheckedChange(version -> {
+            change.accept(version);
+            return List.of();
+        });
+    }
 
-        for (ExtraFeeRule rule : currentExtraFeeRules) {
-            if (rule.getValidUntilTimestamp() == null) rule.setValidUntilTimestamp(timestamp);
+    /**
+     * Saves a change of the fee rules which has to be checked against the currently valid rules, the same way as
+     * {@link #commitChange(LongConsumer)}
+     * <p>
+     * The change reads the rules it is checked against after the version row has been locked, so no other instance
+     * can save a conflicting rule between the check and the commit. In case the change finds any errors the
+     * transaction is rolled back and no event is published
+     *
+     * @param change checks and saves the change to the fee rule tables, receives the new version of the fee rules which
+     *               the saved rules are marked with and returns the errors which prevent saving it
+     * @return errors returned by the change, empty in case the change was committed
+     */
+    private List<String> commitCheckedChange(LongFunction<List<String>> change) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                rulesVersionRepository.increment();
+                long version = rulesVersionRepository.getVersion();
+                List<String> errors = change.apply(version);
+                if (!errors.isEmpty()) throw new RejectedChangeException(errors);
+                eventPublisher.publishEvent(new FeeRulesChangedEvent(version));
+            });
+            return List.of();
+        } catch (RejectedChangeException e) {
+            return e.errors;
         }
+    }
 
-        extraFeeRuleRepository.saveAll(currentExtraFeeRules);
+    /**
+     * Rolls back a rejected rule change, carrying its errors out of the transaction
+     */
+    private static final class RejectedChangeException extends RuntimeException {
+        private final List<String> errors;
 
-        baseFeeRuleRepository.saveAll(baseFeeRules);
-        extraFeeRuleRepository.saveAll(extraFeeRules);
+        private RejectedChangeException(List<String> errors) {
+            super(null, null, false, false);
+            this.errors = errors;
+        }
     }
 }
@@ -0,0 +1,32 @@
+package kkadak.fujitsutask.initializers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the progress of the {@link kkadak.fujitsutask.initializers.StartupInitializer} as the 'startup' health
+ * component, which is part of the readiness group, so the instance is out of service until it is ready for traffic
+ */
+@Component
+public class StartupHealthIndicator implements HealthIndicator {
+    private final StartupInitializer startupInitializer;
+
+    @Autowired
+    public StartupHealthIndicator(StartupInitializer startupInitializer) {
+        this.startupInitializer = startupInitializer;
+    }
+
+    @Override
+    public Health health() {
+        boolean cachesLoaded = startupInitializer.isCachesLoaded();
+        boolean weatherData = startupInitializer.hasLatestWeatherData();
+        boolean warmedUp = startupInitializer.isWarmedUp();
+        Health.Builder builder = cachesLoaded && weatherData && warmedUp ? Health.up() : Health.outOfService();
+        return builder.withDetail("cachesLoaded", cachesLoaded)
+                .withDetail("weatherData", weatherData)
+                .withDetail("warmedUp", warmedUp)
+                .build();
+    }
+}
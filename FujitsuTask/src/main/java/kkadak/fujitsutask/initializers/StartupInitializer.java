@@ -0,0 +1,188 @@
+package kkadak.fujitsutask.initializers;
+
+import kkadak.fujitsutask.cache.FeeMatrixCache;
+import kkadak.fujitsutask.cache.FeeRuleCache;
+import kkadak.fujitsutask.cache.WeatherDataCache;
+import kkadak.fujitsutask.cron.WeatherDataImporter;
+import kkadak.fujitsutask.enums.City;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.service.DeliveryService;
+import kkadak.fujitsutask.translators.WeatherStationTranslator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Prepares the application for serving requests in the background, so that the startup does not wait for the weather
+ * data fetch
+ * <p>
+ * Loads the caches, imports the weather data and warms up the fee calculation with synthetic
+ * {@link kkadak.fujitsutask.service.DeliveryService#getDeliveryFee(City, VehicleType)} calls, the instance is ready
+ * for traffic once all of these are done and the latest weather data of every station is present. Weather data counts
+ * as the latest once it is at most the configured age, so data left in the store from before a restart does not make
+ * the instance ready
+ *
+ * @see kkadak.fujitsutask.initializers.StartupHealthIndicator
+ */
+@Component
+public class StartupInitializer {
+    private final WeatherDataCache weatherDataCache;
+    private final FeeRuleCache feeRuleCache;
+    private final FeeMatrixCache feeMatrixCache;
+    private final WeatherDataImporter weatherDataImporter;
+    private final DeliveryService deliveryService;
+    private final TaskScheduler taskScheduler;
+
+    /**
+     * Amount of synthetic fee calculations made before the instance is ready
+     */
+    private final int warmUpCalls;
+
+    /**
+     * Delay before retrying a failed cache load or a fetch which left a station without weather data
+     */
+    private final Duration retryDelay;
+
+    /**
+     * Maximum age of the latest weather data of a station for it to count as the latest observation
+     */
+    private final Duration weatherMaxAge;
+
+    private volatile boolean cachesLoaded;
+    private volatile boolean latestWeatherDataLoaded;
+    private volatile boolean warmedUp;
+
+    /**
+     * Sum of the fees calculated during the warm-up, kept so that the calculations are not optimized away
+     */
+    private volatile double warmUpFeeSum;
+
+    @Autowired
+    public StartupInitializer(WeatherDataCache weatherDataCache, FeeRuleCache feeRuleCache,
+                              FeeMatrixCache feeMatrixCache, WeatherDataImporter weatherDataImporter,
+                              DeliveryService deliveryService, TaskScheduler taskScheduler,
+                              @Value("${startup.warm-up-calls}") int warmUpCalls,
+                              @Value("${startup.retry-delay-ms}") long retryDelayMs,
+                              @Value("${startup.weather-max-age-ms}") long weatherMaxAgeMs) {
+        this.weatherDataCache = weatherDataCache;
+        this.feeRuleCache = feeRuleCache;
+        this.feeMatrixCache = feeMatrixCache;
+        this.weatherDataImporter = weatherDataImporter;
+        this.deliveryService = deliveryService;
+        this.taskScheduler = taskScheduler;
+        this.warmUpCalls = warmUpCalls;
+        this.retryDelay = Duration.ofMillis(retryDelayMs);
+        this.weatherMaxAge = Duration.ofMillis(weatherMaxAgeMs);
+    }
+
+    /**
+     * Schedules the {@link #initialize()} method to run in the background right away
+     */
+    public void start() {
+        taskScheduler.schedule(this::initialize, Instant.now());
+    }
+
+    /**
+     * Loads the caches and runs the weather data fetch once to ensure existence of relevant weather information, then
+     * schedules the fetch to run according to the cron expression and warms up the fee calculation
+     * <p>
+     * In case loading the caches fails, the whole initialization is retried after the retry delay
+     */
+    void initialize() {
+        try {
+            weatherDataCache.reload();
+            feeRuleCache.getSnapshot();
+            feeMatrixCache.getMatrix();
+            cachesLoaded = true;
+        } catch (Exception e) {
+            System.out.printf("Exception thrown while loading caches: %s%n", e.getMessage());
+            taskScheduler.schedule(this::initialize, Instant.now().plus(retryDelay));
+            return;
+        }
+
+        weatherDataImporter.fetchAndSave();
+        weatherDataImporter.scheduleFetch();
+
+        // Warms up with whatever weather data there is, a missing station is fetched again afterwards
+        warmUp();
+        warmedUp = true;
+        if (!hasLatestWeatherData()) taskScheduler.schedule(this::retryFetch, Instant.now().plus(retryDelay));
+    }
+
+    /**
+     * Runs the weather data fetch again until every station has its latest weather data
+     */
+    void retryFetch() {
+        weatherDataImporter.fetchAndSave();
+        if (!hasLatestWeatherData()) taskScheduler.schedule(this::retryFetch, Instant.now().plus(retryDelay));
+    }
+
+    /**
+     * Calculates fees for every city and vehicle type pair in turn, alternating between the current fees and the fees
+     * of the past week, so that the code paths of both are compiled before the first request
+     */
+    void warmUp() {
+        City[] cities = City.values();
+        VehicleType[] vehicleTypes = VehicleType.values();
+        long now = Instant.now().getEpochSecond();
+        double sum = 0;
+
+        for (int i = 0; i < warmUpCalls; i++) {
+            City city = cities[i % cities.length];
+            VehicleType vehicleType = vehicleTypes[i / cities.length % vehicleTypes.length];
+            try {
+                sum += i % 2 == 0
+                        ? deliveryService.getDeliveryFee(city, vehicleType)
+                        : deliveryService.getDeliveryFee(city, vehicleType, now - i % 168 * 3600L);
+            } catch (DeliveryFeeCalculationException ignored) {
+                // Forbidden deliveries and missing rules take the same code paths as in real requests
+            }
+        }
+        warmUpFeeSum = sum;
+    }
+
+    /**
+     * Returns whether the weather data cache holds the latest weather data for every station, that is weather data
+     * at most {@link #weatherMaxAge} old
+     * <p>
+     * Once every station has had its latest weather data, the method keeps returning true, so an outage of the weather
+     * API after the startup does not take every instance out of service at the same time
+     *
+     * @return true if every station declared in {@link kkadak.fujitsutask.translators.WeatherStationTranslator} has
+     * weather data at most {@link #weatherMaxAge} old
+     */
+    public boolean hasLatestWeatherData() {
+        if (latestWeatherDataLoaded) return true;
+        if (!cachesLoaded) return false;
+        long oldestAccepted = Instant.now().minus(weatherMaxAge).getEpochSecond();
+        for (int stationWmo : WeatherStationTranslator.getStationWmosToFetch()) {
+            WeatherData latest = weatherDataCache.getLatest(stationWmo);
+            if (latest == null || latest.getTimestamp() < oldestAccepted) return false;
+        }
+        latestWeatherDataLoaded = true;
+        return true;
+    }
+
+    public boolean isCachesLoaded() {
+        return cachesLoaded;
+    }
+
+    public boolean isWarmedUp() {
+        return warmedUp;
+    }
+
+    /**
+     * Returns whether the instance is ready for traffic
+     *
+     * @return true if the caches are loaded, every station has weather data and the warm-up has finished
+     */
+    public boolean isReady() {
+        return cachesLoaded && warmedUp && hasLatestWeatherData();
+    }
+}
@@ -1,14 +1,20 @@
 package kkadak.fujitsutask.model;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.Transient;
 import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
 import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
 import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.translators.PhenomenonTranslator;
 
 import java.time.Instant;
 
 /**
  * A single extra fee rule for the fee calculation
+ * <p>
+ * The ExtraFeeRule table only holds the currently valid rules, disabled rules are moved to the
+ * {@link kkadak.fujitsutask.model.ExtraFeeRuleHistory} table
  */
 @Entity
 public class ExtraFeeRule extends FeeRule {
@@ -33,8 +39,16 @@ public class ExtraFeeRule extends FeeRule {
     private String valueStr;
 
     /**
-     * Amount of seconds past UTC epoch when the rule was disabled
+     * The numeric value of the metric the rule applies for, null in case of a phenomenon rule
      */
+    private Double numericValue;
+
+    /**
+     * Amount of seconds past UTC epoch when the rule was disabled, null for the rules of the ExtraFeeRule table
+     *
+     * @see kkadak.fujitsutask.model.ExtraFeeRuleHistory#toExtraFeeRule()
+     */
+    @Transient
     private Long validUntilTimestamp;
 
     public ExtraFeeRuleMetric getMetric() {
@@ -61,6 +75,14 @@ public class ExtraFeeRule extends FeeRule {
         this.valueStr = valueStr;
     }
 
+    public Double getNumericValue() {
+        return numericValue;
+    }
+
+    public void setNumericValue(Double numericValue) {
+        this.numericValue = numericValue;
+    }
+
     public Long getValidUntilTimestamp() {
         return validUntilTimestamp;
     }
@@ -75,6 +97,16 @@ public class ExtraFeeRule extends FeeRule {
     protected ExtraFeeRule() {
     }
 
+    /**
+     * Fills in {@link #numericValue} for numeric rules which were saved before the value was stored as a number
+     */
+    @PostLoad
+    private void parseLegacyValue() {
+        if (numericValue == null && valueStr != null
+                && (valueType == ExtraFeeRuleValueType.FROM || valueType == ExtraFeeRuleValueType.UNTIL))
+            numericValue = Double.parseDouble(valueStr);
+    }
+
     /**
      * Constructor for creating an extra fee rule with a numeric value
      *
@@ -89,6 +121,7 @@ public class ExtraFeeRule extends FeeRule {
         this.metric = metric;
         this.valueType = valueType;
         this.valueStr = String.format("%f", value);
+        this.numericValue = value;
         this.setVehicleType(vehicleType);
         this.setFeeAmount(feeAmount);
         this.setValidFromTimestamp(Instant.now().getEpochSecond());
@@ -102,9 +135,25 @@ public class ExtraFeeRule extends FeeRule {
      * @param feeAmount   fee amount, null if the use of specified vehicle is prohibited in the conditions
      */
     public ExtraFeeRule(String phenomenon, VehicleType vehicleType, Double feeAmount) {
+        this(ExtraFeeRuleValueType.PHENOMENON, phenomenon, vehicleType, feeAmount);
+    }
+
+    /**
+     * Constructor for creating an extra fee rule with a weather phenomenon or phenomenon pattern value
+     *
+     * @param valueType   {@link kkadak.fujitsutask.enums.ExtraFeeRuleValueType}.PHENOMENON for an exact phenomenon,
+     *                    {@link kkadak.fujitsutask.enums.ExtraFeeRuleValueType}.PATTERN for phenomenon fragments
+     *                    separated by '|'
+     * @param value       phenomenon description or pattern
+     * @param vehicleType {@link kkadak.fujitsutask.enums.VehicleType} which the rule applies for
+     * @param feeAmount   fee amount, null if the use of specified vehicle is prohibited in the conditions
+     */
+    public ExtraFeeRule(ExtraFeeRuleValueType valueType, String value, VehicleType vehicleType, Double feeAmount) {
         this.metric = ExtraFeeRuleMetric.PHENOMENON;
-        this.valueType = ExtraFeeRuleValueType.PHENOMENON;
-        this.valueStr = phenomenon;
+        this.valueType = valueType;
+        this.valueStr = valueType == ExtraFeeRuleValueType.PATTERN
+                ? PhenomenonTranslator.normalizePattern(value)
+                : PhenomenonTranslator.normalize(value);
         this.setVehicleType(vehicleType);
         this.setFeeAmount(feeAmount);
         this.setValidFromTimestamp(Instant.now().getEpochSecond());
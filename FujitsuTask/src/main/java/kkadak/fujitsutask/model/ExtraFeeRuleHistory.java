@@ -0,0 +1,154 @@
+package kkadak.fujitsutask.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
+import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
+import kkadak.fujitsutask.enums.VehicleType;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * A disabled extra fee rule
+ * <p>
+ * Rules are moved here from the ExtraFeeRule table when they are disabled and are never modified afterwards, as
+ * rules are disabled at the current time the table is appended in ascending order of {@link #validUntilTimestamp}.
+ * The ID is assigned from the disabled rule, so a new rule is always inserted instead of merged and disabling a rule
+ * twice fails on the primary key instead of overwriting the first row
+ */
+@Entity
+public class ExtraFeeRuleHistory implements Persistable<Long> {
+
+    /**
+     * ID the rule had in the ExtraFeeRule table
+     */
+    @Id
+    private Long id;
+
+    /**
+     * Specifies the vehicle type the rule applied for
+     */
+    private VehicleType vehicleType;
+
+    /**
+     * Fee amount, null if the use of the vehicle type was prohibited in the conditions
+     */
+    private Double feeAmount;
+
+    /**
+     * Specifies which metric the rule applied for
+     */
+    private ExtraFeeRuleMetric metric;
+
+    /**
+     * Specifies the value type of metric the rule applied for
+     */
+    private ExtraFeeRuleValueType valueType;
+
+    /**
+     * The value of the metric the rule applied for
+     */
+    private String valueStr;
+
+    /**
+     * The numeric value of the metric the rule applied for, null in case of a phenomenon rule
+     */
+    private Double numericValue;
+
+    /**
+     * Amount of seconds past UTC epoch when the rule was set
+     */
+    private Long validFromTimestamp;
+
+    /**
+     * Amount of seconds past UTC epoch when the rule was disabled
+     */
+    private Long validUntilTimestamp;
+
+    /**
+     * Version of the fee rules in the RulesVersion table which disabled the rule, null for rules disabled before the
+     * version was recorded
+     */
+    private Long rulesVersion;
+
+    /**
+     * Whether the rule has not been inserted into the table yet
+     */
+    @Transient
+    private boolean isNew = true;
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    /**
+     * Marks the rule as existing in the table once it has been read or inserted
+     */
+    @PostLoad
+    @PostPersist
+    private void markNotNew() {
+        isNew = false;
+    }
+
+    public Long getValidFromTimestamp() {
+        return validFromTimestamp;
+    }
+
+    public Long getValidUntilTimestamp() {
+        return validUntilTimestamp;
+    }
+
+    public Long getRulesVersion() {
+        return rulesVersion;
+    }
+
+    /**
+     * Required for JPA
+     */
+    protected ExtraFeeRuleHistory() {
+    }
+
+    /**
+     * Primary constructor
+     *
+     * @param rule                the disabled {@link kkadak.fujitsutask.model.ExtraFeeRule}
+     * @param validUntilTimestamp amount of seconds past UTC epoch when the rule was disabled
+     * @param rulesVersion        version of the fee rules which disabled the rule
+     */
+    public ExtraFeeRuleHistory(ExtraFeeRule rule, long validUntilTimestamp, long rulesVersion) {
+        this.id = rule.getId();
+        this.vehicleType = rule.getVehicleType();
+        this.feeAmount = rule.getFeeAmount();
+        this.metric = rule.getMetric();
+        this.valueType = rule.getValueType();
+        this.valueStr = rule.getValueStr();
+        this.numericValue = rule.getNumericValue();
+        this.validFromTimestamp = rule.getValidFromTimestamp();
+        this.validUntilTimestamp = validUntilTimestamp;
+        this.rulesVersion = rulesVersion;
+    }
+
+    /**
+     * Returns the rule as a disabled {@link kkadak.fujitsutask.model.ExtraFeeRule} which is not managed by JPA
+     *
+     * @return disabled {@link kkadak.fujitsutask.model.ExtraFeeRule} with the ID and validity of this rule
+     */
+    public ExtraFeeRule toExtraFeeRule() {
+        ExtraFeeRule rule = metric == ExtraFeeRuleMetric.PHENOMENON
+                ? new ExtraFeeRule(valueType, valueStr, vehicleType, feeAmount)
+                : new ExtraFeeRule(metric, valueType, numericValue, vehicleType, feeAmount);
+        rule.setId(id);
+        rule.setValueStr(valueStr);
+        rule.setValidFromTimestamp(validFromTimestamp);
+        rule.setValidUntilTimestamp(validUntilTimestamp);
+        return rule;
+    }
+}
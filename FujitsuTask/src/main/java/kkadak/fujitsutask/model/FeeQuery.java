@@ -0,0 +1,69 @@
+package kkadak.fujitsutask.model;
+
+/**
+ * A single item of a batch delivery fee query
+ * <p>
+ * Field values are translated the same way as the parameters of the single fee query endpoint
+ */
+public class FeeQuery {
+
+    /**
+     * City of the delivery, translated to {@link kkadak.fujitsutask.enums.City}
+     * using {@link kkadak.fujitsutask.translators.StringEnumTranslator}
+     */
+    private String city;
+
+    /**
+     * Vehicle used for the delivery, translated to {@link kkadak.fujitsutask.enums.VehicleType}
+     * using {@link kkadak.fujitsutask.translators.StringEnumTranslator}
+     */
+    private String vehicle;
+
+    /**
+     * Amount of seconds past UTC epoch for which the fee is calculated, null for the current fee
+     */
+    private Long time;
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public String getVehicle() {
+        return vehicle;
+    }
+
+    public void setVehicle(String vehicle) {
+        this.vehicle = vehicle;
+    }
+
+    public Long getTime() {
+        return time;
+    }
+
+    public void setTime(Long time) {
+        this.time = time;
+    }
+
+    /**
+     * Default constructor
+     */
+    public FeeQuery() {
+    }
+
+    /**
+     * Primary constructor
+     *
+     * @param city    city of the delivery
+     * @param vehicle vehicle used for the delivery
+     * @param time    amount of seconds past UTC epoch, null for the current fee
+     */
+    public FeeQuery(String city, String vehicle, Long time) {
+        this.city = city;
+        this.vehicle = vehicle;
+        this.time = time;
+    }
+}
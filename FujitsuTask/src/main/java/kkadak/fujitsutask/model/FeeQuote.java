@@ -0,0 +1,53 @@
+package kkadak.fujitsutask.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Result of a single {@link kkadak.fujitsutask.model.FeeQuery}, holds either the fee or the error message
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FeeQuote {
+
+    /**
+     * Total delivery fee, null in case of error
+     */
+    private final Double fee;
+
+    /**
+     * Reason why the fee could not be calculated, null in case of success
+     */
+    private final String error;
+
+    private FeeQuote(Double fee, String error) {
+        this.fee = fee;
+        this.error = error;
+    }
+
+    /**
+     * Creates a successful quote
+     *
+     * @param fee total delivery fee
+     * @return quote holding the fee
+     */
+    public static FeeQuote ofFee(double fee) {
+        return new FeeQuote(fee, null);
+    }
+
+    /**
+     * Creates a failed quote
+     *
+     * @param error reason why the fee could not be calculated
+     * @return quote holding the error message
+     */
+    public static FeeQuote ofError(String error) {
+        return new FeeQuote(null, error);
+    }
+
+    public Double getFee() {
+        return fee;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -9,7 +9,8 @@ import kkadak.fujitsutask.enums.VehicleType;
 @Entity
 // Specifies a table per concrete class in the database, separates base fee rules table and extra fee rules table
 @Inheritance(strategy = InheritanceType.TABLE_PER_CLASS)
-@SequenceGenerator(name = "fee_rule_seq", sequenceName = "fee_rule_seq", allocationSize = 1)
+// Identifiers are allocated in blocks of 50 to avoid a sequence round trip per inserted rule
+@SequenceGenerator(name = "fee_rule_seq", sequenceName = "fee_rule_seq", allocationSize = 50)
 public abstract class FeeRule {
 
     /**
@@ -36,6 +37,12 @@ public abstract class FeeRule {
      */
     private Long validFromTimestamp;
 
+    /**
+     * Version of the fee rules in the RulesVersion table which saved the rule, null for rules saved before the
+     * version was recorded
+     */
+    private Long rulesVersion;
+
     public Long getId() {
         return id;
     }
@@ -67,4 +74,12 @@ public abstract class FeeRule {
     public void setValidFromTimestamp(Long timestamp) {
         this.validFromTimestamp = timestamp;
     }
+
+    public Long getRulesVersion() {
+        return rulesVersion;
+    }
+
+    public void setRulesVersion(Long rulesVersion) {
+        this.rulesVersion = rulesVersion;
+    }
 }
@@ -0,0 +1,116 @@
+package kkadak.fujitsutask.model;
+
+/**
+ * A single rule of a bulk rule import
+ * <p>
+ * Field values are translated the same way as the parameters of the rule adding mode of the single fee query
+ * endpoint
+ */
+public class FeeRuleDefinition {
+
+    /**
+     * Type of the rule: "base", "from", "until", "phenomenon" or "pattern"
+     */
+    private String type;
+
+    /**
+     * Metric of a "from" or "until" rule, translated to {@link kkadak.fujitsutask.enums.ExtraFeeRuleMetric}
+     * using {@link kkadak.fujitsutask.translators.StringEnumTranslator}
+     */
+    private String metric;
+
+    /**
+     * Threshold of a "from" or "until" rule, phenomenon or pattern of a "phenomenon" or "pattern" rule
+     */
+    private String value;
+
+    /**
+     * Fee amount, "forbid" in case the use of the vehicle is prohibited in the conditions
+     */
+    private String amount;
+
+    /**
+     * City of a "base" rule, translated to {@link kkadak.fujitsutask.enums.City}
+     * using {@link kkadak.fujitsutask.translators.StringEnumTranslator}
+     */
+    private String city;
+
+    /**
+     * Vehicle the rule applies for, translated to {@link kkadak.fujitsutask.enums.VehicleType}
+     * using {@link kkadak.fujitsutask.translators.StringEnumTranslator}
+     */
+    private String vehicle;
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public void setMetric(String metric) {
+        this.metric = metric;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public String getAmount() {
+        return amount;
+    }
+
+    public void setAmount(String amount) {
+        this.amount = amount;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public String getVehicle() {
+        return vehicle;
+    }
+
+    public void setVehicle(String vehicle) {
+        this.vehicle = vehicle;
+    }
+
+    /**
+     * Default constructor
+     */
+    public FeeRuleDefinition() {
+    }
+
+    /**
+     * Primary constructor
+     *
+     * @param type    type of the rule
+     * @param metric  metric of a "from" or "until" rule
+     * @param value   threshold, phenomenon or pattern of the rule
+     * @param amount  fee amount or "forbid"
+     * @param city    city of a "base" rule
+     * @param vehicle vehicle the rule applies for
+     */
+    public FeeRuleDefinition(String type, String metric, String value, String amount, String city, String vehicle) {
+        this.type = type;
+        this.metric = metric;
+        this.value = value;
+        this.amount = amount;
+        this.city = city;
+        this.vehicle = vehicle;
+    }
+}
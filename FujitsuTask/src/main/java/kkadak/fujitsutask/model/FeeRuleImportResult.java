@@ -0,0 +1,55 @@
+package kkadak.fujitsutask.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Result of a bulk rule import, holds either the amount of imported rules or every error found in the rule set
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FeeRuleImportResult {
+
+    /**
+     * Amount of imported rules, null in case of errors
+     */
+    private final Integer imported;
+
+    /**
+     * Errors found in the rule set, null in case of success
+     */
+    private final List<String> errors;
+
+    private FeeRuleImportResult(Integer imported, List<String> errors) {
+        this.imported = imported;
+        this.errors = errors;
+    }
+
+    /**
+     * Creates a successful result
+     *
+     * @param imported amount of imported rules
+     * @return result holding the amount of imported rules
+     */
+    public static FeeRuleImportResult ofImported(int imported) {
+        return new FeeRuleImportResult(imported, null);
+    }
+
+    /**
+     * Creates a failed result, nothing was imported
+     *
+     * @param errors errors found in the rule set
+     * @return result holding the errors
+     */
+    public static FeeRuleImportResult ofErrors(List<String> errors) {
+        return new FeeRuleImportResult(null, List.copyOf(errors));
+    }
+
+    public Integer getImported() {
+        return imported;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,49 @@
+package kkadak.fujitsutask.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * Lease of a job which only one instance of the application may run at a time
+ *
+ * @see kkadak.fujitsutask.repository.LeaderLeaseRepository
+ */
+@Entity
+public class LeaderLease {
+
+    /**
+     * Name of the job
+     */
+    @Id
+    private String name;
+
+    /**
+     * ID of the instance holding the lease, null if it has never been acquired
+     */
+    private String holder;
+
+    /**
+     * Amount of milliseconds past UTC epoch in database time at which the lease expires
+     */
+    @Column(nullable = false)
+    private long expiresAt;
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHolder() {
+        return holder;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Required for JPA
+     */
+    protected LeaderLease() {
+    }
+}
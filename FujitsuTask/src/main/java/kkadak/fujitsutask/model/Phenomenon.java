@@ -0,0 +1,61 @@
+package kkadak.fujitsutask.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * A single entry of the dictionary of weather phenomena, {@link kkadak.fujitsutask.model.WeatherData} references the
+ * phenomenon by its code
+ *
+ * @see kkadak.fujitsutask.cache.PhenomenonDictionary
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_phenomenon_name", columnNames = "name"))
+// Phenomena are added rarely, codes are allocated one by one to keep them small and dense
+@SequenceGenerator(name = "phenomenon_seq", sequenceName = "phenomenon_seq", allocationSize = 1)
+public class Phenomenon {
+
+    /**
+     * Code of the phenomenon
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "phenomenon_seq")
+    private Integer id;
+
+    /**
+     * Normalized phenomenon description
+     *
+     * @see kkadak.fujitsutask.translators.PhenomenonTranslator#normalize(String)
+     */
+    @Column(nullable = false)
+    private String name;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Required for JPA
+     */
+    protected Phenomenon() {
+    }
+
+    /**
+     * Primary constructor
+     *
+     * @param name normalized phenomenon description
+     */
+    public Phenomenon(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,34 @@
+package kkadak.fujitsutask.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import kkadak.fujitsutask.cache.PhenomenonDictionary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+/**
+ * Stores the phenomenon of {@link kkadak.fujitsutask.model.WeatherData} as its code in the
+ * {@link kkadak.fujitsutask.cache.PhenomenonDictionary}
+ * <p>
+ * Instantiated by Hibernate through the Spring bean container while the entity manager factory is created, so the
+ * dictionary, which depends on the entity manager factory, is injected lazily
+ */
+@Converter
+public class PhenomenonConverter implements AttributeConverter<String, Integer> {
+    private final PhenomenonDictionary phenomenonDictionary;
+
+    @Autowired
+    public PhenomenonConverter(@Lazy PhenomenonDictionary phenomenonDictionary) {
+        this.phenomenonDictionary = phenomenonDictionary;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String phenomenon) {
+        return phenomenonDictionary.getCode(phenomenon);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer code) {
+        return phenomenonDictionary.getName(code);
+    }
+}
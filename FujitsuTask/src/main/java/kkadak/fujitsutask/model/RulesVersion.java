@@ -0,0 +1,43 @@
+package kkadak.fujitsutask.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * The single row of the RulesVersion table, holds the version of the fee rules shared by every instance of the
+ * application using the database
+ *
+ * @see kkadak.fujitsutask.repository.RulesVersionRepository
+ */
+@Entity
+public class RulesVersion {
+
+    /**
+     * ID of the single row
+     */
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    /**
+     * Version of the fee rules, incremented by every change of the fee rules
+     */
+    @Column(nullable = false)
+    private long version;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Required for JPA
+     */
+    protected RulesVersion() {
+    }
+}
@@ -1,21 +1,31 @@
 package kkadak.fujitsutask.model;
 
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 
 /**
  * A single point of captured data for a single weather station
  */
 @Entity
+// A station reports a single observation per timestamp, prevents importing the same observation twice
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_weather_data_station_timestamp",
+        columnNames = {"stationWmo", "timestamp"}))
+// Sequence identifiers allocated in blocks of 50 allow the inserts of an import to be sent as a single JDBC batch
+@SequenceGenerator(name = "weather_data_seq", sequenceName = "weather_data_seq", allocationSize = 50)
 public class WeatherData {
 
     /**
      * Primary key for the WeatherData table
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "weather_data_seq")
     private Long id;
 
     /**
@@ -39,8 +49,12 @@ public class WeatherData {
     private Double windSpeed;
 
     /**
-     * Phenomenon description or cloud coverage
+     * Phenomenon description or cloud coverage, stored as the code of the normalized phenomenon
+     *
+     * @see kkadak.fujitsutask.cache.PhenomenonDictionary
      */
+    @Convert(converter = PhenomenonConverter.class)
+    @Column(name = "phenomenon_code")
     private String phenomenon;
 
     /**
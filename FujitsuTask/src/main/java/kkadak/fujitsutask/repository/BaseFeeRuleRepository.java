@@ -4,6 +4,8 @@ import kkadak.fujitsutask.enums.City;
 import kkadak.fujitsutask.enums.VehicleType;
 import kkadak.fujitsutask.model.BaseFeeRule;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -22,6 +24,14 @@ public interface BaseFeeRuleRepository extends JpaRepository<BaseFeeRule, Long>
      */
     List<BaseFeeRule> findByOrderByValidFromTimestampDesc();
 
+    /**
+     * Returns the base fee rules saved by the specified change of the fee rules
+     *
+     * @param rulesVersion version of the fee rules in the RulesVersion table
+     * @return List of base fee rules saved by the change
+     */
+    List<BaseFeeRule> findByRulesVersion(long rulesVersion);
+
     /**
      * Returns an Optional object containing the currently valid base fee rule for the specified city and vehicle type
      * valid during the specified timestamp from the table if it exists
@@ -36,6 +46,8 @@ public interface BaseFeeRuleRepository extends JpaRepository<BaseFeeRule, Long>
     /**
      * Returns an Optional object containing the base fee rule for the specified city and vehicle type
      * valid during the specified timestamp from the table if it exists
+     * <p>
+     * Ordered by the whole key of the composite index, so the result is read from the index without sorting
      *
      * @param city        {@link kkadak.fujitsutask.enums.City} of the delivery
      * @param vehicleType {@link kkadak.fujitsutask.enums.VehicleType} used for the delivery
@@ -43,8 +55,13 @@ public interface BaseFeeRuleRepository extends JpaRepository<BaseFeeRule, Long>
      * @return Optional object containing the base fee rule for the specified city and vehicle type
      * valid during the specified timestamp from the table if it exists
      */
+    @Query("select r from BaseFeeRule r"
+            + " where r.city = :city"
+            + " and r.vehicleType = :vehicleType"
+            + " and r.validFromTimestamp <= :timestamp"
+            + " order by r.city, r.vehicleType, r.validFromTimestamp desc"
+            + " limit 1")
     Optional<BaseFeeRule>
-    findTopByCityAndVehicleTypeAndValidFromTimestampLessThanEqualOrderByValidFromTimestampDesc(City city,
-                                                                                               VehicleType vehicleType,
-                                                                                               long timestamp);
+    findTopByCityAndVehicleTypeAndValidFromTimestampLessThanEqualOrderByValidFromTimestampDesc(
+            @Param("city") City city, @Param("vehicleType") VehicleType vehicleType, @Param("timestamp") long timestamp);
 }
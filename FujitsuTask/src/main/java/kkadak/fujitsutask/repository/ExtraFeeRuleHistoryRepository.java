@@ -0,0 +1,66 @@
+package kkadak.fujitsutask.repository;
+
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.model.ExtraFeeRuleHistory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository for interacting with the ExtraFeeRuleHistory table
+ */
+@Repository
+public interface ExtraFeeRuleHistoryRepository extends JpaRepository<ExtraFeeRuleHistory, Long> {
+
+    /**
+     * Returns all disabled extra fee rules in descending order of creation
+     *
+     * @return all disabled extra fee rules in descending order of creation
+     */
+    List<ExtraFeeRuleHistory> findByOrderByValidFromTimestampDesc();
+
+    /**
+     * Returns the extra fee rules disabled by the specified change of the fee rules
+     *
+     * @param rulesVersion version of the fee rules in the RulesVersion table
+     * @return List of extra fee rules disabled by the change
+     */
+    List<ExtraFeeRuleHistory> findByRulesVersion(long rulesVersion);
+
+    /**
+     * Returns the disabled extra fee rules for specified vehicle type which were valid during specified timestamp
+     * <p>
+     * Only the rules disabled after the timestamp are read, which is the end of the table in the order of appending
+     *
+     * @param vehicleType {@link kkadak.fujitsutask.enums.VehicleType} used for the delivery
+     * @param timestamp   timestamp in seconds past UTC epoch
+     * @return List of disabled extra fee rules for specified vehicle type which were valid during specified timestamp
+     */
+    @Query("select r from ExtraFeeRuleHistory r"
+            + " where r.vehicleType = :vehicleType"
+            + " and r.validUntilTimestamp > :timestamp"
+            + " and r.validFromTimestamp <= :timestamp")
+    List<ExtraFeeRuleHistory> getRules(@Param("vehicleType") VehicleType vehicleType,
+                                       @Param("timestamp") long timestamp);
+
+    /**
+     * Copies all currently valid extra fee rules to the table with a single statement, the rules have to be deleted
+     * from the ExtraFeeRule table within the same transaction
+     *
+     * @param timestamp    amount of seconds past UTC epoch from which the rules are no longer valid
+     * @param rulesVersion version of the fee rules which disables the rules
+     * @return amount of copied rules
+     */
+    @Modifying
+    @Query("insert into ExtraFeeRuleHistory"
+            + " (id, vehicleType, feeAmount, metric, valueType, valueStr, numericValue, validFromTimestamp,"
+            + " validUntilTimestamp, rulesVersion)"
+            + " select r.id, r.vehicleType, r.feeAmount, r.metric, r.valueType, r.valueStr, r.numericValue,"
+            + " r.validFromTimestamp, :timestamp, :rulesVersion"
+            + " from ExtraFeeRule r")
+    int archiveActiveRules(@Param("timestamp") long timestamp, @Param("rulesVersion") long rulesVersion);
+}
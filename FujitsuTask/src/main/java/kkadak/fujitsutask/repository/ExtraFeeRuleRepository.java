@@ -16,12 +16,20 @@ import java.util.List;
 public interface ExtraFeeRuleRepository extends JpaRepository<ExtraFeeRule, Long> {
 
     /**
-     * Returns all extra fee rules in descending order of creation
+     * Returns all currently valid extra fee rules in descending order of creation
      *
-     * @return all extra fee rules in descending order of creation
+     * @return all currently valid extra fee rules in descending order of creation
      */
     List<ExtraFeeRule> findByOrderByValidFromTimestampDesc();
 
+    /**
+     * Returns the currently valid extra fee rules saved by the specified change of the fee rules
+     *
+     * @param rulesVersion version of the fee rules in the RulesVersion table
+     * @return List of currently valid extra fee rules saved by the change
+     */
+    List<ExtraFeeRule> findByRulesVersion(long rulesVersion);
+
     /**
      * Returns the currently valid extra fee rules for specified vehicle type
      *
@@ -29,21 +37,23 @@ public interface ExtraFeeRuleRepository extends JpaRepository<ExtraFeeRule, Long
      * @return List of currently valid extra fee rules for specified vehicle type
      */
     @Query("select r from ExtraFeeRule r"
-            + " where r.vehicleType = :vehicleType"
-            + " and r.validUntilTimestamp is null")
+            + " where r.vehicleType = :vehicleType")
     List<ExtraFeeRule> getRules(@Param("vehicleType") VehicleType vehicleType);
 
     /**
-     * Returns the extra fee rules for specified vehicle type which were valid during specified timestamp
+     * Returns the currently valid extra fee rules for specified vehicle type which were already valid during
+     * specified timestamp
+     * <p>
+     * The rules which were disabled since are returned by
+     * {@link kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository#getRules(VehicleType, long)}
      *
      * @param vehicleType {@link kkadak.fujitsutask.enums.VehicleType} used for the delivery
      * @param timestamp   latest accepted timestamp in seconds past UTC epoch
-     * @return List of extra fee rules for specified vehicle type which were valid during specified timestamp
+     * @return List of currently valid extra fee rules for specified vehicle type which were valid during specified
+     * timestamp
      */
     @Query("select r from ExtraFeeRule r"
             + " where r.vehicleType = :vehicleType"
-            + " and r.validFromTimestamp <= :timestamp"
-            + " and (r.validUntilTimestamp > :timestamp"
-            + " or r.validUntilTimestamp is null)")
+            + " and r.validFromTimestamp <= :timestamp")
     List<ExtraFeeRule> getRules(@Param("vehicleType") VehicleType vehicleType, @Param("timestamp") long timestamp);
 }
@@ -0,0 +1,47 @@
+package kkadak.fujitsutask.repository;
+
+import kkadak.fujitsutask.model.LeaderLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for interacting with the LeaderLease table
+ * <p>
+ * The leases are compared against the clock of the database, so the clocks of the instances do not have to agree
+ */
+@Repository
+public interface LeaderLeaseRepository extends JpaRepository<LeaderLease, String> {
+
+    /**
+     * Acquires or renews a lease for the specified duration in case it is free, expired or already held by the
+     * holder, with a single conditional update
+     *
+     * @param name     name of the job
+     * @param holder   ID of the instance acquiring the lease
+     * @param duration amount of milliseconds the lease is valid for
+     * @return 1 if the holder now holds the lease, 0 otherwise
+     */
+    @Modifying
+    @Query(value = "update leader_lease"
+            + " set holder = :holder,"
+            + " expires_at = cast(extract(epoch from current_timestamp) * 1000 as bigint) + :duration"
+            + " where name = :name"
+            + " and (holder = :holder or expires_at <= cast(extract(epoch from current_timestamp) * 1000 as bigint))",
+            nativeQuery = true)
+    int acquire(@Param("name") String name, @Param("holder") String holder, @Param("duration") long duration);
+
+    /**
+     * Releases a lease held by the holder, so that another instance can acquire it without waiting for it to expire
+     *
+     * @param name   name of the job
+     * @param holder ID of the instance releasing the lease
+     * @return 1 if the lease was held by the holder, 0 otherwise
+     */
+    @Modifying
+    @Query(value = "update leader_lease set expires_at = 0 where name = :name and holder = :holder",
+            nativeQuery = true)
+    int release(@Param("name") String name, @Param("holder") String holder);
+}
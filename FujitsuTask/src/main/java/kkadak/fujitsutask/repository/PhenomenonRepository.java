@@ -0,0 +1,20 @@
+package kkadak.fujitsutask.repository;
+
+import kkadak.fujitsutask.model.Phenomenon;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for interacting with the Phenomenon table
+ */
+@Repository
+public interface PhenomenonRepository extends JpaRepository<Phenomenon, Integer> {
+
+    /**
+     * Returns the phenomenon with the specified normalized description
+     *
+     * @param name normalized phenomenon description
+     * @return the phenomenon, null if it does not exist
+     */
+    Phenomenon findByName(String name);
+}
@@ -0,0 +1,35 @@
+package kkadak.fujitsutask.repository;
+
+import kkadak.fujitsutask.model.RulesVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for interacting with the RulesVersion table
+ * <p>
+ * The version is read and written with native statements, so the value is never served from the persistence context
+ */
+@Repository
+public interface RulesVersionRepository extends JpaRepository<RulesVersion, Integer> {
+
+    /**
+     * Returns the current version of the fee rules
+     *
+     * @return current version of the fee rules
+     */
+    @Query(value = "select version from rules_version where id = " + RulesVersion.ID, nativeQuery = true)
+    long getVersion();
+
+    /**
+     * Increments the version of the fee rules, the row stays locked until the end of the transaction, so the rule
+     * changes of all instances are serialized and their versions follow the order of the commits
+     *
+     * @return amount of updated rows
+     */
+    @Modifying
+    @Query(value = "update rules_version set version = version + 1 where id = " + RulesVersion.ID,
+            nativeQuery = true)
+    int increment();
+}
@@ -1,9 +1,15 @@
 package kkadak.fujitsutask.repository;
 
 import kkadak.fujitsutask.model.WeatherData;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Repository for interacting with the WeatherData table
  */
@@ -20,10 +26,62 @@ public interface WeatherDataRepository extends JpaRepository<WeatherData, Long>
 
     /**
      * Returns the most recent WeatherData entry for the specified station before the specified timestamp from the table
+     * <p>
+     * Ordered by the whole key of the composite index, so the result is read from the index without sorting
      *
      * @param stationWmo WMO code of the station
      * @param timestamp  latest accepted timestamp in seconds past UTC epoch
      * @return most recent WeatherData entry for the specified station before the specified timestamp from the table
      */
-    WeatherData getTopByStationWmoAndTimestampLessThanEqualOrderByTimestampDesc(int stationWmo, long timestamp);
+    @Query("select w from WeatherData w"
+            + " where w.stationWmo = :stationWmo"
+            + " and w.timestamp <= :timestamp"
+            + " order by w.stationWmo, w.timestamp desc"
+            + " limit 1")
+    WeatherData getTopByStationWmoAndTimestampLessThanEqualOrderByTimestampDesc(@Param("stationWmo") int stationWmo,
+                                                                              @Param("timestamp") long timestamp);
+
+    /**
+     * Returns all WeatherData entries for the specified station in ascending order of measurement
+     *
+     * @param stationWmo WMO code of the station
+     * @return List of all WeatherData entries for the specified station in ascending order of measurement
+     */
+    List<WeatherData> findByStationWmoOrderByTimestampAsc(int stationWmo);
+
+    /**
+     * Returns the WMO codes of the specified stations which already have a WeatherData entry for the specified
+     * timestamp
+     *
+     * @param timestamp   timestamp in seconds past UTC epoch
+     * @param stationWmos WMO codes of the stations to check
+     * @return List of WMO codes of the stations which already have an entry for the timestamp
+     */
+    @Query("select w.stationWmo from WeatherData w"
+            + " where w.timestamp = :timestamp"
+            + " and w.stationWmo in :stationWmos")
+    List<Integer> findStationWmosWithTimestamp(@Param("timestamp") long timestamp,
+                                              @Param("stationWmos") Collection<Integer> stationWmos);
+
+    /**
+     * Returns a limited amount of WeatherData entries for the specified station within the specified time range in
+     * ascending order of measurement
+     *
+     * @param stationWmo WMO code of the station
+     * @param from       earliest accepted timestamp in seconds past UTC epoch
+     * @param until      latest accepted timestamp in seconds past UTC epoch
+     * @param limit      maximum amount of entries to return
+     * @return List of WeatherData entries for the specified station within the time range in ascending order of
+     * measurement
+     */
+    List<WeatherData> findByStationWmoAndTimestampBetweenOrderByTimestampAsc(int stationWmo, long from, long until,
+                                                                             Limit limit);
+
+    /**
+     * Returns the WMO codes of all stations which have WeatherData entries
+     *
+     * @return List of WMO codes of all stations which have WeatherData entries
+     */
+    @Query("select distinct w.stationWmo from WeatherData w")
+    List<Integer> findStationWmos();
 }
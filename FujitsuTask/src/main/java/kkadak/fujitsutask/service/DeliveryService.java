@@ -3,6 +3,10 @@ package kkadak.fujitsutask.service;
 import kkadak.fujitsutask.enums.City;
 import kkadak.fujitsutask.enums.VehicleType;
 import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
+import kkadak.fujitsutask.model.FeeQuery;
+import kkadak.fujitsutask.model.FeeQuote;
+
+import java.util.List;
 
 /**
  * Provides methods for calculating delivery fees
@@ -11,6 +15,7 @@ import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
  * for getting the total delivery fee with the most recent weather data
  * and method {@link #getDeliveryFee(City, VehicleType, long)}
  * for getting the total delivery fee for a specified time in the past (measured in seconds past UTC epoch)
+ * and method {@link #getDeliveryFees(List)} for calculating the fees of many deliveries at once
  */
 public interface DeliveryService {
 
@@ -38,4 +43,14 @@ public interface DeliveryService {
      * @throws DeliveryFeeCalculationException in case of error
      */
     double getDeliveryFee(City city, VehicleType vehicleType, long timestamp) throws DeliveryFeeCalculationException;
+
+    /**
+     * Calculates the delivery fees of a batch of queries
+     * <p>
+     * Errors are reported per item in the respective {@link kkadak.fujitsutask.model.FeeQuote}
+     *
+     * @param queries List of {@link kkadak.fujitsutask.model.FeeQuery} items
+     * @return List of {@link kkadak.fujitsutask.model.FeeQuote} items in the order of the queries
+     */
+    List<FeeQuote> getDeliveryFees(List<FeeQuery> queries);
 }
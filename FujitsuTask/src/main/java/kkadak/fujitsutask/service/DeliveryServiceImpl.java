@@ -1,173 +1,176 @@
 package kkadak.fujitsutask.service;
 
+import kkadak.fujitsutask.cache.FeeMatrix;
+import kkadak.fujitsutask.cache.FeeMatrixCache;
+import kkadak.fujitsutask.cache.FeeRuleCache;
+import kkadak.fujitsutask.cache.FeeRuleSnapshot;
+import kkadak.fujitsutask.cache.WeatherDataCache;
+import kkadak.fujitsutask.calculation.CompiledExtraFeeRules;
 import kkadak.fujitsutask.enums.City;
-import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
-import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
 import kkadak.fujitsutask.enums.VehicleType;
 import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
-import kkadak.fujitsutask.model.BaseFeeRule;
-import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.model.FeeQuery;
+import kkadak.fujitsutask.model.FeeQuote;
 import kkadak.fujitsutask.model.WeatherData;
-import kkadak.fujitsutask.repository.BaseFeeRuleRepository;
-import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
-import kkadak.fujitsutask.repository.WeatherDataRepository;
+import kkadak.fujitsutask.translators.StringEnumTranslator;
 import kkadak.fujitsutask.translators.WeatherStationTranslator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 /**
  * Implementation of the {@link kkadak.fujitsutask.service.DeliveryService} interface
  */
 @Service
 public class DeliveryServiceImpl implements DeliveryService {
-    private final WeatherDataRepository weatherDataRepository;
-    private final BaseFeeRuleRepository baseFeeRuleRepository;
-    private final ExtraFeeRuleRepository extraFeeRuleRepository;
+    private final FeeMatrixCache feeMatrixCache;
+    private final FeeRuleCache feeRuleCache;
+    private final WeatherDataCache weatherDataCache;
 
     @Autowired
-    public DeliveryServiceImpl(WeatherDataRepository weatherDataRepository,
-                               BaseFeeRuleRepository baseFeeRuleRepository,
-                               ExtraFeeRuleRepository extraFeeRuleRepository) {
-        this.weatherDataRepository = weatherDataRepository;
-        this.baseFeeRuleRepository = baseFeeRuleRepository;
-        this.extraFeeRuleRepository = extraFeeRuleRepository;
+    public DeliveryServiceImpl(FeeMatrixCache feeMatrixCache,
+                               FeeRuleCache feeRuleCache,
+                               WeatherDataCache weatherDataCache) {
+        this.feeMatrixCache = feeMatrixCache;
+        this.feeRuleCache = feeRuleCache;
+        this.weatherDataCache = weatherDataCache;
     }
 
     @Override
     public double getDeliveryFee(City city, VehicleType vehicleType) throws DeliveryFeeCalculationException {
-        return getBaseFee(city, vehicleType, null) + getExtraFee(city, vehicleType, null);
+        // Current fees are precalculated for every city and vehicle type pair
+        return feeMatrixCache.getMatrix().getFee(city, vehicleType);
     }
 
     @Override
     public double getDeliveryFee(City city, VehicleType vehicleType, long timestamp)
             throws DeliveryFeeCalculationException {
-        return getBaseFee(city, vehicleType, timestamp) + getExtraFee(city, vehicleType, timestamp);
+        FeeRuleSnapshot snapshot = feeRuleCache.getSnapshot();
+        double baseFee = getBaseFee(snapshot, city, vehicleType, timestamp);
+        WeatherData weatherData = weatherDataCache.getAsOf(WeatherStationTranslator.getWmoOfCity(city), timestamp);
+        return baseFee + getExtraFee(weatherData, snapshot.getCompiledExtraFeeRulesAt(vehicleType, timestamp));
+    }
+
+    @Override
+    public List<FeeQuote> getDeliveryFees(List<FeeQuery> queries) {
+        FeeQuote[] quotes = new FeeQuote[queries.size()];
+        City[] cities = new City[queries.size()];
+        VehicleType[] vehicleTypes = new VehicleType[queries.size()];
+        FeeRuleSnapshot snapshot = feeRuleCache.getSnapshot();
+        FeeMatrix matrix = feeMatrixCache.getMatrix();
+
+        // Indexes of the historical queries grouped by weather station and timestamp
+        Map<Integer, Map<Long, List<Integer>>> groups = new HashMap<>();
+
+        for (int i = 0; i < queries.size(); i++) {
+            FeeQuery query = queries.get(i);
+
+            // Input validation
+            if (query == null || query.getCity() == null) {
+                quotes[i] = FeeQuote.ofError("Specify 'city' parameter");
+                continue;
+            }
+            if (query.getVehicle() == null) {
+                quotes[i] = FeeQuote.ofError("Specify 'vehicle' parameter");
+                continue;
+            }
+
+            cities[i] = StringEnumTranslator.getCityFromStr(query.getCity());
+            vehicleTypes[i] = StringEnumTranslator.getVehicleTypeFromStr(query.getVehicle());
+            if (cities[i] == City.UNKNOWN) {
+                quotes[i] = FeeQuote.ofError("Unknown value for 'city' parameter");
+                continue;
+            }
+            if (vehicleTypes[i] == VehicleType.UNKNOWN) {
+                quotes[i] = FeeQuote.ofError("Unknown value for 'vehicle' parameter");
+                continue;
+            }
+
+            // Current fees are precalculated, no grouping needed
+            if (query.getTime() == null) {
+                try {
+                    quotes[i] = FeeQuote.ofFee(matrix.getFee(cities[i], vehicleTypes[i]));
+                } catch (DeliveryFeeCalculationException e) {
+                    quotes[i] = FeeQuote.ofError(e.getMessage());
+                }
+                continue;
+            }
+
+            groups.computeIfAbsent(WeatherStationTranslator.getWmoOfCity(cities[i]), key -> new HashMap<>())
+                    .computeIfAbsent(query.getTime(), key -> new ArrayList<>()).add(i);
+        }
+
+        // Weather data and extra fee rules are resolved once per group
+        CompiledExtraFeeRules[] rulesByVehicle = new CompiledExtraFeeRules[VehicleType.values().length];
+        groups.forEach((stationWmo, byTimestamp) -> byTimestamp.forEach((timestamp, indexes) -> {
+            WeatherData weatherData = weatherDataCache.getAsOf(stationWmo, timestamp);
+            Arrays.fill(rulesByVehicle, null);
+
+            for (int i : indexes) {
+                VehicleType vehicleType = vehicleTypes[i];
+                try {
+                    double baseFee = getBaseFee(snapshot, cities[i], vehicleType, timestamp);
+                    if (rulesByVehicle[vehicleType.ordinal()] == null)
+                        rulesByVehicle[vehicleType.ordinal()] = snapshot.getCompiledExtraFeeRulesAt(vehicleType,
+                                timestamp);
+                    quotes[i] = FeeQuote.ofFee(baseFee + getExtraFee(weatherData,
+                            rulesByVehicle[vehicleType.ordinal()]));
+                } catch (DeliveryFeeCalculationException e) {
+                    quotes[i] = FeeQuote.ofError(e.getMessage());
+                }
+            }
+        }));
+
+        return Arrays.asList(quotes);
     }
 
     /**
-     * Returns the base fee for currently set rules (if timestamp is null) or rules active at timestamp (if set)
+     * Returns the base fee for rules active at timestamp
      * <p>
      * In case of error throws a {@link kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException}
      *
+     * @param snapshot    the {@link kkadak.fujitsutask.cache.FeeRuleSnapshot} holding the rule history
      * @param city        the {@link kkadak.fujitsutask.enums.City} for delivery
      * @param vehicleType the {@link kkadak.fujitsutask.enums.VehicleType} used for the delivery
-     * @param timestamp   the timestamp for the calculation data (measured in seconds past UTC epoch) or null
+     * @param timestamp   the timestamp for the calculation data (measured in seconds past UTC epoch)
      * @return the total delivery fee from base fee rules
      * @throws DeliveryFeeCalculationException in case of error
      */
-    private double getBaseFee(City city, VehicleType vehicleType, Long timestamp)
+    private double getBaseFee(FeeRuleSnapshot snapshot, City city, VehicleType vehicleType, long timestamp)
             throws DeliveryFeeCalculationException {
-        Optional<BaseFeeRule> rule;
-        if (timestamp == null)
-            rule = baseFeeRuleRepository.findTopByCityAndVehicleTypeOrderByValidFromTimestampDesc(city, vehicleType);
-        else
-            rule = baseFeeRuleRepository
-                    .findTopByCityAndVehicleTypeAndValidFromTimestampLessThanEqualOrderByValidFromTimestampDesc(city,
-                            vehicleType, timestamp);
+        // Rule history is kept in memory as an as-of timeline
+        Double feeAmount = snapshot.getBaseFeeAt(city, vehicleType, timestamp);
 
         // Handle vehicle not allowed
-        if (rule.isEmpty() || rule.get().getFeeAmount() == null)
+        if (feeAmount == null)
             throw new DeliveryFeeCalculationException("Use of selected vehicle is not allowed in specified city");
 
-        return rule.get().getFeeAmount();
+        return feeAmount;
     }
 
     /**
-     * Returns the extra fee for currently set rules (if timestamp is null) or rules active at timestamp (if set)
+     * Returns the extra fee for the weather data and rules active at the time of calculation
      * <p>
      * In case of error throws a {@link kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException}
      *
-     * @param city        the {@link kkadak.fujitsutask.enums.City} for delivery
-     * @param vehicleType the {@link kkadak.fujitsutask.enums.VehicleType} used for the delivery
-     * @param timestamp   the timestamp for the calculation data (measured in seconds past UTC epoch) or null
+     * @param weatherData the most recent {@link kkadak.fujitsutask.model.WeatherData} at the time of calculation
+     * @param rules       the {@link kkadak.fujitsutask.calculation.CompiledExtraFeeRules} valid at the time of
+     *                    calculation
      * @return the total delivery fee from extra fee rules
      * @throws DeliveryFeeCalculationException in case of error
      */
-    private double getExtraFee(City city, VehicleType vehicleType, Long timestamp)
+    private double getExtraFee(WeatherData weatherData, CompiledExtraFeeRules rules)
             throws DeliveryFeeCalculationException {
-        List<ExtraFeeRule> rules;
-        WeatherData weatherData;
-
-        // Get either most recent weather data and rules for now or for a specified timestamp
-        if (timestamp == null) {
-            weatherData = weatherDataRepository
-                    .getTopByStationWmoOrderByTimestampDesc(WeatherStationTranslator.getWmoOfCity(city));
-            rules = extraFeeRuleRepository.getRules(vehicleType);
-        } else {
-            weatherData = weatherDataRepository
-                    .getTopByStationWmoAndTimestampLessThanEqualOrderByTimestampDesc(WeatherStationTranslator
-                            .getWmoOfCity(city), timestamp);
-            rules = extraFeeRuleRepository.getRules(vehicleType, timestamp);
-        }
-
         // Handle weather data missing
         // Only happens when the date selected is before the start of weather data gathering (initial application start)
         // or when weather data source has been unavailable since initial application start
         if (weatherData == null) throw new DeliveryFeeCalculationException("No valid weather data recorded");
-        double extraFeeTotal = 0;
-
-        // Calculate extra fees from numeric metrics
-        for (ExtraFeeRuleMetric metric : ExtraFeeRuleMetric.values()) {
-
-            // Skip phenomenon metric assessment
-            if (metric == ExtraFeeRuleMetric.PHENOMENON) continue;
-            boolean applicableFromExists = false, applicableUntilExists = false;
-            Double fromRuleFeeTotal = null, untilRuleFeeTotal = null;
-
-            // Process 'FROM' rules in descending order of value
-            for (ExtraFeeRule rule : rules.stream()
-                    .filter(rule -> rule.getMetric() == metric && rule.getValueType() == ExtraFeeRuleValueType.FROM)
-                    .sorted((o1, o2) -> Double.compare(Double.parseDouble(o2.getValueStr()),
-                            Double.parseDouble(o1.getValueStr()))).toList()) {
-
-                // If value in gathered data is higher than or equal to the rule's value
-                if ((metric == ExtraFeeRuleMetric.AIRTEMP
-                            && weatherData.getAirTemp() >= Double.parseDouble(rule.getValueStr()))
-                        || (metric == ExtraFeeRuleMetric.WINDSPEED
-                            && weatherData.getWindSpeed() >= Double.parseDouble(rule.getValueStr()))) {
-                    applicableFromExists = true;
-                    fromRuleFeeTotal = rule.getFeeAmount();
-                    break;
-                }
-            }
-
-            // Process 'UNTIL' rules in ascending order of value
-            for (ExtraFeeRule rule : rules.stream()
-                    .filter(rule -> rule.getMetric() == metric && rule.getValueType() == ExtraFeeRuleValueType.UNTIL)
-                    .sorted(Comparator.comparingDouble(o -> Double.parseDouble(o.getValueStr()))).toList()) {
-
-                // If value in gathered data is lower than or equal to the rule's value
-                if ((metric == ExtraFeeRuleMetric.AIRTEMP
-                            && weatherData.getAirTemp() <= Double.parseDouble(rule.getValueStr()))
-                        || (metric == ExtraFeeRuleMetric.WINDSPEED
-                            && weatherData.getWindSpeed() <= Double.parseDouble(rule.getValueStr()))) {
-                    applicableUntilExists = true;
-                    untilRuleFeeTotal = rule.getFeeAmount();
-                    break;
-                }
-            }
-
-            if (applicableFromExists && fromRuleFeeTotal == null || applicableUntilExists && untilRuleFeeTotal == null)
-                throw new DeliveryFeeCalculationException("Usage of selected vehicle type is currently forbidden");
-            if (fromRuleFeeTotal != null) extraFeeTotal += fromRuleFeeTotal;
-            if (untilRuleFeeTotal != null) extraFeeTotal += untilRuleFeeTotal;
-        }
-
-        // Calculate extra fees from phenomenon metric
-        Optional<ExtraFeeRule> applicableRule = rules.stream()
-                .filter(rule -> rule.getValueStr().equalsIgnoreCase(weatherData.getPhenomenon())).findFirst();
-        Double phenomenonFeeTotal = 0.0;
-        if (applicableRule.isPresent()) {
-            phenomenonFeeTotal = applicableRule.get().getFeeAmount();
-            if (phenomenonFeeTotal == null)
-                throw new DeliveryFeeCalculationException("Usage of selected vehicle type is currently forbidden");
-        }
 
-        extraFeeTotal += phenomenonFeeTotal;
-        return extraFeeTotal;
+        return rules.getExtraFee(weatherData);
     }
 }
@@ -0,0 +1,117 @@
+package kkadak.fujitsutask.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kkadak.fujitsutask.model.FeeQuery;
+import kkadak.fujitsutask.model.FeeQuote;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calculates delivery fees for a newline-delimited JSON stream of {@link kkadak.fujitsutask.model.FeeQuery} items
+ * <p>
+ * The input is read and priced in chunks of {@link #chunkSize} lines through
+ * {@link kkadak.fujitsutask.service.DeliveryService#getDeliveryFees(List)}, the results of every chunk are written
+ * and flushed before the next chunk is read, so memory use does not depend on the size of the input
+ */
+@Component
+public class FeeQueryStreamProcessor {
+    private final DeliveryService deliveryService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Maximum amount of queries held in memory at once, gathered from application.properties
+     */
+    @Value("${fee.stream.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    @Autowired
+    public FeeQueryStreamProcessor(DeliveryService deliveryService, ObjectMapper objectMapper) {
+        this.deliveryService = deliveryService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Reads the queries from the input and writes a {@link kkadak.fujitsutask.model.FeeQuote} line for every
+     * non-blank input line, in the same order
+     * <p>
+     * Lines which cannot be parsed are answered with an error message instead of ending the stream
+     *
+     * @param inputStream  newline-delimited JSON of {@link kkadak.fujitsutask.model.FeeQuery} items
+     * @param outputStream destination of the newline-delimited JSON of {@link kkadak.fujitsutask.model.FeeQuote}
+     *                     items
+     * @return amount of processed queries
+     * @throws IOException in case reading the input or writing the output fails
+     */
+    public long process(InputStream inputStream, OutputStream outputStream) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        List<FeeQuery> chunk = new ArrayList<>(chunkSize);
+        List<Integer> malformed = new ArrayList<>();
+        long processed = 0;
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) continue;
+
+            // Malformed lines keep their position in the chunk so that the output order matches the input
+            try {
+                chunk.add(objectMapper.readValue(line, FeeQuery.class));
+            } catch (JsonProcessingException e) {
+                malformed.add(chunk.size());
+                chunk.add(null);
+            }
+
+            if (chunk.size() >= chunkSize) {
+                processed += writeChunk(chunk, malformed, writer);
+                chunk.clear();
+                malformed.clear();
+            }
+        }
+
+        if (!chunk.isEmpty()) processed += writeChunk(chunk, malformed, writer);
+        writer.flush();
+        return processed;
+    }
+
+    /**
+     * Prices a chunk of queries and writes the results
+     *
+     * @param chunk     queries of the chunk, null in place of malformed lines
+     * @param malformed indexes of the malformed lines in the chunk in ascending order
+     * @param writer    destination of the results
+     * @return amount of processed queries
+     * @throws IOException in case writing the output fails
+     */
+    private int writeChunk(List<FeeQuery> chunk, List<Integer> malformed, Writer writer) throws IOException {
+        List<FeeQuote> quotes = deliveryService.getDeliveryFees(chunk);
+        int malformedCursor = 0;
+
+        for (int i = 0; i < quotes.size(); i++) {
+            FeeQuote quote = quotes.get(i);
+            if (malformedCursor < malformed.size() && malformed.get(malformedCursor) == i) {
+                quote = FeeQuote.ofError("Malformed query");
+                malformedCursor++;
+            }
+
+            writer.write(objectMapper.writeValueAsString(quote));
+            writer.write('\n');
+        }
+
+        writer.flush();
+        return quotes.size();
+    }
+}
@@ -0,0 +1,84 @@
+package kkadak.fujitsutask.store;
+
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.repository.WeatherDataRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link kkadak.fujitsutask.store.WeatherDataStore} backed by the WeatherData table, used by default
+ */
+@Component
+@ConditionalOnProperty(name = "weather.store.type", havingValue = "jpa", matchIfMissing = true)
+public class JpaWeatherDataStore implements WeatherDataStore {
+    private final WeatherDataRepository repository;
+
+    @Autowired
+    public JpaWeatherDataStore(WeatherDataRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Saves new weather data to the WeatherData table
+     * <p>
+     * In case another importer has saved some of the data in the meantime, the unique key on station and timestamp
+     * rejects the batch and the entries are saved one by one, skipping the ones which already exist
+     *
+     * @param weatherData weather data parsed from an observations document
+     * @return List of weather data which was saved
+     */
+    @Override
+    public List<WeatherData> saveAll(List<WeatherData> weatherData) {
+        try {
+            return repository.saveAll(weatherData);
+        } catch (DataIntegrityViolationException e) {
+            List<WeatherData> saved = new ArrayList<>();
+            for (WeatherData entry : weatherData) {
+                try {
+                    entry.setId(null);
+                    saved.add(repository.save(entry));
+                } catch (DataIntegrityViolationException ignored) {
+                }
+            }
+            return saved;
+        }
+    }
+
+    @Override
+    public List<Integer> findStationWmosWithTimestamp(long timestamp, Collection<Integer> stationWmos) {
+        return repository.findStationWmosWithTimestamp(timestamp, stationWmos);
+    }
+
+    @Override
+    public List<WeatherData> findByStationWmoOrderByTimestampAsc(int stationWmo) {
+        return repository.findByStationWmoOrderByTimestampAsc(stationWmo);
+    }
+
+    @Override
+    public WeatherData getAsOf(int stationWmo, long timestamp) {
+        return repository.getTopByStationWmoAndTimestampLessThanEqualOrderByTimestampDesc(stationWmo, timestamp);
+    }
+
+    @Override
+    public List<WeatherData> findNewerThan(int stationWmo, long timestamp) {
+        return repository.findByStationWmoAndTimestampBetweenOrderByTimestampAsc(stationWmo, timestamp + 1,
+                Long.MAX_VALUE, Limit.unlimited());
+    }
+
+    /**
+     * The WeatherData table is in the database shared by the instances
+     *
+     * @return true
+     */
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+}
@@ -0,0 +1,267 @@
+package kkadak.fujitsutask.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Fixed-size file of weather observation records of {@link kkadak.fujitsutask.store.SegmentedWeatherDataStore},
+ * read and written through a memory mapping
+ * <p>
+ * The file consists of a header and a fixed amount of record slots, the records are appended in ascending order of
+ * timestamps. Every record carries a checksum, so a record torn by a crash is recognized when the file is opened and
+ * the segment ends at the last complete record. The timestamp of every {@link #INDEX_INTERVAL}th record is kept in a
+ * sparse on-heap index for the lookups by time
+ */
+final class LogSegment implements Closeable {
+
+    /**
+     * Marks the file as a weather data log segment
+     */
+    static final int MAGIC = 0x57444c47;
+
+    /**
+     * Size of the header: magic, format version and capacity
+     */
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * Size of a record: timestamp, station WMO code, station name code, air temperature, wind speed, phenomenon code
+     * and checksum
+     */
+    static final int RECORD_SIZE = 40;
+
+    /**
+     * Amount of records per entry of the sparse timestamp index
+     */
+    static final int INDEX_INTERVAL = 64;
+
+    private static final int STATION_OFFSET = 8;
+    private static final int NAME_OFFSET = 12;
+    private static final int AIR_TEMP_OFFSET = 16;
+    private static final int WIND_SPEED_OFFSET = 24;
+    private static final int PHENOMENON_OFFSET = 32;
+    private static final int CHECKSUM_OFFSET = 36;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Maximum amount of records in the segment
+     */
+    private final int capacity;
+
+    /**
+     * ID of the record preceding the first record of the segment
+     */
+    private final long baseId;
+
+    /**
+     * Timestamps of the records at the multiples of {@link #INDEX_INTERVAL}
+     */
+    private final long[] index;
+
+    /**
+     * Amount of complete records, published after the record and its index entry have been written
+     */
+    private volatile int count;
+
+    private LogSegment(FileChannel channel, MappedByteBuffer buffer, int capacity, long baseId) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.baseId = baseId;
+        this.index = new long[(capacity + INDEX_INTERVAL - 1) / INDEX_INTERVAL];
+    }
+
+    /**
+     * Opens a segment file, creating it in case it does not exist and recovering the complete records in case it does
+     *
+     * @param file     path of the segment file
+     * @param capacity amount of record slots of a newly created segment, existing segments keep their own
+     * @param baseId   ID of the record preceding the first record of the segment
+     * @return the opened segment
+     * @throws IOException in case the file can not be read or written or is not a segment file
+     */
+    static LogSegment open(Path file, int capacity, long baseId) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            // An existing segment keeps the capacity it was created with
+            if (channel.size() >= HEADER_SIZE) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if (header.getInt(0) == MAGIC) capacity = header.getInt(8);
+                else if (header.getInt(0) != 0) throw new IOException("Not a weather data log segment: " + file);
+            }
+            if ((long) capacity * RECORD_SIZE + HEADER_SIZE > Integer.MAX_VALUE)
+                throw new IOException("Segment capacity too large: " + capacity);
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, 1);
+            buffer.putInt(8, capacity);
+
+            LogSegment segment = new LogSegment(channel, buffer, capacity, baseId);
+            segment.recover();
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Counts the complete records and clears the slots after them, so that a torn record can never be mistaken for
+     * a complete one after later appends
+     */
+    private void recover() {
+        int recovered = 0;
+        long previousTimestamp = Long.MIN_VALUE;
+        while (recovered < capacity && isComplete(recovered) && getTimestamp(recovered) >= previousTimestamp) {
+            previousTimestamp = getTimestamp(recovered);
+            if (recovered % INDEX_INTERVAL == 0) index[recovered / INDEX_INTERVAL] = previousTimestamp;
+            recovered++;
+        }
+
+        for (int offset = offset(recovered); offset < buffer.capacity(); offset += 8) {
+            if (buffer.getLong(offset) != 0) buffer.putLong(offset, 0);
+        }
+        count = recovered;
+    }
+
+    /**
+     * Returns whether the checksum of a record slot matches its content
+     *
+     * @param position position of the record in the segment
+     * @return true if the slot holds a complete record
+     */
+    private boolean isComplete(int position) {
+        int offset = offset(position);
+        int checksum = buffer.getInt(offset + CHECKSUM_OFFSET);
+        return checksum != 0 && checksum == checksum(offset);
+    }
+
+    private int checksum(int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, CHECKSUM_OFFSET));
+        // Zero marks an empty slot
+        return (int) crc.getValue() | 1;
+    }
+
+    private static int offset(int position) {
+        return HEADER_SIZE + position * RECORD_SIZE;
+    }
+
+    /**
+     * Appends a record, the caller has to ensure that the segment is not full and that the timestamp is not lower
+     * than the one of the last record
+     * <p>
+     * The record becomes durable with {@link #force()}
+     *
+     * @param timestamp      timestamp of the observation in seconds past UTC epoch
+     * @param stationWmo     WMO code of the station
+     * @param nameCode       dictionary code of the name of the station
+     * @param airTemp        air temperature
+     * @param windSpeed      wind speed
+     * @param phenomenonCode dictionary code of the phenomenon
+     * @return ID of the appended record
+     */
+    long append(long timestamp, int stationWmo, int nameCode, double airTemp, double windSpeed, int phenomenonCode) {
+        int position = count;
+        int offset = offset(position);
+        buffer.putLong(offset, timestamp);
+        buffer.putInt(offset + STATION_OFFSET, stationWmo);
+        buffer.putInt(offset + NAME_OFFSET, nameCode);
+        buffer.putDouble(offset + AIR_TEMP_OFFSET, airTemp);
+        buffer.putDouble(offset + WIND_SPEED_OFFSET, windSpeed);
+        buffer.putInt(offset + PHENOMENON_OFFSET, phenomenonCode);
+        buffer.putInt(offset + CHECKSUM_OFFSET, checksum(offset));
+        if (position % INDEX_INTERVAL == 0) index[position / INDEX_INTERVAL] = timestamp;
+        count = position + 1;
+        return getId(position);
+    }
+
+    /**
+     * Writes the appended records to the storage device
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Returns the position of the last record measured at or before the specified time
+     * <p>
+     * Looks up the block of the record from the sparse index and scans only that block
+     *
+     * @param timestamp latest accepted timestamp in seconds past UTC epoch
+     * @return position of the record, -1 in case all records are newer
+     */
+    int floor(long timestamp) {
+        int size = count;
+        if (size == 0 || getTimestamp(0) > timestamp) return -1;
+
+        // Last index entry at or before the timestamp
+        int low = 0, high = (size - 1) / INDEX_INTERVAL;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (index[middle] <= timestamp) low = middle;
+            else high = middle - 1;
+        }
+
+        int position = low * INDEX_INTERVAL;
+        int end = Math.min(size, position + INDEX_INTERVAL);
+        while (position + 1 < end && getTimestamp(position + 1) <= timestamp) position++;
+        return position;
+    }
+
+    int size() {
+        return count;
+    }
+
+    boolean isFull() {
+        return count == capacity;
+    }
+
+    long getEndId() {
+        return baseId + capacity;
+    }
+
+    long getId(int position) {
+        return baseId + position + 1;
+    }
+
+    long getTimestamp(int position) {
+        return buffer.getLong(offset(position));
+    }
+
+    int getStationWmo(int position) {
+        return buffer.getInt(offset(position) + STATION_OFFSET);
+    }
+
+    int getNameCode(int position) {
+        return buffer.getInt(offset(position) + NAME_OFFSET);
+    }
+
+    double getAirTemp(int position) {
+        return buffer.getDouble(offset(position) + AIR_TEMP_OFFSET);
+    }
+
+    double getWindSpeed(int position) {
+        return buffer.getDouble(offset(position) + WIND_SPEED_OFFSET);
+    }
+
+    int getPhenomenonCode(int position) {
+        return buffer.getInt(offset(position) + PHENOMENON_OFFSET);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
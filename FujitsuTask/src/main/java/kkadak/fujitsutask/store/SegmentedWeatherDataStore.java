@@ -0,0 +1,351 @@
+package kkadak.fujitsutask.store;
+
+import kkadak.fujitsutask.model.WeatherData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * {@link kkadak.fujitsutask.store.WeatherDataStore} backed by an append-only log of fixed-size segment files, used
+ * when the 'weather.store.type' property is set to 'log'
+ * <p>
+ * Observations are stored as fixed-size binary records in {@link kkadak.fujitsutask.store.LogSegment} files which
+ * are read through memory mappings, the station names and phenomena are stored once in a
+ * {@link kkadak.fujitsutask.store.StringDictionary}. The log is strictly ordered by timestamp, so the as-of lookups
+ * are served with a binary search over the segments and their sparse indexes. The first timestamp and the position of
+ * the last record of every station are kept in memory, so the lookups of a station which has stopped reporting do not
+ * scan the log. Records torn by a crash are cut off when the log is opened
+ * <p>
+ * The log is not compacted, the {@link kkadak.fujitsutask.cron.WeatherDataCompactor} only applies to the WeatherData
+ * table
+ */
+@Component
+@ConditionalOnProperty(name = "weather.store.type", havingValue = "log")
+public class SegmentedWeatherDataStore implements WeatherDataStore, Closeable {
+
+    /**
+     * Name format of the segment files, the number is the sequence number of the segment
+     */
+    private static final String SEGMENT_FILE_FORMAT = "segment-%010d.log";
+
+    private final Path directory;
+
+    /**
+     * Amount of record slots of newly created segments
+     */
+    private final int segmentRecords;
+
+    private final StringDictionary dictionary;
+
+    /**
+     * Segments in ascending order, only the last one is appended to
+     */
+    private final List<LogSegment> segments = new CopyOnWriteArrayList<>();
+
+    /**
+     * Records of every station by its WMO code
+     */
+    private final Map<Integer, StationRecords> stations = new ConcurrentHashMap<>();
+
+    /**
+     * Timestamp of the first record and position of the last record of a station
+     *
+     * @param firstTimestamp timestamp of the first record of the station
+     * @param lastSegment    segment of the last record of the station
+     * @param lastPosition   position of the last record of the station in its segment
+     */
+    private record StationRecords(long firstTimestamp, LogSegment lastSegment, int lastPosition) {
+        private long lastTimestamp() {
+            return lastSegment.getTimestamp(lastPosition);
+        }
+    }
+
+    /**
+     * Opens the log in the specified directory, creating the directory in case it does not exist
+     *
+     * @param directory      directory of the segment files
+     * @param segmentRecords amount of record slots of newly created segments
+     * @throws IOException in case the files can not be read or written
+     */
+    @Autowired
+    public SegmentedWeatherDataStore(@Value("${weather.store.directory}") String directory,
+                                     @Value("${weather.store.segment-records}") int segmentRecords)
+            throws IOException {
+        this.directory = Files.createDirectories(Path.of(directory));
+        this.segmentRecords = segmentRecords;
+        this.dictionary = StringDictionary.open(this.directory.resolve("dictionary.txt"));
+        openSegments();
+    }
+
+    /**
+     * Opens the existing segments in order, a segment which is not full ends the log and any segments after it are
+     * deleted, as they can only have been left by a crash while rolling over
+     *
+     * @throws IOException in case the files can not be read or written
+     */
+    private void openSegments() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> file.getFileName().toString().matches("segment-\\d+\\.log"))
+                    .sorted(Comparator.comparing(Path::getFileName))
+                    .toList();
+        }
+
+        long baseId = 0;
+        for (Path file : files) {
+            if (!segments.isEmpty() && !segments.get(segments.size() - 1).isFull()) {
+                System.out.printf("Deleting weather data log segment after a torn segment: %s%n", file);
+                Files.delete(file);
+                continue;
+            }
+            LogSegment segment = LogSegment.open(file, segmentRecords, baseId);
+            segments.add(segment);
+            baseId = segment.getEndId();
+            for (int position = 0; position < segment.size(); position++) indexRecord(segment, position);
+        }
+        if (segments.isEmpty()) segments.add(LogSegment.open(segmentFile(0), segmentRecords, 0));
+    }
+
+    /**
+     * Records the specified record as the last record of its station
+     *
+     * @param segment  segment of the record
+     * @param position position of the record in the segment
+     */
+    private void indexRecord(LogSegment segment, int position) {
+        stations.compute(segment.getStationWmo(position), (stationWmo, records) -> new StationRecords(
+                records == null ? segment.getTimestamp(position) : records.firstTimestamp(), segment, position));
+    }
+
+    private Path segmentFile(int sequence) {
+        return directory.resolve(String.format(SEGMENT_FILE_FORMAT, sequence));
+    }
+
+    /**
+     * Appends new weather data to the log, skipping the entries which already exist and the entries older than the
+     * last record, as the log only grows in time
+     * <p>
+     * The dictionary and the records are forced to the storage device before returning
+     *
+     * @param weatherData weather data parsed from an observations document
+     * @return List of weather data which was saved, with the IDs of their records
+     */
+    @Override
+    public synchronized List<WeatherData> saveAll(List<WeatherData> weatherData) {
+        List<WeatherData> sorted = weatherData.stream()
+                .filter(entry -> entry.getStationWmo() != null && entry.getTimestamp() != null
+                        && entry.getAirTemp() != null && entry.getWindSpeed() != null)
+                .sorted(Comparator.comparingLong(WeatherData::getTimestamp))
+                .toList();
+        if (sorted.isEmpty()) return List.of();
+
+        try {
+            long lastTimestamp = getLastTimestamp();
+            Set<Integer> lastStations = new HashSet<>(findStationWmosWithTimestamp(lastTimestamp,
+                    sorted.stream().map(WeatherData::getStationWmo).toList()));
+
+            List<WeatherData> saved = new ArrayList<>();
+            for (WeatherData entry : sorted) {
+                if (entry.getTimestamp() < lastTimestamp) continue;
+                if (entry.getTimestamp() > lastTimestamp) {
+                    lastTimestamp = entry.getTimestamp();
+                    lastStations.clear();
+                }
+                if (lastStations.add(entry.getStationWmo())) saved.add(entry);
+            }
+
+            // The strings are made durable before any record referencing them can reach the storage device
+            int[] nameCodes = new int[saved.size()], phenomenonCodes = new int[saved.size()];
+            for (int i = 0; i < saved.size(); i++) {
+                nameCodes[i] = dictionary.encode(saved.get(i).getStationName());
+                phenomenonCodes[i] = dictionary.encode(saved.get(i).getPhenomenon());
+            }
+            dictionary.force();
+
+            for (int i = 0; i < saved.size(); i++) {
+                WeatherData entry = saved.get(i);
+                LogSegment segment = getWritableSegment();
+                entry.setId(segment.append(entry.getTimestamp(), entry.getStationWmo(), nameCodes[i],
+                        entry.getAirTemp(), entry.getWindSpeed(), phenomenonCodes[i]));
+                indexRecord(segment, segment.size() - 1);
+            }
+            segments.get(segments.size() - 1).force();
+            return saved;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the last segment, rolling over to a new segment in case it is full
+     *
+     * @return segment which has room for a record
+     * @throws IOException in case the new segment can not be created
+     */
+    private LogSegment getWritableSegment() throws IOException {
+        LogSegment last = segments.get(segments.size() - 1);
+        if (!last.isFull()) return last;
+
+        last.force();
+        LogSegment next = LogSegment.open(segmentFile(segments.size()), segmentRecords, last.getEndId());
+        segments.add(next);
+        return next;
+    }
+
+    private long getLastTimestamp() {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            LogSegment segment = segments.get(i);
+            if (segment.size() > 0) return segment.getTimestamp(segment.size() - 1);
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the WMO codes of the specified stations which already have weather data for the specified timestamp,
+     * scanning back from the last record at or before the timestamp
+     *
+     * @param timestamp   timestamp in seconds past UTC epoch
+     * @param stationWmos WMO codes of the stations to check
+     * @return List of WMO codes of the stations which already have weather data for the timestamp
+     */
+    @Override
+    public List<Integer> findStationWmosWithTimestamp(long timestamp, Collection<Integer> stationWmos) {
+        Set<Integer> found = new HashSet<>();
+        List<LogSegment> current = List.copyOf(segments);
+        for (int i = findSegment(current, timestamp); i >= 0; i--) {
+            LogSegment segment = current.get(i);
+            for (int position = segment.floor(timestamp); position >= 0; position--) {
+                if (segment.getTimestamp(position) != timestamp) return List.copyOf(found);
+                if (stationWmos.contains(segment.getStationWmo(position))) found.add(segment.getStationWmo(position));
+            }
+        }
+        return List.copyOf(found);
+    }
+
+    /**
+     * Returns all weather data of the specified station in ascending order of measurement, reading the records from
+     * the first to the last record of the station
+     *
+     * @param stationWmo WMO code of the station
+     * @return List of all weather data of the station in ascending order of measurement
+     */
+    @Override
+    public List<WeatherData> findByStationWmoOrderByTimestampAsc(int stationWmo) {
+        return findNewerThan(stationWmo, Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns the weather data of the specified station measured after the specified time in ascending order of
+     * measurement
+     * <p>
+     * Reads the records from the first record after the time up to the last record of the station, nothing is read in
+     * case the station has not reported since the time
+     *
+     * @param stationWmo WMO code of the station
+     * @param timestamp  timestamp in seconds past UTC epoch after which the weather data was measured
+     * @return List of weather data of the station measured after the timestamp in ascending order of measurement
+     */
+    @Override
+    public List<WeatherData> findNewerThan(int stationWmo, long timestamp) {
+        StationRecords records = stations.get(stationWmo);
+        if (records == null || records.lastTimestamp() <= timestamp) return List.of();
+        long after = Math.max(timestamp, records.firstTimestamp() - 1);
+
+        List<WeatherData> result = new ArrayList<>();
+        List<LogSegment> current = List.copyOf(segments);
+        for (int i = Math.max(findSegment(current, after), 0); i < current.size(); i++) {
+            LogSegment segment = current.get(i);
+            int size = segment.size();
+            for (int position = segment.floor(after) + 1; position < size; position++) {
+                if (segment.getStationWmo(position) != stationWmo) continue;
+                result.add(read(segment, position));
+                if (segment == records.lastSegment() && position == records.lastPosition()) return result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the most recent weather data of the specified station measured at or before the specified time
+     * <p>
+     * The last record of the station is returned right away in case it is measured at or before the time, otherwise
+     * finds the last record at or before the time with binary searches and scans back to the last record of the
+     * station. The station has records on both sides of the time then, so the scan is at most as long as the longest
+     * gap in its reports
+     *
+     * @param stationWmo WMO code of the station
+     * @param timestamp  latest accepted timestamp in seconds past UTC epoch
+     * @return most recent weather data measured at or before the specified time, null if none has been recorded
+     */
+    @Override
+    public WeatherData getAsOf(int stationWmo, long timestamp) {
+        StationRecords records = stations.get(stationWmo);
+        if (records == null || records.firstTimestamp() > timestamp) return null;
+        if (records.lastTimestamp() <= timestamp) return read(records.lastSegment(), records.lastPosition());
+
+        List<LogSegment> current = List.copyOf(segments);
+        for (int i = findSegment(current, timestamp); i >= 0; i--) {
+            LogSegment segment = current.get(i);
+            for (int position = segment.floor(timestamp); position >= 0; position--)
+                if (segment.getStationWmo(position) == stationWmo) return read(segment, position);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index of the last segment whose first record is measured at or before the specified time
+     *
+     * @param current   segments in ascending order
+     * @param timestamp timestamp in seconds past UTC epoch
+     * @return index of the segment, -1 in case all records are newer
+     */
+    private static int findSegment(List<LogSegment> current, long timestamp) {
+        int low = 0, high = current.size() - 1, result = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            LogSegment segment = current.get(middle);
+            if (segment.size() > 0 && segment.getTimestamp(0) <= timestamp) {
+                result = middle;
+                low = middle + 1;
+            } else high = middle - 1;
+        }
+        return result;
+    }
+
+    private WeatherData read(LogSegment segment, int position) {
+        WeatherData weatherData = new WeatherData(segment.getStationWmo(position),
+                dictionary.decode(segment.getNameCode(position)), segment.getAirTemp(position),
+                segment.getWindSpeed(position), dictionary.decode(segment.getPhenomenonCode(position)),
+                segment.getTimestamp(position));
+        weatherData.setId(segment.getId(position));
+        return weatherData;
+    }
+
+    /**
+     * Forces and closes the segment files and the dictionary
+     *
+     * @throws IOException in case the files can not be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (LogSegment segment : segments) segment.close();
+        dictionary.close();
+    }
+}
@@ -0,0 +1,116 @@
+package kkadak.fujitsutask.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only dictionary of the strings referenced by the records of
+ * {@link kkadak.fujitsutask.store.SegmentedWeatherDataStore}, stored as a text file with a string per line
+ * <p>
+ * The code of a string is the number of its line, a torn last line left by a crash is cut off when the file is
+ * opened
+ */
+final class StringDictionary implements Closeable {
+    private final FileChannel channel;
+
+    /**
+     * Codes of the stored strings
+     */
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    /**
+     * Stored strings at the indexes of their codes, replaced as a whole when a string is added
+     */
+    private volatile String[] values;
+
+    private StringDictionary(FileChannel channel, List<String> values) {
+        this.channel = channel;
+        this.values = values.toArray(new String[0]);
+        for (int i = 0; i < values.size(); i++) codes.putIfAbsent(values.get(i), i);
+    }
+
+    /**
+     * Opens the dictionary file, creating it in case it does not exist
+     *
+     * @param file path of the dictionary file
+     * @return the opened dictionary
+     * @throws IOException in case the file can not be read or written
+     */
+    static StringDictionary open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        byte[] bytes = Files.readAllBytes(file);
+
+        // Only complete lines are read, anything after the last line break was torn by a crash
+        List<String> values = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') continue;
+            values.add(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+            start = i + 1;
+        }
+        if (start < bytes.length) channel.truncate(start);
+        channel.position(start);
+        return new StringDictionary(channel, values);
+    }
+
+    /**
+     * Returns the code of a string, appending the string to the file in case it is not stored yet
+     * <p>
+     * Appended strings become durable with {@link #force()}
+     *
+     * @param value string to encode, line breaks are replaced with spaces
+     * @return code of the string, -1 for null
+     * @throws IOException in case the file can not be written
+     */
+    synchronized int encode(String value) throws IOException {
+        if (value == null) return -1;
+        String normalized = value.replace('\n', ' ').replace('\r', ' ');
+        Integer code = codes.get(normalized);
+        if (code != null) return code;
+
+        ByteBuffer line = ByteBuffer.wrap((normalized + "\n").getBytes(StandardCharsets.UTF_8));
+        while (line.hasRemaining()) channel.write(line);
+        String[] current = values;
+        String[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = normalized;
+        values = updated;
+        codes.put(normalized, current.length);
+        return current.length;
+    }
+
+    /**
+     * Returns the string of a code
+     *
+     * @param code code returned by {@link #encode(String)}
+     * @return the string, null for code -1
+     */
+    String decode(int code) {
+        return code < 0 ? null : values[code];
+    }
+
+    /**
+     * Writes the appended strings to the storage device
+     *
+     * @throws IOException in case the file can not be written
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,77 @@
+package kkadak.fujitsutask.store;
+
+import kkadak.fujitsutask.model.WeatherData;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Storage of the imported weather data
+ * <p>
+ * The implementation is selected with the 'weather.store.type' property of application.properties, the WeatherData
+ * table is used by default
+ *
+ * @see kkadak.fujitsutask.store.JpaWeatherDataStore
+ * @see kkadak.fujitsutask.store.SegmentedWeatherDataStore
+ */
+public interface WeatherDataStore {
+
+    /**
+     * Saves new weather data, skipping the entries which already exist
+     *
+     * @param weatherData weather data parsed from an observations document
+     * @return List of weather data which was saved
+     */
+    List<WeatherData> saveAll(List<WeatherData> weatherData);
+
+    /**
+     * Returns the WMO codes of the specified stations which already have weather data for the specified timestamp
+     *
+     * @param timestamp   timestamp in seconds past UTC epoch
+     * @param stationWmos WMO codes of the stations to check
+     * @return List of WMO codes of the stations which already have weather data for the timestamp
+     */
+    List<Integer> findStationWmosWithTimestamp(long timestamp, Collection<Integer> stationWmos);
+
+    /**
+     * Returns all weather data of the specified station in ascending order of measurement
+     *
+     * @param stationWmo WMO code of the station
+     * @return List of all weather data of the station in ascending order of measurement
+     */
+    List<WeatherData> findByStationWmoOrderByTimestampAsc(int stationWmo);
+
+    /**
+     * Returns the most recent weather data of the specified station measured at or before the specified time
+     *
+     * @param stationWmo WMO code of the station
+     * @param timestamp  latest accepted timestamp in seconds past UTC epoch
+     * @return most recent weather data measured at or before the specified time, null if none has been recorded
+     */
+    WeatherData getAsOf(int stationWmo, long timestamp);
+
+    /**
+     * Returns the weather data of the specified station measured after the specified time in ascending order of
+     * measurement
+     *
+     * @param stationWmo WMO code of the station
+     * @param timestamp  timestamp in seconds past UTC epoch after which the weather data was measured
+     * @return List of weather data of the station measured after the timestamp in ascending order of measurement
+     */
+    default List<WeatherData> findNewerThan(int stationWmo, long timestamp) {
+        return findByStationWmoOrderByTimestampAsc(stationWmo).stream()
+                .filter(weatherData -> weatherData.getTimestamp() > timestamp)
+                .toList();
+    }
+
+    /**
+     * Returns whether the store is shared by all instances of the application, in which case only one of them imports
+     * the weather data and the others pick it up from the store
+     *
+     * @return true if the store is shared by the instances
+     * @see kkadak.fujitsutask.cron.WeatherImportLease
+     */
+    default boolean isShared() {
+        return false;
+    }
+}
@@ -0,0 +1,60 @@
+package kkadak.fujitsutask.translators;
+
+import kkadak.fujitsutask.model.FeeRuleDefinition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Used to translate a CSV rule set to {@link kkadak.fujitsutask.model.FeeRuleDefinition} items
+ * <p>
+ * The first line names the columns, any of "type", "metric", "value", "amount", "city" and "vehicle" in any order.
+ * Every following non-blank line is a rule, the values are separated by commas and can not be quoted
+ */
+public class FeeRuleCsvTranslator {
+
+    /**
+     * Translates a CSV rule set
+     *
+     * @param csv CSV rule set with a header line
+     * @return List of {@link kkadak.fujitsutask.model.FeeRuleDefinition} items in the order of the lines, empty
+     * values are translated to null
+     * @throws IllegalArgumentException in case the header names an unknown column
+     */
+    public static List<FeeRuleDefinition> parse(String csv) {
+        List<FeeRuleDefinition> definitions = new ArrayList<>();
+        if (csv == null) return definitions;
+
+        String[] lines = csv.split("\\r?\\n");
+        Map<String, Integer> columns = null;
+        for (String line : lines) {
+            if (line.isBlank()) continue;
+            String[] values = line.split(",", -1);
+
+            if (columns == null) {
+                columns = new HashMap<>();
+                for (int i = 0; i < values.length; i++) {
+                    String column = values[i].trim().toLowerCase();
+                    if (!List.of("type", "metric", "value", "amount", "city", "vehicle").contains(column))
+                        throw new IllegalArgumentException(String.format("Unknown CSV column '%s'", column));
+                    columns.put(column, i);
+                }
+                continue;
+            }
+
+            definitions.add(new FeeRuleDefinition(get(values, columns, "type"), get(values, columns, "metric"),
+                    get(values, columns, "value"), get(values, columns, "amount"), get(values, columns, "city"),
+                    get(values, columns, "vehicle")));
+        }
+        return definitions;
+    }
+
+    private static String get(String[] values, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= values.length) return null;
+        String value = values[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,70 @@
+package kkadak.fujitsutask.translators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Used to translate weather phenomenon descriptions to the normalized form stored in the
+ * {@link kkadak.fujitsutask.cache.PhenomenonDictionary} and matched by the phenomenon and pattern rules
+ */
+public class PhenomenonTranslator {
+
+    /**
+     * Normalizes a phenomenon description: surrounding whitespace is removed, inner whitespace is collapsed to single
+     * spaces and the letters are converted to lower case
+     * <p>
+     * Descriptions which are already normalized are returned as is without allocating
+     *
+     * @param phenomenon phenomenon description or cloud coverage
+     * @return normalized phenomenon, null if the phenomenon is null
+     */
+    public static String normalize(String phenomenon) {
+        if (phenomenon == null || isNormalized(phenomenon)) return phenomenon;
+        return phenomenon.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Normalizes a phenomenon pattern: every fragment between the '|' separators is normalized and empty fragments
+     * are left out
+     *
+     * @param pattern phenomenon fragments separated by '|'
+     * @return normalized pattern, null if the pattern is null
+     */
+    public static String normalizePattern(String pattern) {
+        if (pattern == null) return null;
+        return String.join("|", getFragments(pattern));
+    }
+
+    /**
+     * Returns the normalized, non-empty fragments of a phenomenon pattern
+     *
+     * @param pattern phenomenon fragments separated by '|'
+     * @return List of normalized fragments in the order of the pattern
+     */
+    public static List<String> getFragments(String pattern) {
+        List<String> fragments = new ArrayList<>();
+        for (String fragment : pattern.split("\\|")) {
+            String normalized = normalize(fragment);
+            if (!normalized.isEmpty()) fragments.add(normalized);
+        }
+        return fragments;
+    }
+
+    /**
+     * Returns whether the phenomenon has no control characters, no upper case letters and only single spaces between
+     * the words
+     *
+     * @param phenomenon phenomenon description
+     * @return true if normalizing would not change the phenomenon
+     */
+    private static boolean isNormalized(String phenomenon) {
+        char previous = ' ';
+        for (int i = 0; i < phenomenon.length(); i++) {
+            char c = phenomenon.charAt(i);
+            if (c < ' ' || (c == ' ' && previous == ' ') || Character.toLowerCase(c) != c) return false;
+            previous = c;
+        }
+        return previous != ' ' || phenomenon.isEmpty();
+    }
+}
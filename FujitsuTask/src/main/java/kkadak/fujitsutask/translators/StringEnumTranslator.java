@@ -90,7 +90,8 @@ public class StringEnumTranslator {
     /**
      * Used to translate user input rule value type String to {@link kkadak.fujitsutask.enums.ExtraFeeRuleValueType}
      *
-     * @param valueTypeStr user input rule value type String (any variation of "from", "until", "phenomenon")
+     * @param valueTypeStr user input rule value type String (any variation of "from", "until", "phenomenon",
+     *                     "pattern")
      * @return respective {@link kkadak.fujitsutask.enums.ExtraFeeRuleValueType} in case of success
      * <p>
      * {@link kkadak.fujitsutask.enums.ExtraFeeRuleValueType}.UNKNOWN in case of error
@@ -103,6 +104,7 @@ public class StringEnumTranslator {
             case "from" -> ExtraFeeRuleValueType.FROM;
             case "until" -> ExtraFeeRuleValueType.UNTIL;
             case "phenomenon" -> ExtraFeeRuleValueType.PHENOMENON;
+            case "pattern" -> ExtraFeeRuleValueType.PATTERN;
             default -> ExtraFeeRuleValueType.UNKNOWN;
         };
     }
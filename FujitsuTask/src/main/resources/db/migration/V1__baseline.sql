@@ -0,0 +1,41 @@
+-- Schema as previously created by Hibernate, existing databases are left untouched
+create sequence if not exists fee_rule_seq start with 1 increment by 1;
+
+create table if not exists base_fee_rule
+(
+    city                 tinyint check (city between 0 and 3),
+    fee_amount           float(53),
+    vehicle_type         tinyint check (vehicle_type between 0 and 3),
+    id                   bigint not null,
+    valid_from_timestamp bigint,
+    primary key (id)
+);
+
+create table if not exists extra_fee_rule
+(
+    fee_amount            float(53),
+    metric                tinyint check (metric between 0 and 3),
+    numeric_value         float(53),
+    value_type            tinyint check (value_type between 0 and 3),
+    vehicle_type          tinyint check (vehicle_type between 0 and 3),
+    id                    bigint not null,
+    valid_from_timestamp  bigint,
+    valid_until_timestamp bigint,
+    value_str             varchar(255),
+    primary key (id)
+);
+
+create table if not exists weather_data
+(
+    air_temp     float(53),
+    station_wmo  integer,
+    wind_speed   float(53),
+    id           bigint generated by default as identity,
+    timestamp    bigint,
+    phenomenon   varchar(255),
+    station_name varchar(255),
+    primary key (id)
+);
+
+-- Columns added to existing tables after their creation
+alter table extra_fee_rule add column if not exists numeric_value float(53);
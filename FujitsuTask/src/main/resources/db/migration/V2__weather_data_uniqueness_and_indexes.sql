@@ -0,0 +1,22 @@
+-- Remove observations imported more than once, keeping the first import
+delete from weather_data w
+where exists (select 1
+              from weather_data o
+              where o.station_wmo = w.station_wmo
+                and o.timestamp = w.timestamp
+                and o.id < w.id);
+
+alter table weather_data add constraint if not exists uk_weather_data_station_timestamp
+    unique (station_wmo, timestamp);
+
+-- Most recent observation of a station at or before a timestamp
+create index if not exists idx_weather_data_station_timestamp
+    on weather_data (station_wmo, timestamp desc);
+
+-- Most recent base fee rule of a city and vehicle type at or before a timestamp
+create index if not exists idx_base_fee_rule_city_vehicle_valid_from
+    on base_fee_rule (city, vehicle_type, valid_from_timestamp desc);
+
+-- Extra fee rules of a vehicle type valid at a timestamp
+create index if not exists idx_extra_fee_rule_vehicle_valid_until_from
+    on extra_fee_rule (vehicle_type, valid_until_timestamp, valid_from_timestamp);
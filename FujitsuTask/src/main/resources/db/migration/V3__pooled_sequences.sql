@@ -0,0 +1,8 @@
+-- Identifiers are allocated in blocks of 50, with the pooled-lo optimizer the sequence value is the first
+-- identifier of a block, so the values already handed out stay unique
+alter sequence fee_rule_seq increment by 50;
+
+-- WeatherData identifiers are taken from a sequence instead of the identity column, continuing after existing rows
+create sequence if not exists weather_data_seq start with 1 increment by 50;
+alter sequence weather_data_seq restart with (select coalesce(max(id), 0) + 1 from weather_data);
+alter table weather_data alter column id drop identity;
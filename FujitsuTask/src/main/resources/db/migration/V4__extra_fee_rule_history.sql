@@ -0,0 +1,36 @@
+-- Numeric values of rules saved before the value was stored as a number
+update extra_fee_rule
+set numeric_value = cast(value_str as float(53))
+where numeric_value is null
+  and value_type in (0, 1);
+
+-- Disabled extra fee rules, appended in ascending order of valid_until_timestamp and never modified
+create table if not exists extra_fee_rule_history
+(
+    fee_amount            float(53),
+    metric                tinyint check (metric between 0 and 3),
+    numeric_value         float(53),
+    value_type            tinyint check (value_type between 0 and 3),
+    vehicle_type          tinyint check (vehicle_type between 0 and 3),
+    id                    bigint not null,
+    valid_from_timestamp  bigint,
+    valid_until_timestamp bigint not null,
+    value_str             varchar(255),
+    primary key (id)
+);
+
+insert into extra_fee_rule_history (id, vehicle_type, fee_amount, metric, value_type, value_str, numeric_value,
+                                    valid_from_timestamp, valid_until_timestamp)
+select id, vehicle_type, fee_amount, metric, value_type, value_str, numeric_value,
+       valid_from_timestamp, valid_until_timestamp
+from extra_fee_rule
+where valid_until_timestamp is not null;
+
+-- The ExtraFeeRule table only keeps the currently valid rules
+delete from extra_fee_rule where valid_until_timestamp is not null;
+drop index if exists idx_extra_fee_rule_vehicle_valid_until_from;
+alter table extra_fee_rule drop column valid_until_timestamp;
+
+-- Disabled rules of a vehicle type valid at a timestamp, only rules disabled after the timestamp are read
+create index if not exists idx_extra_fee_rule_history_vehicle_valid_until_from
+    on extra_fee_rule_history (vehicle_type, valid_until_timestamp, valid_from_timestamp);
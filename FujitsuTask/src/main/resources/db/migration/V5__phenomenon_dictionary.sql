@@ -0,0 +1,31 @@
+-- Dictionary of the normalized weather phenomena, weather data references the phenomena by code
+create sequence if not exists phenomenon_seq start with 1 increment by 1;
+create table if not exists phenomenon
+(
+    id   integer      not null,
+    name varchar(255) not null,
+    primary key (id),
+    constraint uk_phenomenon_name unique (name)
+);
+
+insert into phenomenon (id, name)
+select next value for phenomenon_seq, name
+from (select distinct lower(regexp_replace(trim(phenomenon), '\s+', ' ')) as name
+      from weather_data
+      where phenomenon is not null) as distinct_phenomena;
+
+alter table weather_data add column if not exists phenomenon_code integer;
+update weather_data w
+set phenomenon_code = (select p.id
+                       from phenomenon p
+                       where p.name = lower(regexp_replace(trim(w.phenomenon), '\s+', ' ')))
+where phenomenon is not null;
+alter table weather_data drop column phenomenon;
+
+-- Phenomenon rules hold the normalized phenomena they are matched against
+update extra_fee_rule
+set value_str = lower(regexp_replace(trim(value_str), '\s+', ' '))
+where value_type = 2;
+update extra_fee_rule_history
+set value_str = lower(regexp_replace(trim(value_str), '\s+', ' '))
+where value_type = 2;
@@ -0,0 +1,11 @@
+-- Single row holding the version of the fee rules, bumped by every rule change and polled by every instance
+create table if not exists rules_version
+(
+    id      integer not null,
+    version bigint  not null,
+    primary key (id)
+);
+
+insert into rules_version (id, version)
+select 1, 0
+where not exists (select 1 from rules_version where id = 1);
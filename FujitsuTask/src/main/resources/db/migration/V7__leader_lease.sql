@@ -0,0 +1,12 @@
+-- Leases of the jobs which only one instance may run at a time, the holder renews the lease before it expires
+create table if not exists leader_lease
+(
+    name       varchar(64) not null,
+    holder     varchar(64),
+    expires_at bigint      not null,
+    primary key (name)
+);
+
+insert into leader_lease (name, holder, expires_at)
+select 'weather-import', null, 0
+where not exists (select 1 from leader_lease where name = 'weather-import');
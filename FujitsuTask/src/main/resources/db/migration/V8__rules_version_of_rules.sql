@@ -0,0 +1,13 @@
+-- Version of the fee rules which saved or disabled a rule, rules saved before the column existed have none and are
+-- only read by a full reload of the rule cache
+alter table base_fee_rule add column if not exists rules_version bigint;
+alter table extra_fee_rule add column if not exists rules_version bigint;
+alter table extra_fee_rule_history add column if not exists rules_version bigint;
+
+-- Rules of a single change of the fee rules
+create index if not exists idx_base_fee_rule_rules_version
+    on base_fee_rule (rules_version);
+create index if not exists idx_extra_fee_rule_rules_version
+    on extra_fee_rule (rules_version);
+create index if not exists idx_extra_fee_rule_history_rules_version
+    on extra_fee_rule_history (rules_version);
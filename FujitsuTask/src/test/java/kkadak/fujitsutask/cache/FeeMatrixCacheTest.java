@@ -0,0 +1,94 @@
+package kkadak.fujitsutask.cache;
+
+import kkadak.fujitsutask.enums.City;
+import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
+import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
+import kkadak.fujitsutask.model.BaseFeeRule;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.repository.BaseFeeRuleRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
+import kkadak.fujitsutask.repository.RulesVersionRepository;
+import kkadak.fujitsutask.repository.WeatherDataRepository;
+import kkadak.fujitsutask.store.JpaWeatherDataStore;
+import kkadak.fujitsutask.translators.WeatherStationTranslator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+class FeeMatrixCacheTest {
+    @Mock
+    private WeatherDataRepository weatherDataRepository;
+    @Mock
+    private BaseFeeRuleRepository baseFeeRuleRepository;
+    @Mock
+    private ExtraFeeRuleRepository extraFeeRuleRepository;
+    @Mock
+    private ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository;
+    @Mock
+    private RulesVersionRepository rulesVersionRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    private FeeMatrixCache feeMatrixCache;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        feeMatrixCache = new FeeMatrixCache(new FeeRuleCache(baseFeeRuleRepository, extraFeeRuleRepository,
+                extraFeeRuleHistoryRepository, rulesVersionRepository, transactionManager),
+                new WeatherDataCache(new JpaWeatherDataStore(weatherDataRepository)));
+        when(baseFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(new ArrayList<>() {{
+            add(new BaseFeeRule(City.TARTU, VehicleType.BIKE, 2.5));
+            add(new BaseFeeRule(City.TALLINN, VehicleType.BIKE, 3D));
+        }});
+        when(extraFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(new ArrayList<>() {{
+            add(new ExtraFeeRule(ExtraFeeRuleMetric.WINDSPEED, ExtraFeeRuleValueType.FROM, 20D, VehicleType.BIKE,
+                    null));
+            add(new ExtraFeeRule("Light rain", VehicleType.BIKE, 0.5));
+        }});
+        when(weatherDataRepository
+                .findByStationWmoOrderByTimestampAsc(WeatherStationTranslator.getWmoOfCity(City.TARTU)))
+                .thenReturn(List.of(new WeatherData(WeatherStationTranslator.getWmoOfCity(City.TARTU),
+                        "Tartu-Tõravere", 5D, 5D, "Light rain", 10L)));
+    }
+
+    @Test
+    void testGetMatrix_HoldsFeesAndErrors() throws DeliveryFeeCalculationException {
+        FeeMatrix matrix = feeMatrixCache.getMatrix();
+        assertEquals(matrix.getFee(City.TARTU, VehicleType.BIKE), 3D);
+        assertEquals(assertThrowsExactly(DeliveryFeeCalculationException.class,
+                        () -> matrix.getFee(City.TARTU, VehicleType.CAR)).getMessage(),
+                "Use of selected vehicle is not allowed in specified city");
+        assertEquals(assertThrowsExactly(DeliveryFeeCalculationException.class,
+                        () -> matrix.getFee(City.TALLINN, VehicleType.BIKE)).getMessage(),
+                "No valid weather data recorded");
+        assertThrowsExactly(DeliveryFeeCalculationException.class,
+                () -> matrix.getFee(City.UNKNOWN, VehicleType.BIKE));
+        assertSame(matrix, feeMatrixCache.getMatrix());
+    }
+
+    @Test
+    void testOnWeatherDataSaved_RecalculatesMatrix() throws DeliveryFeeCalculationException {
+        FeeMatrix before = feeMatrixCache.getMatrix();
+        feeMatrixCache.onWeatherDataSaved(List.of(new WeatherData(WeatherStationTranslator.getWmoOfCity(City.TARTU),
+                "Tartu-Tõravere", 5D, 25D, "Clear", 20L)));
+        FeeMatrix after = feeMatrixCache.getMatrix();
+
+        assertNotSame(before, after);
+        assertEquals(before.getFee(City.TARTU, VehicleType.BIKE), 3D);
+        assertEquals(assertThrowsExactly(DeliveryFeeCalculationException.class,
+                        () -> after.getFee(City.TARTU, VehicleType.BIKE)).getMessage(),
+                "Usage of selected vehicle type is currently forbidden");
+    }
+}
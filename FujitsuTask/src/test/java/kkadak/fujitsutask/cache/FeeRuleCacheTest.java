@@ -0,0 +1,168 @@
+package kkadak.fujitsutask.cache;
+
+import kkadak.fujitsutask.enums.City;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.events.FeeRulesChangedEvent;
+import kkadak.fujitsutask.model.BaseFeeRule;
+import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.model.ExtraFeeRuleHistory;
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.repository.BaseFeeRuleRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
+import kkadak.fujitsutask.repository.RulesVersionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FeeRuleCacheTest {
+    @Mock
+    private BaseFeeRuleRepository baseFeeRuleRepository;
+    @Mock
+    private ExtraFeeRuleRepository extraFeeRuleRepository;
+    @Mock
+    private ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository;
+    @Mock
+    private RulesVersionRepository rulesVersionRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @InjectMocks
+    private FeeRuleCache feeRuleCache;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testGetSnapshot_BuildsOnceAndIndexesRules() {
+        when(baseFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(new ArrayList<>() {{
+            add(new BaseFeeRule(City.TARTU, VehicleType.BIKE, null));
+            add(new BaseFeeRule(City.TARTU, VehicleType.CAR, 3D));
+            add(new BaseFeeRule(City.TARTU, VehicleType.BIKE, 2D));
+        }});
+        when(extraFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(new ArrayList<>() {{
+            add(new ExtraFeeRule("testPhenomenon", VehicleType.BIKE, 1D));
+        }});
+
+        FeeRuleSnapshot snapshot = feeRuleCache.getSnapshot();
+        assertSame(snapshot, feeRuleCache.getSnapshot());
+        verify(baseFeeRuleRepository, times(1)).findByOrderByValidFromTimestampDesc();
+
+        assertEquals(snapshot.getBaseFee(City.TARTU, VehicleType.CAR), 3D);
+        assertNull(snapshot.getBaseFee(City.TARTU, VehicleType.BIKE));
+        assertNull(snapshot.getBaseFee(City.TALLINN, VehicleType.CAR));
+        assertNull(snapshot.getBaseFee(City.UNKNOWN, VehicleType.CAR));
+        assertEquals(snapshot.getExtraFeeRules(VehicleType.BIKE).size(), 1);
+        assertTrue(snapshot.getExtraFeeRules(VehicleType.CAR).isEmpty());
+    }
+
+    @Test
+    void testRefresh_SwapsSnapshotWithNewVersion() {
+        FeeRuleSnapshot first = feeRuleCache.getSnapshot();
+        assertNull(first.getBaseFee(City.PARNU, VehicleType.SCOOTER));
+
+        when(baseFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(new ArrayList<>() {{
+            add(new BaseFeeRule(City.PARNU, VehicleType.SCOOTER, 2.5));
+        }});
+        FeeRuleSnapshot second = feeRuleCache.refresh();
+
+        assertSame(second, feeRuleCache.getSnapshot());
+        assertTrue(second.getVersion() > first.getVersion());
+        assertEquals(second.getBaseFee(City.PARNU, VehicleType.SCOOTER), 2.5);
+        assertNull(first.getBaseFee(City.PARNU, VehicleType.SCOOTER));
+    }
+
+    @Test
+    void testOnRulesChanged_SkipsSeenChanges() {
+        when(rulesVersionRepository.getVersion()).thenReturn(0L, 2L);
+        FeeRuleSnapshot first = feeRuleCache.getSnapshot();
+        feeRuleCache.onRulesChanged(new FeeRulesChangedEvent(2L));
+        FeeRuleSnapshot second = feeRuleCache.getSnapshot();
+        assertNotSame(second, first);
+        assertEquals(feeRuleCache.getRuleVersion(), 2L);
+
+        // The snapshot built after the second change already contains the first one
+        feeRuleCache.onRulesChanged(new FeeRulesChangedEvent(1L));
+        feeRuleCache.onRulesChanged(new FeeRulesChangedEvent(2L));
+        assertSame(feeRuleCache.getSnapshot(), second);
+        verify(baseFeeRuleRepository, times(2)).findByOrderByValidFromTimestampDesc();
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void testOnRulesChanged_AppliesNextChangeIncrementally() throws DeliveryFeeCalculationException {
+        ExtraFeeRule snowRule = new ExtraFeeRule("Snow", VehicleType.BIKE, 1D);
+        snowRule.setId(1L);
+        snowRule.setValidFromTimestamp(100L);
+        BaseFeeRule baseFeeRule = new BaseFeeRule(City.TARTU, VehicleType.CAR, 3D);
+        baseFeeRule.setValidFromTimestamp(100L);
+        when(rulesVersionRepository.getVersion()).thenReturn(1L, 2L);
+        when(extraFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(List.of(snowRule));
+        when(baseFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(List.of(baseFeeRule));
+        FeeRuleSnapshot first = feeRuleCache.getSnapshot();
+
+        // The second change disables the snow rule and saves a rain rule and a new base fee
+        ExtraFeeRule rainRule = new ExtraFeeRule("Rain", VehicleType.BIKE, 0.5);
+        rainRule.setId(2L);
+        rainRule.setValidFromTimestamp(200L);
+        BaseFeeRule newBaseFeeRule = new BaseFeeRule(City.TARTU, VehicleType.CAR, 4D);
+        newBaseFeeRule.setValidFromTimestamp(200L);
+        when(extraFeeRuleHistoryRepository.findByRulesVersion(2L))
+                .thenReturn(List.of(new ExtraFeeRuleHistory(snowRule, 200L, 2L)));
+        when(extraFeeRuleRepository.findByRulesVersion(2L)).thenReturn(List.of(rainRule));
+        when(baseFeeRuleRepository.findByRulesVersion(2L)).thenReturn(List.of(newBaseFeeRule));
+        feeRuleCache.onRulesChanged(new FeeRulesChangedEvent(2L));
+
+        // Only the rules of the change are read
+        FeeRuleSnapshot second = feeRuleCache.getSnapshot();
+        verify(extraFeeRuleHistoryRepository, times(1)).findByOrderByValidFromTimestampDesc();
+        verify(baseFeeRuleRepository, times(1)).findByOrderByValidFromTimestampDesc();
+        assertEquals(feeRuleCache.getRuleVersion(), 2L);
+        assertTrue(second.getVersion() > first.getVersion());
+
+        WeatherData snow = new WeatherData(26242, "Tartu-Tõravere", 5D, 1D, "Snow", 0L);
+        WeatherData rain = new WeatherData(26242, "Tartu-Tõravere", 5D, 1D, "Rain", 0L);
+        assertEquals(second.getExtraFeeRules(VehicleType.BIKE), List.of(rainRule));
+        assertEquals(second.getBaseFee(City.TARTU, VehicleType.CAR), 4D);
+        assertEquals(second.getBaseFeeAt(City.TARTU, VehicleType.CAR, 150L), 3D);
+        assertEquals(second.getCompiledExtraFeeRulesAt(VehicleType.BIKE, 150L).getExtraFee(snow), 1D);
+        assertEquals(second.getCompiledExtraFeeRulesAt(VehicleType.BIKE, 200L).getExtraFee(snow), 0D);
+        assertEquals(second.getCompiledExtraFeeRulesAt(VehicleType.BIKE, 200L).getExtraFee(rain), 0.5);
+        assertEquals(first.getExtraFeeRules(VehicleType.BIKE), List.of(snowRule));
+        assertEquals(first.getBaseFee(City.TARTU, VehicleType.CAR), 3D);
+    }
+
+    @Test
+    void testRefresh_IncludesDisabledRules() throws DeliveryFeeCalculationException {
+        ExtraFeeRule activeRule = new ExtraFeeRule("Snow", VehicleType.BIKE, 1D);
+        activeRule.setId(2L);
+        activeRule.setValidFromTimestamp(100L);
+        ExtraFeeRule disabledRule = new ExtraFeeRule("Rain", VehicleType.BIKE, 0.5);
+        disabledRule.setId(1L);
+        disabledRule.setValidFromTimestamp(50L);
+        when(extraFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(List.of(activeRule));
+        when(extraFeeRuleHistoryRepository.findByOrderByValidFromTimestampDesc())
+                .thenReturn(List.of(new ExtraFeeRuleHistory(disabledRule, 150L, 1L)));
+
+        // Disabled rules are only part of the rule history
+        FeeRuleSnapshot snapshot = feeRuleCache.refresh();
+        WeatherData rain = new WeatherData(26242, "Tartu-Tõravere", 5D, 1D, "Rain", 0L);
+        assertEquals(snapshot.getExtraFeeRules(VehicleType.BIKE), List.of(activeRule));
+        assertEquals(snapshot.getCompiledExtraFeeRulesAt(VehicleType.BIKE, 120L).getExtraFee(rain), 0.5);
+        assertEquals(snapshot.getCompiledExtraFeeRulesAt(VehicleType.BIKE, 200L).getExtraFee(rain), 0D);
+    }
+}
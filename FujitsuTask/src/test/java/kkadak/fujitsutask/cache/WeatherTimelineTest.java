@@ -0,0 +1,63 @@
+package kkadak.fujitsutask.cache;
+
+import kkadak.fujitsutask.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class WeatherTimelineTest {
+
+    private static WeatherData observation(long timestamp, double airTemp, String phenomenon) {
+        return new WeatherData(26038, "Tallinn-Harku", airTemp, 5D, phenomenon, timestamp);
+    }
+
+    @Test
+    void testOf_ServesAsOfLookups() {
+        WeatherTimeline timeline = WeatherTimeline.of(List.of(observation(300L, 3D, "Mist"),
+                observation(100L, 1D, "Clear"), observation(100L, 2D, "Light rain")));
+        assertEquals(timeline.size(), 2);
+        assertNull(timeline.getAsOf(99L));
+        assertEquals(timeline.getAsOf(299L).getAirTemp(), 2D);
+        assertEquals(timeline.getAsOf(299L).getPhenomenon(), "Light rain");
+        assertEquals(timeline.getAsOf(299L).getStationName(), "Tallinn-Harku");
+        assertEquals(timeline.getLatest().getTimestamp(), 300L);
+        assertNull(WeatherTimeline.EMPTY.getLatest());
+        assertSame(timeline.append(List.of()), timeline);
+    }
+
+    @Test
+    void testAppend_KeepsEarlierTimelinesUnchanged() {
+        WeatherTimeline first = WeatherTimeline.of(List.of(observation(100L, 1D, "Clear")));
+        WeatherTimeline second = first.append(List.of(observation(200L, 2D, "Clear")));
+
+        // Branching off the earlier timeline must not overwrite the rows of the later one
+        WeatherTimeline branch = first.append(List.of(observation(200L, 5D, "Mist")));
+        assertEquals(first.size(), 1);
+        assertEquals(first.getAsOf(1000L).getAirTemp(), 1D);
+        assertEquals(second.getAsOf(1000L).getAirTemp(), 2D);
+        assertEquals(branch.getAsOf(1000L).getPhenomenon(), "Mist");
+
+        // Older observations are merged into the timeline
+        WeatherTimeline merged = second.append(List.of(observation(150L, 4D, "Snow"), observation(200L, 6D, "Snow")));
+        assertEquals(merged.size(), 3);
+        assertEquals(merged.getAsOf(199L).getAirTemp(), 4D);
+        assertEquals(merged.getAsOf(200L).getAirTemp(), 6D);
+    }
+
+    @Test
+    void testScan_ReturnsRangeInOrder() {
+        WeatherTimeline timeline = WeatherTimeline.EMPTY;
+        for (long timestamp = 1; timestamp <= 100; timestamp++)
+            timeline = timeline.append(List.of(observation(timestamp * 10, timestamp, "Clear")));
+        assertEquals(timeline.size(), 100);
+
+        List<Long> timestamps = new ArrayList<>();
+        timeline.scan(205L, 250L, (timestamp, airTemp, windSpeed, phenomenon) -> timestamps.add(timestamp));
+        assertEquals(timestamps, List.of(210L, 220L, 230L, 240L, 250L));
+    }
+}
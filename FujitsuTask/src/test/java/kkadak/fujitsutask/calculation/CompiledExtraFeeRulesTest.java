@@ -0,0 +1,93 @@
+package kkadak.fujitsutask.calculation;
+
+import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
+import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+
+class CompiledExtraFeeRulesTest {
+    private final List<ExtraFeeRule> rules = new ArrayList<>() {{
+        add(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.UNTIL, 0D, VehicleType.BIKE, 0.5));
+        add(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.UNTIL, -10D, VehicleType.BIKE, 1D));
+        add(new ExtraFeeRule(ExtraFeeRuleMetric.WINDSPEED, ExtraFeeRuleValueType.FROM, 10D, VehicleType.BIKE, 0.5));
+        add(new ExtraFeeRule(ExtraFeeRuleMetric.WINDSPEED, ExtraFeeRuleValueType.FROM, 20D, VehicleType.BIKE, null));
+        add(new ExtraFeeRule("Light snow shower", VehicleType.BIKE, 1D));
+        add(new ExtraFeeRule("Glaze", VehicleType.BIKE, null));
+    }};
+
+    private static WeatherData weather(double airTemp, double windSpeed, String phenomenon) {
+        return new WeatherData(26038, "Tallinn-Harku", airTemp, windSpeed, phenomenon, 0L);
+    }
+
+    @Test
+    void testGetExtraFee_MatchesClosestThreshold() throws DeliveryFeeCalculationException {
+        CompiledExtraFeeRules compiled = new CompiledExtraFeeRules(rules);
+        assertEquals(compiled.getExtraFee(weather(5D, 5D, "Clear")), 0D);
+        assertEquals(compiled.getExtraFee(weather(0D, 5D, "Clear")), 0.5);
+        assertEquals(compiled.getExtraFee(weather(-0D, 5D, "Clear")), 0.5);
+        assertEquals(compiled.getExtraFee(weather(-5D, 5D, "Clear")), 0.5);
+        assertEquals(compiled.getExtraFee(weather(-10D, 5D, "Clear")), 1D);
+        assertEquals(compiled.getExtraFee(weather(-20D, 10D, "Clear")), 1.5);
+        assertEquals(compiled.getExtraFee(weather(-20D, 19.9, "light SNOW shower")), 2.5);
+    }
+
+    @Test
+    void testGetExtraFee_MatchesNormalizedPhenomenon() throws DeliveryFeeCalculationException {
+        CompiledExtraFeeRules compiled = new CompiledExtraFeeRules(List.of(
+                new ExtraFeeRule(" Light  Snow shower", VehicleType.BIKE, 1D),
+                new ExtraFeeRule("light snow shower", VehicleType.BIKE, 2D)));
+        assertEquals(compiled.getExtraFee(weather(5D, 5D, "light snow shower")), 1D);
+        assertEquals(compiled.getExtraFee(weather(5D, 5D, "Light snow\tshower ")), 1D);
+        assertEquals(compiled.getExtraFee(weather(5D, 5D, "Light snow")), 0D);
+        assertEquals(compiled.getExtraFee(weather(5D, 5D, null)), 0D);
+    }
+
+    @Test
+    void testGetExtraFee_MatchesFirstPatternRule() throws DeliveryFeeCalculationException {
+        CompiledExtraFeeRules compiled = new CompiledExtraFeeRules(List.of(
+                new ExtraFeeRule(ExtraFeeRuleValueType.PATTERN, "snow|sleet", VehicleType.BIKE, 1D),
+                new ExtraFeeRule(ExtraFeeRuleValueType.PATTERN, "shower|rain", VehicleType.BIKE, 0.5),
+                new ExtraFeeRule(ExtraFeeRuleValueType.PATTERN, "glaze|hail|thunder", VehicleType.BIKE, null),
+                new ExtraFeeRule("Heavy snow shower", VehicleType.BIKE, 2D)));
+        assertEquals(compiled.getExtraFee(weather(5D, 5D, "Light snow shower")), 1D);
+        assertEquals(compiled.getExtraFee(weather(5D, 5D, "Moderate sleet")), 1D);
+        assertEquals(compiled.getExtraFee(weather(5D, 5D, "Light shower")), 0.5);
+        assertEquals(compiled.getExtraFee(weather(5D, 5D, "Heavy snow shower")), 2D);
+        assertEquals(compiled.getExtraFee(weather(5D, 5D, "Clear")), 0D);
+        assertEquals(compiled.getExtraFee(weather(5D, 5D, "")), 0D);
+        assertThrowsExactly(DeliveryFeeCalculationException.class,
+                () -> compiled.getExtraFee(weather(5D, 5D, "Thunderstorm")));
+    }
+
+    @Test
+    void testGetExtraFee_ThrowsExceptionForForbiddenConditions() {
+        CompiledExtraFeeRules compiled = new CompiledExtraFeeRules(rules);
+        assertThrowsExactly(DeliveryFeeCalculationException.class,
+                () -> compiled.getExtraFee(weather(5D, 20D, "Clear")));
+        assertThrowsExactly(DeliveryFeeCalculationException.class,
+                () -> compiled.getExtraFee(weather(5D, 30D, "Clear")));
+        assertThrowsExactly(DeliveryFeeCalculationException.class,
+                () -> compiled.getExtraFee(weather(5D, 5D, "Glaze")));
+    }
+
+    @Test
+    void testThresholdTable_UsesFirstRuleOfEqualValues() {
+        ThresholdTable table = ThresholdTable.of(new ArrayList<>() {{
+            add(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.FROM, 5D, VehicleType.CAR, 1D));
+            add(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.FROM, 5D, VehicleType.CAR, 2D));
+            add(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.UNTIL, 0D, VehicleType.CAR, 3D));
+        }}, ExtraFeeRuleValueType.FROM);
+        assertEquals(table.size(), 1);
+        assertEquals(table.find(4D), -1);
+        assertEquals(table.getFee(table.find(7D)), 1D);
+    }
+}
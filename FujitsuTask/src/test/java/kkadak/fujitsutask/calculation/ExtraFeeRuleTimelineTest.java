@@ -0,0 +1,120 @@
+package kkadak.fujitsutask.calculation;
+
+import kkadak.fujitsutask.enums.City;
+import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
+import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
+import kkadak.fujitsutask.model.BaseFeeRule;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+
+class ExtraFeeRuleTimelineTest {
+    private static final WeatherData weatherData = new WeatherData(26038, "Tallinn-Harku", -5D, 15D, "Light rain",
+            0L);
+
+    private static ExtraFeeRule rule(ExtraFeeRule rule, Long validFrom, Long validUntil) {
+        rule.setValidFromTimestamp(validFrom);
+        rule.setValidUntilTimestamp(validUntil);
+        return rule;
+    }
+
+    @Test
+    void testGetRulesAt_ReturnsRulesValidAtTimestamp() throws DeliveryFeeCalculationException {
+        ExtraFeeRuleTimeline timeline = ExtraFeeRuleTimeline.of(new ArrayList<>() {{
+            add(rule(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.UNTIL, 0D, VehicleType.BIKE,
+                    0.5), 100L, 200L));
+            add(rule(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.UNTIL, 0D, VehicleType.BIKE,
+                    1D), 200L, null));
+            add(rule(new ExtraFeeRule("Light rain", VehicleType.BIKE, 2D), 150L, 300L));
+            add(rule(new ExtraFeeRule(ExtraFeeRuleMetric.WINDSPEED, ExtraFeeRuleValueType.FROM, 10D,
+                    VehicleType.BIKE, null), 250L, 260L));
+        }});
+
+        assertSame(timeline.getRulesAt(99L), CompiledExtraFeeRules.EMPTY);
+        assertEquals(timeline.getRulesAt(100L).getExtraFee(weatherData), 0.5);
+        assertEquals(timeline.getRulesAt(150L).getExtraFee(weatherData), 2.5);
+        assertEquals(timeline.getRulesAt(199L).getExtraFee(weatherData), 2.5);
+        assertEquals(timeline.getRulesAt(200L).getExtraFee(weatherData), 3D);
+        assertThrowsExactly(DeliveryFeeCalculationException.class,
+                () -> timeline.getRulesAt(255L).getExtraFee(weatherData));
+        assertEquals(timeline.getRulesAt(260L).getExtraFee(weatherData), 3D);
+        assertEquals(timeline.getRulesAt(300L).getExtraFee(weatherData), 1D);
+    }
+
+    @Test
+    void testAppend_KeepsEarlierSegments() throws DeliveryFeeCalculationException {
+        ExtraFeeRule coldRule = rule(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.UNTIL, 0D,
+                VehicleType.BIKE, 0.5), 100L, null);
+        coldRule.setId(1L);
+        ExtraFeeRuleTimeline timeline = ExtraFeeRuleTimeline.of(List.of(coldRule));
+
+        // The cold rule is disabled and a rain rule saved at the same moment
+        ExtraFeeRule disabledColdRule = rule(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP,
+                ExtraFeeRuleValueType.UNTIL, 0D, VehicleType.BIKE, 0.5), 100L, 200L);
+        disabledColdRule.setId(1L);
+        ExtraFeeRule rainRule = rule(new ExtraFeeRule("Light rain", VehicleType.BIKE, 2D), 200L, null);
+        rainRule.setId(2L);
+        ExtraFeeRuleTimeline appended = timeline.append(List.of(disabledColdRule, rainRule),
+                List.of(disabledColdRule, rainRule));
+
+        assertSame(appended.getRulesAt(150L), timeline.getRulesAt(150L));
+        assertEquals(appended.getRulesAt(150L).getExtraFee(weatherData), 0.5);
+        assertEquals(appended.getRulesAt(200L).getExtraFee(weatherData), 2D);
+        assertEquals(timeline.getRulesAt(200L).getExtraFee(weatherData), 0.5);
+
+        // A change before the last segment rebuilds the timeline
+        ExtraFeeRule earlyRule = rule(new ExtraFeeRule(ExtraFeeRuleMetric.WINDSPEED, ExtraFeeRuleValueType.FROM, 10D,
+                VehicleType.BIKE, 1D), 50L, null);
+        earlyRule.setId(3L);
+        ExtraFeeRuleTimeline rebuilt = appended.append(List.of(disabledColdRule, rainRule, earlyRule),
+                List.of(earlyRule));
+        assertEquals(rebuilt.getRulesAt(50L).getExtraFee(weatherData), 1D);
+        assertEquals(rebuilt.getRulesAt(150L).getExtraFee(weatherData), 1.5);
+        assertEquals(rebuilt.getRulesAt(200L).getExtraFee(weatherData), 3D);
+    }
+
+    @Test
+    void testGetFeeAt_ReturnsMostRecentBaseFee() {
+        BaseFeeTimeline timeline = BaseFeeTimeline.of(List.of(
+                new BaseFeeRule(City.TARTU, VehicleType.CAR, 4D) {{
+                    setValidFromTimestamp(300L);
+                }},
+                new BaseFeeRule(City.TARTU, VehicleType.CAR, null) {{
+                    setValidFromTimestamp(200L);
+                }},
+                new BaseFeeRule(City.TARTU, VehicleType.CAR, 3.5) {{
+                    setValidFromTimestamp(100L);
+                }}));
+
+        assertNull(timeline.getFeeAt(99L));
+        assertEquals(timeline.getFeeAt(100L), 3.5);
+        assertNull(timeline.getFeeAt(250L));
+        assertEquals(timeline.getFeeAt(Long.MAX_VALUE), 4D);
+
+        // Rules set after the last rule are appended, an earlier rule rebuilds the timeline
+        BaseFeeTimeline appended = timeline.append(List.of(), List.of(
+                new BaseFeeRule(City.TARTU, VehicleType.CAR, 5D) {{
+                    setValidFromTimestamp(400L);
+                }}));
+        assertEquals(appended.getFeeAt(350L), 4D);
+        assertEquals(appended.getFeeAt(400L), 5D);
+        BaseFeeTimeline rebuilt = appended.append(List.of(
+                new BaseFeeRule(City.TARTU, VehicleType.CAR, 2D) {{
+                    setValidFromTimestamp(50L);
+                }}), List.of(
+                new BaseFeeRule(City.TARTU, VehicleType.CAR, 2D) {{
+                    setValidFromTimestamp(50L);
+                }}));
+        assertEquals(rebuilt.getFeeAt(50L), 2D);
+    }
+}
@@ -0,0 +1,63 @@
+package kkadak.fujitsutask.calculation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PhenomenonMatcherTest {
+
+    @Test
+    void testFind_ReturnsLowestMatchingFragment() {
+        PhenomenonMatcher matcher = PhenomenonMatcher.of(List.of("snow", "rain", "now", "hail", "ice pellets"));
+        assertEquals(matcher.find("light snow shower"), 0);
+        assertEquals(matcher.find("moderate rain"), 1);
+        assertEquals(matcher.find("heavy rain with snow"), 0);
+        assertEquals(matcher.find("nowhere"), 2);
+        assertEquals(matcher.find("ice pellets and hail"), 3);
+        assertEquals(matcher.find("ice pellet"), -1);
+        assertEquals(matcher.find("clear"), -1);
+        assertEquals(matcher.find(""), -1);
+        assertEquals(matcher.find(null), -1);
+    }
+
+    @Test
+    void testFind_FollowsFailureLinks() {
+        // "he" and "she" end inside "ushers", "hers" only after a failure transition from "she"
+        PhenomenonMatcher matcher = PhenomenonMatcher.of(List.of("hers", "his", "she", "he"));
+        assertEquals(matcher.find("ushers"), 0);
+        assertEquals(matcher.find("ushe"), 2);
+        assertEquals(matcher.find("this"), 1);
+        assertEquals(matcher.find("ahe"), 3);
+    }
+
+    @Test
+    void testFind_MatchesNaiveSearch() {
+        List<String> fragments = List.of("ab", "bab", "aab", "b", "abba");
+        PhenomenonMatcher matcher = PhenomenonMatcher.of(fragments);
+
+        // Every string over 'a', 'b' and 'c' up to length 6
+        List<String> texts = new ArrayList<>(List.of(""));
+        for (int length = 0; length < 6; length++) {
+            List<String> longer = new ArrayList<>();
+            for (String text : texts) if (text.length() == length) for (char c : "abc".toCharArray())
+                longer.add(text + c);
+            texts.addAll(longer);
+        }
+
+        for (String text : texts) {
+            int expected = -1;
+            for (int i = 0; i < fragments.size() && expected < 0; i++) if (text.contains(fragments.get(i)))
+                expected = i;
+            assertEquals(matcher.find(text), expected, text);
+        }
+    }
+
+    @Test
+    void testEmpty_MatchesNothing() {
+        assertEquals(PhenomenonMatcher.EMPTY.find("snow"), -1);
+        assertEquals(PhenomenonMatcher.of(List.of("", "")).find("snow"), -1);
+    }
+}
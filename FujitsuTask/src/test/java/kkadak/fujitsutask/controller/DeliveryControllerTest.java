@@ -3,21 +3,23 @@ package kkadak.fujitsutask.controller;
 import kkadak.fujitsutask.enums.City;
 import kkadak.fujitsutask.enums.VehicleType;
 import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
+import kkadak.fujitsutask.exceptions.IncompatibleFeeRuleException;
 import kkadak.fujitsutask.initializers.FeeRuleInitializer;
-import kkadak.fujitsutask.model.ExtraFeeRule;
 import kkadak.fujitsutask.repository.BaseFeeRuleRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository;
 import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
 import kkadak.fujitsutask.service.DeliveryServiceImpl;
+import kkadak.fujitsutask.service.FeeQueryStreamProcessor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
-import java.util.Optional;
-
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class DeliveryControllerTest {
@@ -29,6 +31,10 @@ class DeliveryControllerTest {
     private BaseFeeRuleRepository baseFeeRuleRepository;
     @Mock
     private ExtraFeeRuleRepository extraFeeRuleRepository;
+    @Mock
+    private ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository;
+    @Mock
+    private FeeQueryStreamProcessor feeQueryStreamProcessor;
     @InjectMocks
     private DeliveryController deliveryController;
 
@@ -48,7 +54,7 @@ class DeliveryControllerTest {
     }
 
     @Test
-    void testGetFee_ReturnsCorrectMessage() {
+    void testGetFee_ReturnsCorrectMessage() throws IncompatibleFeeRuleException {
         assertEquals(deliveryController.getFee(null, null, null, null, null,
                 null, "a", "car", null), "Unknown value for 'city' parameter");
         assertEquals(deliveryController.getFee(null, null, null, null, null,
@@ -61,16 +67,17 @@ class DeliveryControllerTest {
                 null, null, null, null, null));
         assertDoesNotThrow(() -> deliveryController.getFee("history", null, null, null,
                 null, null, null, null, null));
-        when(extraFeeRuleRepository.findById(1L)).thenReturn(
-                Optional.of(new ExtraFeeRule("a", VehicleType.BIKE, 1.0) {{
-                    setId(1L);
-                }}));
         assertEquals(deliveryController.getFee("disable", "a", null, null,
                 null, null, null, null, null), "Unknown value for 'id' parameter");
         assertEquals(deliveryController.getFee("disable", "1", null, null,
                 null, null, null, null, null), "Rule disabled");
+        verify(feeRuleInitializer).DisableRule(1L);
+        doThrow(new IncompatibleFeeRuleException("Rule not found")).when(feeRuleInitializer).DisableRule(0L);
         assertEquals(deliveryController.getFee("disable", "0", null, null,
                 null, null, null, null, null), "Rule not found");
+        doThrow(new IncompatibleFeeRuleException("Rule already disabled")).when(feeRuleInitializer).DisableRule(2L);
+        assertEquals(deliveryController.getFee("disable", "2", null, null,
+                null, null, null, null, null), "Rule already disabled");
         assertEquals(deliveryController.getFee("add", null, "base", null,
                 null, "forbid", "Tallinn", "a", null), "Unknown value for 'vehicle' parameter");
         assertEquals(deliveryController.getFee("add", null, "base", null,
@@ -0,0 +1,131 @@
+package kkadak.fujitsutask.cron;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kkadak.fujitsutask.cron.ImportPipeline.Stage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImportPipelineTest {
+    private MeterRegistry meterRegistry;
+    private ImportPipeline importPipeline;
+
+    /**
+     * Returns the properties of the pipeline, every stage times out after the specified amount of milliseconds
+     *
+     * @param timeoutMs timeout of the stages
+     * @return properties of the pipeline
+     */
+    static MockEnvironment environment(long timeoutMs) {
+        MockEnvironment environment = new MockEnvironment().withProperty("weather.import.queue-capacity", "1");
+        for (Stage stage : Stage.values())
+            environment.setProperty(String.format("weather.import.%s-timeout-ms", stage.getName()),
+                    String.valueOf(timeoutMs));
+        return environment;
+    }
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        importPipeline = new ImportPipeline(meterRegistry, environment(200));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        importPipeline.shutdown();
+    }
+
+    @Test
+    void testStage_ReturnsResultAndRecordsDuration() throws Exception {
+        assertEquals(importPipeline.stage(Stage.PARSE, () -> 42), 42);
+        assertEquals(meterRegistry.get("weather.import.stage").tags("stage", "parse", "outcome", "success")
+                .timer().count(), 1L);
+        assertEquals(meterRegistry.get("weather.import.stage.queue").tags("stage", "parse").gauge().value(), 0D);
+    }
+
+    @Test
+    void testStage_RethrowsFailureOfStage() {
+        IOException exception = assertThrows(IOException.class, () -> importPipeline.stage(Stage.FETCH, () -> {
+            throw new IOException("Unexpected response status 500");
+        }));
+        assertEquals(exception.getMessage(), "Unexpected response status 500");
+        assertEquals(meterRegistry.get("weather.import.stage").tags("stage", "fetch", "outcome", "failure")
+                .timer().count(), 1L);
+    }
+
+    @Test
+    void testStage_InterruptsStageAfterTimeout() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        assertThrows(TimeoutException.class, () -> importPipeline.stage(Stage.PERSIST, () -> {
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        }));
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        assertEquals(meterRegistry.get("weather.import.stage").tags("stage", "persist", "outcome", "timeout")
+                .timer().count(), 1L);
+
+        // The thread of the stage is free for the next run
+        assertEquals(importPipeline.stage(Stage.PERSIST, () -> "saved"), "saved");
+    }
+
+    @Test
+    void testSubmit_RejectsOverlappingRun() throws Exception {
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        Future<?> slowRun = importPipeline.submit(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        assertThrows(RejectedExecutionException.class, () -> importPipeline.submit(() -> {
+        }));
+        assertEquals(meterRegistry.get("weather.import.skipped").counter().count(), 1D);
+
+        // The next run starts once the slow one has finished
+        release.countDown();
+        slowRun.get(1, TimeUnit.SECONDS);
+        importPipeline.submit(() -> {
+        }).get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testSubmitIfIdle_LeavesOutTaskWithoutCountingSkippedRun() throws Exception {
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        Future<?> slowRun = importPipeline.submit(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        assertNull(importPipeline.submitIfIdle(() -> {
+        }));
+        assertEquals(meterRegistry.get("weather.import.skipped").counter().count(), 0D);
+
+        release.countDown();
+        slowRun.get(1, TimeUnit.SECONDS);
+        importPipeline.submitIfIdle(() -> {
+        }).get(1, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,120 @@
+package kkadak.fujitsutask.cron;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ObservationsClientTest {
+    private static final String document = "<observations timestamp=\"1710504000\"></observations>";
+    private final List<String> requestETags = new ArrayList<>();
+    private final List<Integer> remotePorts = new ArrayList<>();
+    private HttpServer server;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+        // Serves the document gzipped with an ETag, answers 304 to a request with the same ETag
+        server.createContext("/observations", exchange -> {
+            String eTag = exchange.getRequestHeaders().getFirst("If-None-Match");
+            requestETags.add(eTag);
+            remotePorts.add(exchange.getRemoteAddress().getPort());
+            if ("\"v1\"".equals(eTag)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(document.getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("Content-Encoding",
+                    "gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding")) ? "gzip" : "identity");
+            exchange.sendResponseHeaders(200, compressed.size());
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(compressed.toByteArray());
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException ignored) {
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private ObservationsClient client(String path, long readTimeoutMs) {
+        return new ObservationsClient(String.format("http://127.0.0.1:%d%s", server.getAddress().getPort(), path),
+                1000, readTimeoutMs);
+    }
+
+    @Test
+    void testFetch_DecompressesAndSendsConditionalRequests() throws IOException, InterruptedException {
+        ObservationsClient client = client("/observations", 5000);
+
+        try (InputStream inputStream = client.fetch()) {
+            assertEquals(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8), document);
+        }
+        client.commit();
+        assertNull(client.fetch());
+        assertEquals(requestETags, new ArrayList<>() {{
+            add(null);
+            add("\"v1\"");
+        }});
+
+        // Connection is kept alive between the fetches
+        assertEquals(remotePorts.get(0), remotePorts.get(1));
+    }
+
+    @Test
+    void testFetch_UnconditionalUntilDocumentIsCommitted() throws IOException, InterruptedException {
+        ObservationsClient client = client("/observations", 5000);
+
+        // The document of the first fetch fails to be imported, so it is fetched again in full
+        client.fetch().close();
+        client.fetch().close();
+        client.commit();
+        assertNull(client.fetch());
+
+        // Nothing fetched since the last commit keeps the validators
+        client.commit();
+        assertNull(client.fetch());
+        assertEquals(requestETags, new ArrayList<>() {{
+            add(null);
+            add(null);
+            add("\"v1\"");
+            add("\"v1\"");
+        }});
+    }
+
+    @Test
+    void testFetch_ThrowsExceptionOnTimeout() {
+        assertThrows(HttpTimeoutException.class, () -> client("/slow", 200).fetch());
+    }
+}
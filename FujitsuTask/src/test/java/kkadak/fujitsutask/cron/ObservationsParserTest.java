@@ -0,0 +1,46 @@
+package kkadak.fujitsutask.cron;
+
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.translators.WeatherStationTranslator;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObservationsParserTest {
+
+    @Test
+    void testParse_ReturnsRequestedStations() throws IOException, XMLStreamException {
+        List<WeatherData> result;
+        try (InputStream inputStream = getClass().getResourceAsStream("/observations.xml")) {
+            result = ObservationsParser.parse(inputStream, WeatherStationTranslator.getStationWmosToFetch());
+        }
+
+        // Pärnu station is left out because of the missing air temperature
+        assertEquals(result.size(), 2);
+        assertEquals(result.get(0).getStationWmo(), 26038);
+        assertEquals(result.get(0).getStationName(), "Tallinn-Harku");
+        assertEquals(result.get(0).getAirTemp(), -2.1);
+        assertEquals(result.get(0).getWindSpeed(), 4.7);
+        assertEquals(result.get(0).getPhenomenon(), "Light snow shower");
+        assertEquals(result.get(0).getTimestamp(), 1710504000L);
+        assertEquals(result.get(1).getStationName(), "Tartu-Tõravere");
+        assertEquals(result.get(1).getPhenomenon(), "");
+    }
+
+    @Test
+    void testParse_ReturnsNothingWithoutTimestamp() throws XMLStreamException {
+        String xml = "<observations><station><name>Tallinn-Harku</name><wmocode>26038</wmocode>"
+                + "<phenomenon></phenomenon><airtemperature>1</airtemperature><windspeed>1</windspeed>"
+                + "</station></observations>";
+        assertTrue(ObservationsParser.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+                List.of(26038)).isEmpty());
+    }
+}
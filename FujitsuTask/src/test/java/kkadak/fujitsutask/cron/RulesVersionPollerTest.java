@@ -0,0 +1,109 @@
+package kkadak.fujitsutask.cron;
+
+import kkadak.fujitsutask.FujitsuTaskApplication;
+import kkadak.fujitsutask.cache.FeeRuleCache;
+import kkadak.fujitsutask.enums.City;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.events.FeeRulesChangedEvent;
+import kkadak.fujitsutask.exceptions.IncompatibleFeeRuleException;
+import kkadak.fujitsutask.initializers.FeeRuleInitializer;
+import kkadak.fujitsutask.repository.RulesVersionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RulesVersionPollerTest {
+    @Mock
+    private RulesVersionRepository rulesVersionRepository;
+    @Mock
+    private FeeRuleCache feeRuleCache;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private TaskScheduler taskScheduler;
+    private RulesVersionPoller rulesVersionPoller;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        rulesVersionPoller = new RulesVersionPoller(rulesVersionRepository, feeRuleCache, eventPublisher,
+                taskScheduler, 100);
+    }
+
+    @Test
+    void testPoll_PublishesOnlyNewerVersions() {
+        when(feeRuleCache.getRuleVersion()).thenReturn(3L);
+        when(rulesVersionRepository.getVersion()).thenReturn(3L, 4L);
+
+        assertFalse(rulesVersionPoller.poll());
+        verify(eventPublisher, never()).publishEvent(any());
+        assertTrue(rulesVersionPoller.poll());
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(((FeeRulesChangedEvent) event.getValue()).getVersion(), 4L);
+    }
+
+    @Test
+    void testPoll_SurvivesDatabaseErrors() {
+        when(rulesVersionRepository.getVersion()).thenThrow(new DataAccessResourceFailureException("Unavailable"));
+        assertFalse(rulesVersionPoller.poll());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    /**
+     * Starts an instance of the application without the web server, the weather data fetch fails immediately
+     * <p>
+     * The properties are passed as command line arguments, which take precedence over application.properties
+     *
+     * @param databaseUrl URL of the database shared by the instances
+     * @return context of the started instance
+     */
+    private static ConfigurableApplicationContext start(String databaseUrl) {
+        return new SpringApplicationBuilder(FujitsuTaskApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + databaseUrl,
+                        "--weather.url=http://localhost:1/observations.php",
+                        "--rules.version.poll-delay-ms=50",
+                        "--startup.warm-up-calls=0");
+    }
+
+    @Test
+    void testPoll_RebuildsRulesChangedByOtherInstance() throws IncompatibleFeeRuleException, InterruptedException {
+        String databaseUrl = String.format("jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1", UUID.randomUUID());
+        try (ConfigurableApplicationContext first = start(databaseUrl);
+             ConfigurableApplicationContext second = start(databaseUrl)) {
+            FeeRuleCache secondCache = second.getBean(FeeRuleCache.class);
+            assertNull(secondCache.getSnapshot().getBaseFee(City.TARTU, VehicleType.CAR));
+
+            first.getBean(FeeRuleInitializer.class).InitializeNewRule(City.TARTU, VehicleType.CAR, 9D);
+            assertEquals(first.getBean(FeeRuleCache.class).getSnapshot().getBaseFee(City.TARTU, VehicleType.CAR), 9D);
+
+            // The other instance rebuilds its rules within a few polls
+            long deadline = System.currentTimeMillis() + 5000;
+            while (secondCache.getSnapshot().getBaseFee(City.TARTU, VehicleType.CAR) == null
+                    && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+            assertEquals(secondCache.getSnapshot().getBaseFee(City.TARTU, VehicleType.CAR), 9D);
+            assertEquals(secondCache.getRuleVersion(), first.getBean(FeeRuleCache.class).getRuleVersion());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package kkadak.fujitsutask.cron;
+
+import kkadak.fujitsutask.cache.WeatherDataCache;
+import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
+import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.model.ExtraFeeRuleHistory;
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
+import kkadak.fujitsutask.repository.WeatherDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WeatherDataCompactorTest {
+    @Mock
+    private WeatherDataRepository weatherDataRepository;
+    @Mock
+    private ExtraFeeRuleRepository extraFeeRuleRepository;
+    @Mock
+    private ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository;
+    @Mock
+    private WeatherDataCache weatherDataCache;
+    @Mock
+    private TaskScheduler taskScheduler;
+    private WeatherDataCompactor weatherDataCompactor;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        weatherDataCompactor = new WeatherDataCompactor(weatherDataRepository, extraFeeRuleRepository,
+                extraFeeRuleHistoryRepository, weatherDataCache, taskScheduler, "0 45 3 * * *", 30, 2);
+        when(extraFeeRuleRepository.findAll()).thenReturn(List.of(
+                new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.UNTIL, 0.0, VehicleType.BIKE, 1.0)));
+        when(extraFeeRuleHistoryRepository.findAll()).thenReturn(List.of(new ExtraFeeRuleHistory(
+                new ExtraFeeRule(ExtraFeeRuleMetric.WINDSPEED, ExtraFeeRuleValueType.FROM, 10.0, VehicleType.BIKE,
+                        0.5), 100L, 1L)));
+        when(weatherDataRepository.findStationWmos()).thenReturn(List.of(26242));
+    }
+
+    private static WeatherData observation(long id, double airTemp, double windSpeed, String phenomenon) {
+        WeatherData weatherData = new WeatherData(26242, "Tallinn-Harku", airTemp, windSpeed, phenomenon, id * 3600);
+        weatherData.setId(id);
+        return weatherData;
+    }
+
+    @Test
+    void testCompact_DeletesObservationsWithinSameThresholds() {
+        // Read in batches of two, every batch starts after the last read observation and the third one is the last
+        when(weatherDataRepository.findByStationWmoAndTimestampBetweenOrderByTimestampAsc(eq(26242), anyLong(),
+                anyLong(), eq(Limit.of(2)))).thenReturn(
+                List.of(observation(1, 5, 3, "Clear"), observation(2, 7, 5, "Clear")),
+                List.of(observation(3, 5, 10, "Clear"), observation(4, 5, 12, "Clear")),
+                List.of(observation(5, -1, 12, "Clear")));
+
+        assertEquals(weatherDataCompactor.compact(), 2);
+        verify(weatherDataRepository).deleteAllByIdInBatch(List.of(2L));
+        verify(weatherDataRepository).deleteAllByIdInBatch(List.of(4L));
+        verify(weatherDataRepository).findByStationWmoAndTimestampBetweenOrderByTimestampAsc(eq(26242),
+                eq(2 * 3600L + 1), anyLong(), eq(Limit.of(2)));
+        verify(weatherDataCache).reload();
+    }
+
+    @Test
+    void testCompact_KeepsPhenomenonChanges() {
+        when(weatherDataRepository.findByStationWmoAndTimestampBetweenOrderByTimestampAsc(eq(26242), anyLong(),
+                anyLong(), eq(Limit.of(2)))).thenReturn(
+                List.of(observation(1, 5, 3, "Clear"), observation(2, 5, 3, "Light snow shower")), List.of());
+
+        assertEquals(weatherDataCompactor.compact(), 0);
+        verify(weatherDataRepository, never()).deleteAllByIdInBatch(anyList());
+        verify(weatherDataCache, never()).reload();
+    }
+
+    @Test
+    void testIsEquivalent_ThresholdValueBelongsToRuleSide() {
+        WeatherDataCompactor.Thresholds untilZero = new WeatherDataCompactor.Thresholds(new double[0], new double[]{0});
+        WeatherDataCompactor.Thresholds fromZero = new WeatherDataCompactor.Thresholds(new double[]{0}, new double[0]);
+        WeatherDataCompactor.Thresholds none = new WeatherDataCompactor.Thresholds(new double[0], new double[0]);
+        WeatherData below = observation(1, -0.5, 3, "Clear");
+        WeatherData at = observation(2, 0, 3, "Clear");
+        WeatherData above = observation(3, 0.5, 3, "Clear");
+
+        // 'until' rules include the threshold in the values below it, 'from' rules in the values above it
+        assertTrue(WeatherDataCompactor.isEquivalent(below, at, untilZero, none));
+        assertFalse(WeatherDataCompactor.isEquivalent(at, above, untilZero, none));
+        assertFalse(WeatherDataCompactor.isEquivalent(below, at, fromZero, none));
+        assertTrue(WeatherDataCompactor.isEquivalent(at, above, fromZero, none));
+    }
+}
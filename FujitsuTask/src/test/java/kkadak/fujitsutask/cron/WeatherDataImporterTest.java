@@ -0,0 +1,211 @@
+package kkadak.fujitsutask.cron;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kkadak.fujitsutask.cache.FeeMatrixCache;
+import kkadak.fujitsutask.cache.WeatherDataCache;
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.store.WeatherDataStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WeatherDataImporterTest {
+    @Mock
+    private WeatherDataStore weatherDataStore;
+    @Mock
+    private TaskScheduler taskScheduler;
+    @Mock
+    private FeeMatrixCache feeMatrixCache;
+    @Mock
+    private ObservationsClient observationsClient;
+    @Mock
+    private WeatherImportLease weatherImportLease;
+    @Mock
+    private WeatherDataCache weatherDataCache;
+    @Captor
+    private ArgumentCaptor<List<WeatherData>> savedData;
+    private ImportPipeline importPipeline;
+    private WeatherDataImporter weatherDataImporter;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        importPipeline = new ImportPipeline(new SimpleMeterRegistry(), ImportPipelineTest.environment(5000));
+        weatherDataImporter = new WeatherDataImporter(weatherDataStore, taskScheduler, feeMatrixCache,
+                observationsClient, weatherImportLease, weatherDataCache, importPipeline);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        importPipeline.shutdown();
+    }
+
+    private InputStream sample() {
+        return getClass().getResourceAsStream("/observations.xml");
+    }
+
+    @Test
+    void testFetchAndSave_SkipsUnchangedDocument() throws IOException, InterruptedException {
+        when(observationsClient.fetch()).thenReturn(null);
+        weatherDataImporter.fetchAndSave();
+        verify(weatherDataStore, never()).saveAll(anyList());
+
+        // Same document timestamp is imported only once
+        when(observationsClient.fetch()).thenReturn(sample(), sample());
+        weatherDataImporter.fetchAndSave();
+        weatherDataImporter.fetchAndSave();
+        verify(weatherDataStore, times(1)).saveAll(anyList());
+        verify(feeMatrixCache, times(1)).onWeatherDataSaved(anyList());
+    }
+
+    @Test
+    void testFetchAndSave_SavesOnlyNewObservations() throws IOException, InterruptedException {
+        when(observationsClient.fetch()).thenReturn(sample());
+        when(weatherDataStore.findStationWmosWithTimestamp(eq(1710504000L), any()))
+                .thenReturn(List.of(26038));
+        weatherDataImporter.fetchAndSave();
+        verify(weatherDataStore).saveAll(savedData.capture());
+        assertEquals(savedData.getValue().size(), 1);
+        assertEquals(savedData.getValue().get(0).getStationWmo(), 26242);
+    }
+
+    @Test
+    void testFetchAndSave_FollowerPicksUpLeaderData() throws IOException, InterruptedException {
+        WeatherData latest = new WeatherData(26038, "Tallinn-Harku", 1D, 1D, "", 100L);
+        WeatherData saved = new WeatherData(26038, "Tallinn-Harku", 2D, 1D, "", 200L);
+        when(weatherDataStore.isShared()).thenReturn(true);
+        when(weatherImportLease.tryAcquire()).thenReturn(false);
+        when(weatherDataCache.getLatest(26038)).thenReturn(latest);
+        when(weatherDataStore.findNewerThan(anyInt(), anyLong())).thenReturn(List.of());
+        when(weatherDataStore.findNewerThan(26038, 100L)).thenReturn(List.of(saved));
+
+        weatherDataImporter.fetchAndSave();
+        verify(observationsClient, never()).fetch();
+        verify(weatherDataStore, never()).saveAll(anyList());
+        verify(feeMatrixCache).onWeatherDataSaved(List.of(saved));
+
+        // Nothing new is saved by the leader
+        when(weatherDataStore.findNewerThan(26038, 100L)).thenReturn(List.of());
+        weatherDataImporter.fetchAndSave();
+        verify(feeMatrixCache, times(1)).onWeatherDataSaved(anyList());
+    }
+
+    @Test
+    void testRenewLeadership_NewLeaderImports() throws IOException, InterruptedException {
+        when(weatherDataStore.isShared()).thenReturn(true);
+        when(weatherImportLease.isHeld()).thenReturn(false, true);
+        when(weatherImportLease.tryAcquire()).thenReturn(true);
+        when(observationsClient.fetch()).thenReturn(sample());
+
+        // Taking over imports right away in the pipeline, renewing does not
+        weatherDataImporter.renewLeadership();
+        verify(weatherDataStore, timeout(1000)).saveAll(anyList());
+        weatherDataImporter.renewLeadership();
+        verify(observationsClient, times(1)).fetch();
+        verify(weatherDataStore, never()).findNewerThan(anyInt(), anyLong());
+    }
+
+    @Test
+    void testFetchAndSave_StopsAtFailedStage() throws IOException, InterruptedException {
+        when(observationsClient.fetch()).thenReturn(sample());
+        when(weatherDataStore.saveAll(anyList())).thenThrow(new DataAccessResourceFailureException("Unavailable"));
+        weatherDataImporter.fetchAndSave();
+        verify(weatherDataStore).saveAll(anyList());
+        verify(feeMatrixCache, never()).onWeatherDataSaved(anyList());
+        verify(observationsClient, never()).commit();
+    }
+
+    @Test
+    void testFetchAndSave_RetriesDocumentAfterFailedSave() throws IOException, InterruptedException {
+        when(observationsClient.fetch()).thenReturn(sample(), sample());
+        when(weatherDataStore.saveAll(anyList())).thenThrow(new DataAccessResourceFailureException("Unavailable"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // The failed document stays uncommitted, so the next fetch is unconditional and the document is saved
+        weatherDataImporter.fetchAndSave();
+        verify(observationsClient, never()).commit();
+        weatherDataImporter.fetchAndSave();
+        verify(weatherDataStore, times(2)).saveAll(anyList());
+        verify(observationsClient).commit();
+    }
+
+    @Test
+    void testFetchAndSave_PicksUpDataOfFailedPersist() throws IOException, InterruptedException {
+        WeatherData saved = new WeatherData(26038, "Tallinn-Harku", 2D, 1D, "", 1710504000L);
+        when(observationsClient.fetch()).thenReturn(sample(), sample());
+        when(weatherDataStore.saveAll(anyList())).thenThrow(new DataAccessResourceFailureException("Timed out"));
+        when(weatherDataStore.findNewerThan(anyInt(), anyLong())).thenReturn(List.of());
+        when(weatherDataStore.findNewerThan(eq(26038), anyLong())).thenReturn(List.of(saved), List.of());
+
+        // The data saved despite the failure reaches the caches, the document is not marked as imported
+        weatherDataImporter.fetchAndSave();
+        verify(feeMatrixCache).onWeatherDataSaved(List.of(saved));
+        verify(observationsClient, never()).commit();
+
+        // The next run fetches the document again, finds its data in the store and marks it as imported
+        when(weatherDataStore.findStationWmosWithTimestamp(eq(1710504000L), any())).thenReturn(List.of(26038, 26242));
+        weatherDataImporter.fetchAndSave();
+        verify(weatherDataStore, times(1)).saveAll(anyList());
+        verify(feeMatrixCache, times(1)).onWeatherDataSaved(anyList());
+        verify(observationsClient).commit();
+    }
+
+    @Test
+    void testRenewLeadership_LeavesOutPickUpWhileRunInProgress() throws IOException, InterruptedException {
+        CountDownLatch fetching = new CountDownLatch(1), release = new CountDownLatch(1);
+        when(observationsClient.fetch()).thenAnswer(invocation -> {
+            fetching.countDown();
+            release.await();
+            return null;
+        });
+        weatherDataImporter.startFetch();
+        assertTrue(fetching.await(1, TimeUnit.SECONDS));
+
+        when(weatherImportLease.tryAcquire()).thenReturn(false);
+        weatherDataImporter.renewLeadership();
+        release.countDown();
+        verify(weatherDataStore, never()).findNewerThan(anyInt(), anyLong());
+    }
+
+    @Test
+    void testStartFetch_SkipsWhilePreviousRunInProgress() throws IOException, InterruptedException {
+        CountDownLatch fetching = new CountDownLatch(1), release = new CountDownLatch(1);
+        when(observationsClient.fetch()).thenAnswer(invocation -> {
+            fetching.countDown();
+            release.await();
+            return null;
+        });
+
+        weatherDataImporter.startFetch();
+        assertTrue(fetching.await(1, TimeUnit.SECONDS));
+        weatherDataImporter.startFetch();
+        weatherDataImporter.fetchAndSave();
+        release.countDown();
+        verify(observationsClient, times(1)).fetch();
+    }
+}
@@ -0,0 +1,91 @@
+package kkadak.fujitsutask.cron;
+
+import kkadak.fujitsutask.cache.PhenomenonDictionary;
+import kkadak.fujitsutask.repository.LeaderLeaseRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the leases of two instances against the same database, every test runs without a surrounding transaction so
+ * the leases commit as they do in the application
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WeatherImportLeaseTest {
+    @Autowired
+    private LeaderLeaseRepository leaderLeaseRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @SpringBootConfiguration
+    @EntityScan("kkadak.fujitsutask.model")
+    @EnableJpaRepositories("kkadak.fujitsutask.repository")
+    @Import(PhenomenonDictionary.class)
+    static class TestConfiguration {
+    }
+
+    private WeatherImportLease lease(long durationMs) {
+        return new WeatherImportLease(leaderLeaseRepository, transactionManager, durationMs);
+    }
+
+    @Test
+    void testTryAcquire_OnlyOneHolder() {
+        WeatherImportLease first = lease(60000), second = lease(60000);
+        try {
+            assertTrue(first.tryAcquire());
+            assertFalse(second.tryAcquire());
+
+            // Renewal by the holder succeeds
+            assertTrue(first.tryAcquire());
+            assertFalse(second.tryAcquire());
+            assertTrue(first.isHeld());
+            assertFalse(second.isHeld());
+        } finally {
+            first.release();
+            second.release();
+        }
+    }
+
+    @Test
+    void testRelease_LetsOtherInstanceTakeOver() {
+        WeatherImportLease first = lease(60000), second = lease(60000);
+        try {
+            assertTrue(first.tryAcquire());
+            first.release();
+            assertFalse(first.isHeld());
+            assertTrue(second.tryAcquire());
+            assertFalse(first.tryAcquire());
+        } finally {
+            first.release();
+            second.release();
+        }
+    }
+
+    @Test
+    void testTryAcquire_TakesOverExpiredLease() throws InterruptedException {
+        WeatherImportLease first = lease(50), second = lease(50);
+        try {
+            assertTrue(first.tryAcquire());
+            assertFalse(second.tryAcquire());
+
+            // The holder stops renewing, as if it had died
+            Thread.sleep(100);
+            assertTrue(second.tryAcquire());
+            assertFalse(first.tryAcquire());
+        } finally {
+            first.release();
+            second.release();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package kkadak.fujitsutask.initializers;
+
+import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
+import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.model.ExtraFeeRule;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExtraFeeRuleConflictsTest {
+
+    private static ExtraFeeRule threshold(ExtraFeeRuleValueType valueType, double value) {
+        return new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, valueType, value, VehicleType.BIKE, 1D);
+    }
+
+    /**
+     * Pairwise check of the single rule method: same value type and value, or an 'UNTIL' value at or above a
+     * 'FROM' value
+     */
+    private static boolean conflicts(ExtraFeeRule first, ExtraFeeRule second) {
+        if (first.getValueType() == second.getValueType())
+            return first.getNumericValue().equals(second.getNumericValue());
+        ExtraFeeRule until = first.getValueType() == ExtraFeeRuleValueType.UNTIL ? first : second;
+        ExtraFeeRule from = until == first ? second : first;
+        return until.getNumericValue() >= from.getNumericValue();
+    }
+
+    @Test
+    void testFind_MatchesPairwiseCheck() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<ExtraFeeRule> existing = new ArrayList<>();
+            existing.add(threshold(ExtraFeeRuleValueType.UNTIL, random.nextInt(3) - 5));
+            existing.add(threshold(ExtraFeeRuleValueType.FROM, random.nextInt(3) + 5));
+            for (int i = 0; i < existing.size(); i++) existing.get(i).setId(i + 1L);
+
+            Map<Integer, ExtraFeeRule> added = new LinkedHashMap<>();
+            for (int number = 1; number <= 6; number++)
+                added.put(number, threshold(random.nextBoolean() ? ExtraFeeRuleValueType.FROM
+                        : ExtraFeeRuleValueType.UNTIL, random.nextInt(16) - 8));
+
+            Set<Integer> expected = new TreeSet<>();
+            added.forEach((number, rule) -> {
+                for (ExtraFeeRule other : existing) if (conflicts(rule, other)) expected.add(number);
+                added.forEach((otherNumber, other) -> {
+                    if (!otherNumber.equals(number) && conflicts(rule, other)) expected.add(number);
+                });
+            });
+
+            assertEquals(ExtraFeeRuleConflicts.find(existing, added).keySet(), expected);
+        }
+    }
+
+    @Test
+    void testFind_ReportsDuplicatePhenomenonRules() {
+        ExtraFeeRule existing = new ExtraFeeRule("Glaze", VehicleType.BIKE, null);
+        existing.setId(3L);
+        Map<Integer, ExtraFeeRule> added = new LinkedHashMap<>();
+        added.put(1, new ExtraFeeRule(" GLAZE ", VehicleType.BIKE, 1D));
+        added.put(2, new ExtraFeeRule(ExtraFeeRuleValueType.PATTERN, "glaze", VehicleType.BIKE, 1D));
+        added.put(3, new ExtraFeeRule("Glaze", VehicleType.CAR, 1D));
+        added.put(4, new ExtraFeeRule(ExtraFeeRuleValueType.PATTERN, "Glaze ", VehicleType.BIKE, 1D));
+
+        assertEquals(ExtraFeeRuleConflicts.find(List.of(existing), added),
+                Map.of(1, "Conflicting rule (ID: 3)", 2, "Conflicting rule 4 of the rule set",
+                        4, "Conflicting rule 2 of the rule set"));
+    }
+}
@@ -0,0 +1,186 @@
+package kkadak.fujitsutask.initializers;
+
+import kkadak.fujitsutask.cache.PhenomenonDictionary;
+import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
+import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.exceptions.IncompatibleFeeRuleException;
+import kkadak.fujitsutask.model.FeeRuleDefinition;
+import kkadak.fujitsutask.model.FeeRuleImportResult;
+import kkadak.fujitsutask.repository.BaseFeeRuleRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
+import kkadak.fujitsutask.repository.RulesVersionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the rule changes of two instances against the same database at the same time, every test runs without a
+ * surrounding transaction so the changes commit as they do in the application
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FeeRuleInitializerSharedDatabaseTest {
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private BaseFeeRuleRepository baseFeeRuleRepository;
+    @Autowired
+    private ExtraFeeRuleRepository extraFeeRuleRepository;
+    @Autowired
+    private ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository;
+    @Autowired
+    private RulesVersionRepository rulesVersionRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @SpringBootConfiguration
+    @EntityScan("kkadak.fujitsutask.model")
+    @EnableJpaRepositories("kkadak.fujitsutask.repository")
+    @Import(PhenomenonDictionary.class)
+    static class TestConfiguration {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        baseFeeRuleRepository.deleteAllInBatch();
+        extraFeeRuleRepository.deleteAllInBatch();
+        extraFeeRuleHistoryRepository.deleteAllInBatch();
+    }
+
+    private FeeRuleInitializer initializer() {
+        return new FeeRuleInitializer(baseFeeRuleRepository, extraFeeRuleRepository, extraFeeRuleHistoryRepository,
+                rulesVersionRepository, eventPublisher, transactionManager);
+    }
+
+    /**
+     * Runs both changes at the same moment and returns the amount of the changes which were saved
+     */
+    private int race(Callable<Boolean> first, Callable<Boolean> second) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> firstResult = executor.submit(() -> {
+                barrier.await();
+                return first.call();
+            });
+            Future<Boolean> secondResult = executor.submit(() -> {
+                barrier.await();
+                return second.call();
+            });
+            return (firstResult.get() ? 1 : 0) + (secondResult.get() ? 1 : 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean saved(ThrowingRuleChange change) {
+        try {
+            change.run();
+            return true;
+        } catch (IncompatibleFeeRuleException e) {
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRuleChange {
+        void run() throws IncompatibleFeeRuleException;
+    }
+
+    @Test
+    void testInitializeNewRule_OnlyOneOfConflictingThresholdRulesIsSaved() throws Exception {
+        FeeRuleInitializer first = initializer(), second = initializer();
+        for (int round = 0; round < ROUNDS; round++) {
+            extraFeeRuleRepository.deleteAllInBatch();
+            int saved = race(
+                    () -> saved(() -> first.InitializeNewRule(ExtraFeeRuleMetric.WINDSPEED,
+                            ExtraFeeRuleValueType.FROM, 10D, VehicleType.BIKE, 0.5)),
+                    () -> saved(() -> second.InitializeNewRule(ExtraFeeRuleMetric.WINDSPEED,
+                            ExtraFeeRuleValueType.UNTIL, 15D, VehicleType.BIKE, 0.5)));
+
+            assertEquals(saved, 1);
+            assertEquals(extraFeeRuleRepository.getRules(VehicleType.BIKE).size(), 1);
+        }
+    }
+
+    @Test
+    void testInitializeNewRule_OnlyOneOfDuplicatePhenomenonRulesIsSaved() throws Exception {
+        FeeRuleInitializer first = initializer(), second = initializer();
+        for (int round = 0; round < ROUNDS; round++) {
+            extraFeeRuleRepository.deleteAllInBatch();
+            int saved = race(
+                    () -> saved(() -> first.InitializeNewRule("Glaze", VehicleType.BIKE, null)),
+                    () -> saved(() -> second.InitializeNewRule(" glaze", VehicleType.BIKE, 1D)));
+
+            assertEquals(saved, 1);
+            assertEquals(extraFeeRuleRepository.getRules(VehicleType.BIKE).size(), 1);
+        }
+    }
+
+    @Test
+    void testDisableRule_OnlyOneOfDuplicateDisablesIsSaved() throws Exception {
+        FeeRuleInitializer first = initializer(), second = initializer();
+        for (int round = 0; round < ROUNDS; round++) {
+            extraFeeRuleHistoryRepository.deleteAllInBatch();
+            first.InitializeNewRule("Glaze", VehicleType.BIKE, null);
+            long ruleId = extraFeeRuleRepository.getRules(VehicleType.BIKE).get(0).getId();
+            long version = rulesVersionRepository.getVersion();
+            int saved = race(
+                    () -> saved(() -> first.DisableRule(ruleId)),
+                    () -> saved(() -> second.DisableRule(ruleId)));
+
+            // The history row of the first disable is kept as it was
+            assertEquals(saved, 1);
+            assertEquals(rulesVersionRepository.getVersion(), version + 1);
+            assertEquals(extraFeeRuleHistoryRepository.count(), 1L);
+            assertEquals(extraFeeRuleHistoryRepository.findById(ruleId).orElseThrow().getRulesVersion(), version + 1);
+            assertEquals(extraFeeRuleRepository.count(), 0L);
+        }
+    }
+
+    @Test
+    void testImportRules_OnlyOneOfConflictingRuleSetsIsSaved() throws Exception {
+        FeeRuleInitializer first = initializer(), second = initializer();
+        List<FeeRuleDefinition> firstSet = List.of(
+                new FeeRuleDefinition("until", "airtemp", "0", "0.5", null, "scooter"),
+                new FeeRuleDefinition("phenomenon", null, "Hail", "forbid", null, "scooter"));
+        List<FeeRuleDefinition> secondSet = List.of(
+                new FeeRuleDefinition("from", "airtemp", "-5", "1", null, "scooter"));
+        for (int round = 0; round < ROUNDS; round++) {
+            extraFeeRuleRepository.deleteAllInBatch();
+            FeeRuleImportResult[] results = new FeeRuleImportResult[2];
+            int saved = race(
+                    () -> (results[0] = first.ImportRules(firstSet)).getImported() != null,
+                    () -> (results[1] = second.ImportRules(secondSet)).getImported() != null);
+
+            assertEquals(saved, 1);
+            int imported = results[0].getImported() != null ? results[0].getImported() : results[1].getImported();
+            assertEquals(extraFeeRuleRepository.getRules(VehicleType.SCOOTER).size(), imported);
+        }
+    }
+}
@@ -4,20 +4,41 @@ import kkadak.fujitsutask.enums.City;
 import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
 import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
 import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.events.FeeRulesChangedEvent;
 import kkadak.fujitsutask.exceptions.IncompatibleFeeRuleException;
 import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.model.FeeRuleDefinition;
+import kkadak.fujitsutask.model.FeeRuleImportResult;
 import kkadak.fujitsutask.repository.BaseFeeRuleRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository;
 import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
+import kkadak.fujitsutask.repository.RulesVersionRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class FeeRuleInitializerTest {
@@ -25,6 +46,14 @@ class FeeRuleInitializerTest {
     private BaseFeeRuleRepository baseFeeRuleRepository;
     @Mock
     private ExtraFeeRuleRepository extraFeeRuleRepository;
+    @Mock
+    private ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository;
+    @Mock
+    private RulesVersionRepository rulesVersionRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PlatformTransactionManager transactionManager;
     @InjectMocks
     private FeeRuleInitializer feeRuleInitializer;
 
@@ -61,6 +90,13 @@ class FeeRuleInitializerTest {
                 () -> feeRuleInitializer.InitializeNewRule("testPhenomenon", null, 3D));
         assertThrowsExactly(IncompatibleFeeRuleException.class,
                 () -> feeRuleInitializer.InitializeNewRule("testPhenomenon", VehicleType.CAR, 0D));
+        assertThrowsExactly(IncompatibleFeeRuleException.class,
+                () -> feeRuleInitializer.InitializeNewRule(ExtraFeeRuleValueType.PATTERN, " | ", VehicleType.CAR, 3D));
+        assertThrowsExactly(IncompatibleFeeRuleException.class,
+                () -> feeRuleInitializer.InitializeNewRule(ExtraFeeRuleValueType.FROM, "snow", VehicleType.CAR, 3D));
+        assertThrowsExactly(IncompatibleFeeRuleException.class,
+                () -> feeRuleInitializer.InitializeNewRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.PATTERN,
+                        0D, VehicleType.CAR, 3D));
     }
 
     @Test
@@ -69,6 +105,7 @@ class FeeRuleInitializerTest {
             add(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.UNTIL, 0D, VehicleType.CAR, 3D));
             add(new ExtraFeeRule(ExtraFeeRuleMetric.WINDSPEED, ExtraFeeRuleValueType.FROM, 10D, VehicleType.CAR, 3D));
             add(new ExtraFeeRule("testPhenomenon", VehicleType.CAR, 3D));
+            add(new ExtraFeeRule(ExtraFeeRuleValueType.PATTERN, "glaze|hail", VehicleType.CAR, null));
         }});
         assertThrowsExactly(IncompatibleFeeRuleException.class,
                 () -> feeRuleInitializer.InitializeNewRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.FROM,
@@ -81,6 +118,9 @@ class FeeRuleInitializerTest {
                         0D, VehicleType.CAR, 3D));
         assertThrowsExactly(IncompatibleFeeRuleException.class,
                 () -> feeRuleInitializer.InitializeNewRule("testPhenomenon", VehicleType.CAR, 3D));
+        assertThrowsExactly(IncompatibleFeeRuleException.class,
+                () -> feeRuleInitializer.InitializeNewRule(ExtraFeeRuleValueType.PATTERN, " Glaze | HAIL",
+                        VehicleType.CAR, 3D));
     }
 
     @Test
@@ -90,13 +130,134 @@ class FeeRuleInitializerTest {
                 () -> feeRuleInitializer.InitializeNewRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.FROM,
                         0D, VehicleType.CAR, 3D));
         assertDoesNotThrow(() -> feeRuleInitializer.InitializeNewRule("testPhenomenon", VehicleType.CAR, 3D));
+        assertDoesNotThrow(() -> feeRuleInitializer.InitializeNewRule(ExtraFeeRuleValueType.PATTERN, "snow|sleet",
+                VehicleType.CAR, 3D));
     }
 
     @Test
     void initializeDefaultRules() {
-        when(extraFeeRuleRepository.findAll()).thenReturn(new ArrayList<>() {{
-            add(new ExtraFeeRule("testPhenomenon", VehicleType.CAR, 5D));
-        }});
         assertDoesNotThrow(() -> feeRuleInitializer.InitializeDefaultRules());
+
+        // Active rules are moved to the history in bulk and the change is published within the transaction
+        InOrder inOrder = inOrder(extraFeeRuleHistoryRepository, extraFeeRuleRepository, baseFeeRuleRepository,
+                transactionManager, eventPublisher);
+        inOrder.verify(extraFeeRuleHistoryRepository).archiveActiveRules(anyLong(), anyLong());
+        inOrder.verify(extraFeeRuleRepository).deleteAllInBatch();
+        inOrder.verify(baseFeeRuleRepository).saveAll(anyList());
+        inOrder.verify(extraFeeRuleRepository).saveAll(anyList());
+        inOrder.verify(eventPublisher).publishEvent(any(FeeRulesChangedEvent.class));
+        inOrder.verify(transactionManager).commit(any());
+        verify(extraFeeRuleRepository, never()).findAll();
+    }
+
+    @Test
+    void testDisableRule_MovesRuleToHistory() {
+        ExtraFeeRule rule = new ExtraFeeRule("testPhenomenon", VehicleType.CAR, 3D);
+        rule.setId(1L);
+        when(extraFeeRuleRepository.findById(1L)).thenReturn(Optional.of(rule));
+        assertDoesNotThrow(() -> feeRuleInitializer.DisableRule(1L));
+
+        InOrder inOrder = inOrder(rulesVersionRepository, extraFeeRuleRepository, extraFeeRuleHistoryRepository,
+                transactionManager, eventPublisher);
+        inOrder.verify(rulesVersionRepository).increment();
+        inOrder.verify(extraFeeRuleRepository).findById(1L);
+        inOrder.verify(extraFeeRuleHistoryRepository).save(argThat(disabled -> disabled.getId() == 1L));
+        inOrder.verify(extraFeeRuleRepository).delete(rule);
+        inOrder.verify(eventPublisher).publishEvent(any(FeeRulesChangedEvent.class));
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testDisableRule_RejectsRuleDisabledMeanwhile() {
+        ExtraFeeRule rule = new ExtraFeeRule("testPhenomenon", VehicleType.CAR, 3D);
+        rule.setId(1L);
+        when(extraFeeRuleRepository.findById(1L)).thenReturn(Optional.of(rule), Optional.empty());
+        when(extraFeeRuleHistoryRepository.existsById(1L)).thenReturn(true);
+        assertDoesNotThrow(() -> feeRuleInitializer.DisableRule(1L));
+
+        // The second disable finds the rule gone under the lock of the version row and rolls back
+        IncompatibleFeeRuleException exception = assertThrowsExactly(IncompatibleFeeRuleException.class,
+                () -> feeRuleInitializer.DisableRule(1L));
+        assertEquals(exception.getMessage(), "Rule already disabled");
+        assertEquals(assertThrowsExactly(IncompatibleFeeRuleException.class,
+                () -> feeRuleInitializer.DisableRule(2L)).getMessage(), "Rule not found");
+        verify(extraFeeRuleHistoryRepository, times(1)).save(any());
+        verify(extraFeeRuleRepository, times(1)).delete(any());
+        verify(eventPublisher, times(1)).publishEvent(any());
+        verify(transactionManager, times(1)).commit(any());
+        verify(transactionManager, times(2)).rollback(any());
+    }
+
+    @Test
+    void testImportRules_ReportsEveryError() {
+        ExtraFeeRule existing = new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.UNTIL, 0D,
+                VehicleType.BIKE, 0.5);
+        existing.setId(7L);
+        when(extraFeeRuleRepository.findAll()).thenReturn(List.of(existing));
+
+        FeeRuleImportResult result = feeRuleInitializer.ImportRules(List.of(
+                new FeeRuleDefinition("from", "airtemp", "-5", "1", null, "bike"),
+                new FeeRuleDefinition("until", "windspeed", "5", "1", null, "bike"),
+                new FeeRuleDefinition("from", "windspeed", "3", "forbid", null, "bike"),
+                new FeeRuleDefinition("phenomenon", null, "Glaze", "forbid", null, "bike"),
+                new FeeRuleDefinition("phenomenon", null, " glaze", "1", null, "bike"),
+                new FeeRuleDefinition("base", null, null, "3", "Tartu", "car"),
+                new FeeRuleDefinition("base", null, null, "4", "TRT", "car"),
+                new FeeRuleDefinition("from", "airtemp", "x", "1", null, "bike"),
+                new FeeRuleDefinition("from", "airtemp", "20", "1", null, "plane"),
+                new FeeRuleDefinition("from", "airtemp", "20", "1", null, "bike")));
+
+        assertNull(result.getImported());
+        assertEquals(result.getErrors(), List.of(
+                "Rule 1: Conflicting rule (ID: 7)",
+                "Rule 2: Conflicting rule 3 of the rule set",
+                "Rule 3: Conflicting rule 2 of the rule set",
+                "Rule 4: Conflicting rule 5 of the rule set",
+                "Rule 5: Conflicting rule 4 of the rule set",
+                "Rule 6: Conflicting rule 7 of the rule set",
+                "Rule 7: Conflicting rule 6 of the rule set",
+                "Rule 8: Unknown value for 'value' parameter",
+                "Rule 9: Unknown value for 'vehicle' parameter"));
+        verify(extraFeeRuleRepository, never()).saveAll(anyList());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void testImportRules_SavesRuleSetInSingleTransaction() {
+        when(extraFeeRuleRepository.findAll()).thenReturn(List.of(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP,
+                ExtraFeeRuleValueType.UNTIL, 0D, VehicleType.BIKE, 0.5)));
+
+        FeeRuleImportResult result = feeRuleInitializer.ImportRules(List.of(
+                new FeeRuleDefinition("base", null, null, "3", "Tartu", "car"),
+                new FeeRuleDefinition("until", "airtemp", "-10", "1", null, "bike"),
+                new FeeRuleDefinition("from", "windspeed", "10", "0.5", null, "bike"),
+                new FeeRuleDefinition("pattern", null, "glaze|hail|thunder", "forbid", null, "bike")));
+
+        assertEquals(result.getImported(), 4);
+        assertNull(result.getErrors());
+        InOrder inOrder = inOrder(baseFeeRuleRepository, extraFeeRuleRepository, transactionManager, eventPublisher);
+        inOrder.verify(baseFeeRuleRepository).saveAll(argThat(rules -> count(rules) == 1));
+        inOrder.verify(extraFeeRuleRepository).saveAll(argThat(rules -> count(rules) == 3));
+        inOrder.verify(eventPublisher).publishEvent(any(FeeRulesChangedEvent.class));
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testInitializeNewRule_PublishesIncreasingVersions() throws IncompatibleFeeRuleException {
+        when(rulesVersionRepository.getVersion()).thenReturn(1L, 2L);
+        feeRuleInitializer.InitializeNewRule(City.TALLINN, VehicleType.CAR, 3D);
+        feeRuleInitializer.InitializeNewRule("testPhenomenon", VehicleType.CAR, 3D);
+
+        ArgumentCaptor<FeeRulesChangedEvent> events = ArgumentCaptor.forClass(FeeRulesChangedEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertEquals(events.getAllValues().stream().map(FeeRulesChangedEvent::getVersion).toList(), List.of(1L, 2L));
+        verify(rulesVersionRepository, times(2)).increment();
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    private static int count(Iterable<?> rules) {
+        int count = 0;
+        for (Object ignored : rules) count++;
+        return count;
     }
 }
@@ -0,0 +1,136 @@
+package kkadak.fujitsutask.initializers;
+
+import kkadak.fujitsutask.cache.FeeMatrixCache;
+import kkadak.fujitsutask.cache.FeeRuleCache;
+import kkadak.fujitsutask.cache.WeatherDataCache;
+import kkadak.fujitsutask.cron.WeatherDataImporter;
+import kkadak.fujitsutask.enums.City;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
+import kkadak.fujitsutask.model.WeatherData;
+import kkadak.fujitsutask.service.DeliveryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StartupInitializerTest {
+    @Mock
+    private WeatherDataCache weatherDataCache;
+    @Mock
+    private FeeRuleCache feeRuleCache;
+    @Mock
+    private FeeMatrixCache feeMatrixCache;
+    @Mock
+    private WeatherDataImporter weatherDataImporter;
+    @Mock
+    private DeliveryService deliveryService;
+    @Mock
+    private TaskScheduler taskScheduler;
+    private StartupInitializer startupInitializer;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        startupInitializer = new StartupInitializer(weatherDataCache, feeRuleCache, feeMatrixCache,
+                weatherDataImporter, deliveryService, taskScheduler, 10, 1000, 7200000);
+        when(weatherDataCache.getLatest(anyInt()))
+                .thenReturn(new WeatherData(26038, "Tallinn-Harku", 1D, 1D, "", now()));
+    }
+
+    private static long now() {
+        return Instant.now().getEpochSecond();
+    }
+
+    @Test
+    void testInitialize_ReadyAfterWarmUp() throws DeliveryFeeCalculationException {
+        when(deliveryService.getDeliveryFee(City.TARTU, VehicleType.SCOOTER))
+                .thenThrow(new DeliveryFeeCalculationException("Usage of selected vehicle type is forbidden"));
+        assertFalse(startupInitializer.isReady());
+
+        startupInitializer.initialize();
+        verify(weatherDataCache).reload();
+        verify(weatherDataImporter).fetchAndSave();
+        verify(weatherDataImporter).scheduleFetch();
+
+        // Current and historical fees are calculated in turn, errors do not stop the warm-up
+        verify(deliveryService, times(5)).getDeliveryFee(any(), any());
+        verify(deliveryService, times(5)).getDeliveryFee(any(), any(), anyLong());
+        verify(taskScheduler, never()).schedule(any(Runnable.class), any(Instant.class));
+        assertTrue(startupInitializer.isReady());
+        assertEquals(new StartupHealthIndicator(startupInitializer).health().getStatus(), Status.UP);
+    }
+
+    @Test
+    void testInitialize_NotReadyUntilEveryStationHasData() {
+        when(weatherDataCache.getLatest(26242)).thenReturn(null);
+        StartupHealthIndicator startupHealthIndicator = new StartupHealthIndicator(startupInitializer);
+
+        startupInitializer.initialize();
+        assertTrue(startupInitializer.isWarmedUp());
+        assertFalse(startupInitializer.isReady());
+        assertEquals(startupHealthIndicator.health().getStatus(), Status.OUT_OF_SERVICE);
+        assertEquals(startupHealthIndicator.health().getDetails().get("weatherData"), false);
+
+        // The fetch is retried until the station has weather data
+        ArgumentCaptor<Runnable> retry = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).schedule(retry.capture(), any(Instant.class));
+        when(weatherDataCache.getLatest(26242))
+                .thenReturn(new WeatherData(26242, "Tartu-Tõravere", 1D, 1D, "", now()));
+        retry.getValue().run();
+        verify(weatherDataImporter, times(2)).fetchAndSave();
+        verify(taskScheduler, times(1)).schedule(any(Runnable.class), any(Instant.class));
+        assertTrue(startupInitializer.isReady());
+        assertEquals(startupHealthIndicator.health().getStatus(), Status.UP);
+    }
+
+    @Test
+    void testInitialize_NotReadyWithWeatherDataFromBeforeRestart() {
+        when(weatherDataCache.getLatest(26242))
+                .thenReturn(new WeatherData(26242, "Tartu-Tõravere", 1D, 1D, "", now() - 3 * 86400L));
+        StartupHealthIndicator startupHealthIndicator = new StartupHealthIndicator(startupInitializer);
+
+        startupInitializer.initialize();
+        assertFalse(startupInitializer.isReady());
+        assertEquals(startupHealthIndicator.health().getDetails().get("weatherData"), false);
+
+        // Ready once the fetch brings the latest observation, and stays ready when it ages later on
+        ArgumentCaptor<Runnable> retry = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).schedule(retry.capture(), any(Instant.class));
+        when(weatherDataCache.getLatest(26242))
+                .thenReturn(new WeatherData(26242, "Tartu-Tõravere", 1D, 1D, "", now()));
+        retry.getValue().run();
+        assertTrue(startupInitializer.isReady());
+        when(weatherDataCache.getLatest(26242))
+                .thenReturn(new WeatherData(26242, "Tartu-Tõravere", 1D, 1D, "", now() - 3 * 86400L));
+        assertTrue(startupInitializer.isReady());
+    }
+
+    @Test
+    void testInitialize_RetriesFailedCacheLoad() {
+        when(weatherDataCache.reload()).thenThrow(new DataAccessResourceFailureException("Unavailable"));
+
+        startupInitializer.initialize();
+        assertFalse(startupInitializer.isCachesLoaded());
+        assertFalse(startupInitializer.isReady());
+        verify(weatherDataImporter, never()).fetchAndSave();
+        verify(taskScheduler).schedule(any(Runnable.class), any(Instant.class));
+    }
+}
@@ -0,0 +1,135 @@
+package kkadak.fujitsutask.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import kkadak.fujitsutask.cache.FeeMatrixCache;
+import kkadak.fujitsutask.cache.PhenomenonDictionary;
+import kkadak.fujitsutask.cache.WeatherDataCache;
+import kkadak.fujitsutask.cron.ImportPipeline;
+import kkadak.fujitsutask.cron.ObservationsClient;
+import kkadak.fujitsutask.cron.WeatherDataImporter;
+import kkadak.fujitsutask.cron.WeatherImportLease;
+import kkadak.fujitsutask.enums.VehicleType;
+import kkadak.fujitsutask.initializers.FeeRuleInitializer;
+import kkadak.fujitsutask.store.JpaWeatherDataStore;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+/**
+ * Counts the JDBC statements of the bulk write paths, every test runs without a surrounding transaction so the
+ * repositories commit as they do in the application
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BatchWriteTest {
+    @Autowired
+    private BaseFeeRuleRepository baseFeeRuleRepository;
+    @Autowired
+    private ExtraFeeRuleRepository extraFeeRuleRepository;
+    @Autowired
+    private ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository;
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+    @Autowired
+    private RulesVersionRepository rulesVersionRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private Environment environment;
+    @Mock
+    private FeeMatrixCache feeMatrixCache;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private TaskScheduler taskScheduler;
+    @Mock
+    private ObservationsClient observationsClient;
+    @Mock
+    private WeatherImportLease weatherImportLease;
+    @Mock
+    private WeatherDataCache weatherDataCache;
+    private Statistics statistics;
+
+    @SpringBootConfiguration
+    @EntityScan("kkadak.fujitsutask.model")
+    @EnableJpaRepositories("kkadak.fujitsutask.repository")
+    @Import(PhenomenonDictionary.class)
+    static class TestConfiguration {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        baseFeeRuleRepository.deleteAllInBatch();
+        extraFeeRuleRepository.deleteAllInBatch();
+        extraFeeRuleHistoryRepository.deleteAllInBatch();
+        weatherDataRepository.deleteAllInBatch();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void testInitializeDefaultRules_InsertsRulesInBatches() {
+        FeeRuleInitializer feeRuleInitializer = new FeeRuleInitializer(baseFeeRuleRepository, extraFeeRuleRepository,
+                extraFeeRuleHistoryRepository, rulesVersionRepository, eventPublisher, transactionManager);
+        long version = rulesVersionRepository.getVersion();
+        statistics.clear();
+        feeRuleInitializer.InitializeDefaultRules();
+
+        // Bulk move of the active rules to the history, a single identifier block and one insert batch per rule table,
+        // besides the increment and read of the rules version
+        assertEquals(statistics.getEntityInsertCount(), 35);
+        assertEquals(statistics.getPrepareStatementCount(), 7);
+
+        // Reset of existing rules issues the same statements regardless of the amount of active rules
+        statistics.clear();
+        feeRuleInitializer.InitializeDefaultRules();
+        assertEquals(statistics.getEntityInsertCount(), 35);
+        assertEquals(statistics.getPrepareStatementCount(), 7);
+        assertEquals(extraFeeRuleRepository.getRules(VehicleType.BIKE).size(), 24);
+        assertEquals(extraFeeRuleRepository.count(), 26L);
+        assertEquals(extraFeeRuleHistoryRepository.count(), 26L);
+        assertEquals(rulesVersionRepository.getVersion(), version + 2);
+    }
+
+    @Test
+    void testFetchAndSave_InsertsObservationsInBatch() throws IOException, InterruptedException {
+        when(observationsClient.fetch()).thenReturn(getClass().getResourceAsStream("/observations.xml"));
+        when(weatherImportLease.tryAcquire()).thenReturn(true);
+        ImportPipeline importPipeline = new ImportPipeline(new SimpleMeterRegistry(), environment);
+        try {
+            new WeatherDataImporter(new JpaWeatherDataStore(weatherDataRepository), taskScheduler, feeMatrixCache,
+                    observationsClient, weatherImportLease, weatherDataCache, importPipeline).fetchAndSave();
+        } finally {
+            importPipeline.shutdown();
+        }
+
+        // Imported station query, a single identifier block and one insert batch, plus the dictionary read and a
+        // sequence call and an insert for each of the two phenomena met for the first time
+        assertEquals(statistics.getEntityInsertCount(), 4);
+        assertEquals(statistics.getPrepareStatementCount(), 8);
+    }
+}
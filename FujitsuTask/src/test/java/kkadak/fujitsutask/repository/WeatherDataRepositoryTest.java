@@ -0,0 +1,94 @@
+package kkadak.fujitsutask.repository;
+
+import kkadak.fujitsutask.cache.PhenomenonDictionary;
+import kkadak.fujitsutask.model.WeatherData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+class WeatherDataRepositoryTest {
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @SpringBootConfiguration
+    @EntityScan("kkadak.fujitsutask.model")
+    @EnableJpaRepositories("kkadak.fujitsutask.repository")
+    @Import(PhenomenonDictionary.class)
+    static class TestConfiguration {
+    }
+
+    @Test
+    void testFindStationWmosWithTimestamp_ReturnsImportedStations() {
+        weatherDataRepository.saveAll(List.of(
+                new WeatherData(26038, "Tallinn-Harku", 1D, 1D, "", 100L),
+                new WeatherData(26242, "Tartu-Tõravere", 1D, 1D, "", 200L)));
+        assertEquals(weatherDataRepository.findStationWmosWithTimestamp(100L, List.of(26038, 26242, 41803)),
+                List.of(26038));
+    }
+
+    @Test
+    void testGetTopByStationWmoAndTimestampLessThanEqual_ReturnsMostRecentEntry() {
+        weatherDataRepository.saveAll(List.of(
+                new WeatherData(26038, "Tallinn-Harku", 1D, 1D, "", 100L),
+                new WeatherData(26038, "Tallinn-Harku", 2D, 1D, "", 200L),
+                new WeatherData(26038, "Tallinn-Harku", 3D, 1D, "", 300L),
+                new WeatherData(26242, "Tartu-Tõravere", 4D, 1D, "", 250L)));
+        assertEquals(weatherDataRepository
+                .getTopByStationWmoAndTimestampLessThanEqualOrderByTimestampDesc(26038, 250L).getAirTemp(), 2D);
+        assertNull(weatherDataRepository.getTopByStationWmoAndTimestampLessThanEqualOrderByTimestampDesc(26038, 50L));
+    }
+
+    @Test
+    void testFindByStationWmoAndTimestampBetween_ReturnsLimitedAscendingPage() {
+        weatherDataRepository.saveAll(List.of(
+                new WeatherData(26038, "Tallinn-Harku", 3D, 1D, "", 300L),
+                new WeatherData(26038, "Tallinn-Harku", 1D, 1D, "", 100L),
+                new WeatherData(26038, "Tallinn-Harku", 2D, 1D, "", 200L),
+                new WeatherData(26242, "Tartu-Tõravere", 4D, 1D, "", 150L)));
+        assertEquals(weatherDataRepository
+                .findByStationWmoAndTimestampBetweenOrderByTimestampAsc(26038, 100L, 300L, Limit.of(2)).stream()
+                .map(WeatherData::getTimestamp).toList(), List.of(100L, 200L));
+        assertEquals(weatherDataRepository.findStationWmos().size(), 2);
+    }
+
+    @Test
+    void testSave_StoresPhenomenonCode() {
+        weatherDataRepository.saveAllAndFlush(List.of(
+                new WeatherData(26038, "Tallinn-Harku", 1D, 1D, "Light  Snow shower", 100L),
+                new WeatherData(26242, "Tartu-Tõravere", 1D, 1D, "light snow shower", 100L),
+                new WeatherData(41803, "Pärnu", 1D, 1D, "Mist", 100L)));
+        entityManager.clear();
+
+        assertEquals(jdbcTemplate.queryForList("select distinct phenomenon_code from weather_data", Integer.class)
+                .size(), 2);
+        assertEquals(weatherDataRepository.getTopByStationWmoOrderByTimestampDesc(26038).getPhenomenon(),
+                "light snow shower");
+        assertEquals(weatherDataRepository.getTopByStationWmoOrderByTimestampDesc(41803).getPhenomenon(), "mist");
+    }
+
+    @Test
+    void testSave_RejectsDuplicateObservation() {
+        weatherDataRepository.saveAndFlush(new WeatherData(26038, "Tallinn-Harku", 1D, 1D, "", 100L));
+        assertThrows(DataIntegrityViolationException.class, () -> weatherDataRepository.saveAndFlush(
+                new WeatherData(26038, "Tallinn-Harku", 2D, 2D, "", 100L)));
+    }
+}
@@ -1,5 +1,8 @@
 package kkadak.fujitsutask.service;
 
+import kkadak.fujitsutask.cache.FeeMatrixCache;
+import kkadak.fujitsutask.cache.FeeRuleCache;
+import kkadak.fujitsutask.cache.WeatherDataCache;
 import kkadak.fujitsutask.enums.City;
 import kkadak.fujitsutask.enums.ExtraFeeRuleMetric;
 import kkadak.fujitsutask.enums.ExtraFeeRuleValueType;
@@ -7,19 +10,24 @@ import kkadak.fujitsutask.enums.VehicleType;
 import kkadak.fujitsutask.exceptions.DeliveryFeeCalculationException;
 import kkadak.fujitsutask.model.BaseFeeRule;
 import kkadak.fujitsutask.model.ExtraFeeRule;
+import kkadak.fujitsutask.model.FeeQuery;
+import kkadak.fujitsutask.model.FeeQuote;
 import kkadak.fujitsutask.model.WeatherData;
 import kkadak.fujitsutask.repository.BaseFeeRuleRepository;
+import kkadak.fujitsutask.repository.ExtraFeeRuleHistoryRepository;
 import kkadak.fujitsutask.repository.ExtraFeeRuleRepository;
+import kkadak.fujitsutask.repository.RulesVersionRepository;
 import kkadak.fujitsutask.repository.WeatherDataRepository;
+import kkadak.fujitsutask.store.JpaWeatherDataStore;
 import kkadak.fujitsutask.translators.WeatherStationTranslator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.ArrayList;
-import java.util.Optional;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
@@ -32,12 +40,24 @@ class DeliveryServiceImplTest {
     private BaseFeeRuleRepository baseFeeRuleRepository;
     @Mock
     private ExtraFeeRuleRepository extraFeeRuleRepository;
-    @InjectMocks
+    @Mock
+    private ExtraFeeRuleHistoryRepository extraFeeRuleHistoryRepository;
+    @Mock
+    private RulesVersionRepository rulesVersionRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    private FeeRuleCache feeRuleCache;
+    private WeatherDataCache weatherDataCache;
     private DeliveryServiceImpl deliveryService;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        feeRuleCache = new FeeRuleCache(baseFeeRuleRepository, extraFeeRuleRepository,
+                extraFeeRuleHistoryRepository, rulesVersionRepository, transactionManager);
+        weatherDataCache = new WeatherDataCache(new JpaWeatherDataStore(weatherDataRepository));
+        deliveryService = new DeliveryServiceImpl(new FeeMatrixCache(feeRuleCache, weatherDataCache), feeRuleCache,
+                weatherDataCache);
     }
 
     @Test
@@ -46,18 +66,21 @@ class DeliveryServiceImplTest {
                 () -> deliveryService.getDeliveryFee(City.UNKNOWN, VehicleType.CAR));
         assertThrowsExactly(DeliveryFeeCalculationException.class,
                 () -> deliveryService.getDeliveryFee(City.TARTU, VehicleType.UNKNOWN));
-        when(baseFeeRuleRepository
-                .findTopByCityAndVehicleTypeOrderByValidFromTimestampDesc(City.TALLINN, VehicleType.CAR))
-                .thenReturn(Optional.of(new BaseFeeRule(City.TALLINN, VehicleType.CAR, 5D)));
-        when(extraFeeRuleRepository.getRules(VehicleType.CAR)).thenReturn(new ArrayList<>() {{
+        when(baseFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(new ArrayList<>() {{
+            add(new BaseFeeRule(City.TALLINN, VehicleType.CAR, 5D));
+            add(new BaseFeeRule(City.TALLINN, VehicleType.CAR, 1D));
+        }});
+        when(extraFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(new ArrayList<>() {{
             add(new ExtraFeeRule(ExtraFeeRuleMetric.WINDSPEED, ExtraFeeRuleValueType.FROM, 5D, VehicleType.CAR, 3D));
             add(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.UNTIL, -5D, VehicleType.CAR, 2D));
             add(new ExtraFeeRule("testPhenomenon", VehicleType.CAR, 5D));
         }});
         when(weatherDataRepository
-                .getTopByStationWmoOrderByTimestampDesc(WeatherStationTranslator.getWmoOfCity(City.TALLINN)))
-                .thenReturn(new WeatherData(WeatherStationTranslator.getWmoOfCity(City.TALLINN), "Tallinn-Harku", -10D,
-                        10D, "testPhenomenon", 10L));
+                .findByStationWmoOrderByTimestampAsc(WeatherStationTranslator.getWmoOfCity(City.TALLINN)))
+                .thenReturn(List.of(new WeatherData(WeatherStationTranslator.getWmoOfCity(City.TALLINN),
+                        "Tallinn-Harku", -10D, 10D, "testPhenomenon", 10L)));
+        feeRuleCache.refresh();
+        weatherDataCache.reload();
         assertEquals(deliveryService.getDeliveryFee(City.TALLINN, VehicleType.CAR), 15D);
     }
 
@@ -69,24 +92,73 @@ class DeliveryServiceImplTest {
                 () -> deliveryService.getDeliveryFee(City.UNKNOWN, VehicleType.CAR, timestamp));
         assertThrowsExactly(DeliveryFeeCalculationException.class,
                 () -> deliveryService.getDeliveryFee(City.TARTU, VehicleType.UNKNOWN, timestamp));
-        when(baseFeeRuleRepository
-                .findTopByCityAndVehicleTypeAndValidFromTimestampLessThanEqualOrderByValidFromTimestampDesc(
-                        City.TALLINN, VehicleType.CAR, timestamp))
-                .thenReturn(Optional.of(new BaseFeeRule(City.TALLINN, VehicleType.CAR, 5D) {{
-                    setValidFromTimestamp(timestamp - 10);
-                }}));
-        when(extraFeeRuleRepository.getRules(VehicleType.CAR, timestamp)).thenReturn(new ArrayList<>() {{
+        when(baseFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(new ArrayList<>() {{
+            add(new BaseFeeRule(City.TALLINN, VehicleType.CAR, 1D) {{
+                setValidFromTimestamp(timestamp + 5);
+            }});
+            add(new BaseFeeRule(City.TALLINN, VehicleType.CAR, 5D) {{
+                setValidFromTimestamp(timestamp - 10);
+            }});
+        }});
+        when(extraFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(new ArrayList<>() {{
             add(new ExtraFeeRule(ExtraFeeRuleMetric.WINDSPEED, ExtraFeeRuleValueType.FROM, 5D, VehicleType.CAR, 3D));
             add(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.UNTIL, -5D, VehicleType.CAR, 2D));
             add(new ExtraFeeRule("testPhenomenon", VehicleType.CAR, 5D));
             forEach(rule -> rule.setValidFromTimestamp(timestamp - 10));
             forEach(rule -> rule.setValidUntilTimestamp(timestamp + 10));
+            add(new ExtraFeeRule("testPhenomenon", VehicleType.CAR, 50D) {{
+                setValidFromTimestamp(timestamp + 10);
+            }});
         }});
         when(weatherDataRepository
-                .getTopByStationWmoAndTimestampLessThanEqualOrderByTimestampDesc(
-                        WeatherStationTranslator.getWmoOfCity(City.TALLINN), timestamp))
-                .thenReturn(new WeatherData(WeatherStationTranslator.getWmoOfCity(City.TALLINN), "Tallinn-Harku", -10D,
-                        10D, "testPhenomenon", timestamp - 10));
+                .findByStationWmoOrderByTimestampAsc(WeatherStationTranslator.getWmoOfCity(City.TALLINN)))
+                .thenReturn(List.of(new WeatherData(WeatherStationTranslator.getWmoOfCity(City.TALLINN),
+                                "Tallinn-Harku", -10D, 10D, "testPhenomenon", timestamp - 10),
+                        new WeatherData(WeatherStationTranslator.getWmoOfCity(City.TALLINN), "Tallinn-Harku", 10D,
+                                1D, "", timestamp + 1)));
+        feeRuleCache.refresh();
+        weatherDataCache.reload();
         assertEquals(deliveryService.getDeliveryFee(City.TALLINN, VehicleType.CAR, timestamp), 15D);
     }
+
+    @Test
+    void testGetDeliveryFees_ReturnsFeesAndErrorsInOrder() {
+        long timestamp = 50L;
+
+        when(baseFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(new ArrayList<>() {{
+            add(new BaseFeeRule(City.TALLINN, VehicleType.CAR, 5D) {{
+                setValidFromTimestamp(timestamp - 30);
+            }});
+            add(new BaseFeeRule(City.TALLINN, VehicleType.BIKE, 2D) {{
+                setValidFromTimestamp(timestamp - 30);
+            }});
+        }});
+        when(extraFeeRuleRepository.findByOrderByValidFromTimestampDesc()).thenReturn(new ArrayList<>() {{
+            add(new ExtraFeeRule(ExtraFeeRuleMetric.AIRTEMP, ExtraFeeRuleValueType.UNTIL, -5D, VehicleType.BIKE, 1D) {{
+                setValidFromTimestamp(timestamp - 10);
+            }});
+        }});
+        when(weatherDataRepository
+                .findByStationWmoOrderByTimestampAsc(WeatherStationTranslator.getWmoOfCity(City.TALLINN)))
+                .thenReturn(List.of(new WeatherData(WeatherStationTranslator.getWmoOfCity(City.TALLINN),
+                        "Tallinn-Harku", -10D, 10D, "", timestamp - 10)));
+        feeRuleCache.refresh();
+        weatherDataCache.reload();
+
+        List<FeeQuote> quotes = deliveryService.getDeliveryFees(List.of(
+                new FeeQuery("Tallinn", "car", timestamp),
+                new FeeQuery("TLN", "bike", timestamp),
+                new FeeQuery("Tallinn", "bike", timestamp - 20),
+                new FeeQuery("Tartu", "car", timestamp),
+                new FeeQuery("a", "car", timestamp),
+                new FeeQuery("Tallinn", null, null),
+                new FeeQuery("Tallinn", "car", null)));
+        assertEquals(quotes.get(0).getFee(), 5D);
+        assertEquals(quotes.get(1).getFee(), 3D);
+        assertEquals(quotes.get(2).getError(), "No valid weather data recorded");
+        assertEquals(quotes.get(3).getError(), "Use of selected vehicle is not allowed in specified city");
+        assertEquals(quotes.get(4).getError(), "Unknown value for 'city' parameter");
+        assertEquals(quotes.get(5).getError(), "Specify 'vehicle' parameter");
+        assertEquals(quotes.get(6).getFee(), 5D);
+    }
 }
@@ -0,0 +1,63 @@
+package kkadak.fujitsutask.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kkadak.fujitsutask.model.FeeQuery;
+import kkadak.fujitsutask.model.FeeQuote;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FeeQueryStreamProcessorTest {
+    @Mock
+    private DeliveryService deliveryService;
+    private FeeQueryStreamProcessor processor;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        processor = new FeeQueryStreamProcessor(deliveryService, new ObjectMapper());
+        ReflectionTestUtils.setField(processor, "chunkSize", 2);
+
+        // Quotes the length of the city name so that the output can be matched to the input
+        when(deliveryService.getDeliveryFees(anyList())).thenAnswer(invocation -> {
+            List<FeeQuery> queries = invocation.getArgument(0);
+            return queries.stream().map(query -> query == null ? FeeQuote.ofError("Specify 'city' parameter")
+                    : FeeQuote.ofFee(query.getCity().length())).toList();
+        });
+    }
+
+    @Test
+    void testProcess_WritesQuoteLinePerQueryInOrder() throws IOException {
+        String input = """
+                {"city":"Tallinn","vehicle":"car"}
+
+                {"city":"TRT","vehicle":"bike","time":10}
+                not json
+                {"city":"Pärnu","vehicle":"scooter"}
+                """;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertEquals(processor.process(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output), 4L);
+        assertEquals(output.toString(StandardCharsets.UTF_8), """
+                {"fee":7.0}
+                {"fee":3.0}
+                {"error":"Malformed query"}
+                {"fee":5.0}
+                """);
+        verify(deliveryService, times(2)).getDeliveryFees(anyList());
+    }
+}
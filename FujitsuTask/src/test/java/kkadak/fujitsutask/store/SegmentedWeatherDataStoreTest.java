@@ -0,0 +1,128 @@
+package kkadak.fujitsutask.store;
+
+import kkadak.fujitsutask.model.WeatherData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SegmentedWeatherDataStoreTest {
+    @TempDir
+    private Path directory;
+
+    private SegmentedWeatherDataStore open(int segmentRecords) throws IOException {
+        return new SegmentedWeatherDataStore(directory.toString(), segmentRecords);
+    }
+
+    private static List<WeatherData> observations(long timestamp, double airTemp) {
+        return List.of(
+                new WeatherData(26038, "Tallinn-Harku", airTemp, 5D, "Clear", timestamp),
+                new WeatherData(26242, "Tartu-Tõravere", airTemp, 6D, "Light snow shower", timestamp));
+    }
+
+    @Test
+    void testSaveAll_ServesAsOfLookups() throws IOException {
+        try (SegmentedWeatherDataStore store = open(1024)) {
+            assertEquals(store.saveAll(observations(100L, 1D)).size(), 2);
+            assertEquals(store.saveAll(observations(200L, 2D)).size(), 2);
+
+            // Existing and older observations are skipped
+            assertEquals(store.saveAll(observations(200L, 3D)).size(), 0);
+            assertEquals(store.saveAll(observations(50L, 3D)).size(), 0);
+
+            WeatherData weatherData = store.getAsOf(26242, 150L);
+            assertEquals(weatherData.getAirTemp(), 1D);
+            assertEquals(weatherData.getStationName(), "Tartu-Tõravere");
+            assertEquals(weatherData.getPhenomenon(), "Light snow shower");
+            assertEquals(store.getAsOf(26038, 200L).getTimestamp(), 200L);
+            assertNull(store.getAsOf(26038, 99L));
+            assertNull(store.getAsOf(41803, 200L));
+            assertEquals(store.findStationWmosWithTimestamp(200L, List.of(26038, 41803)), List.of(26038));
+            assertEquals(store.findByStationWmoOrderByTimestampAsc(26038).stream().map(WeatherData::getTimestamp)
+                    .toList(), List.of(100L, 200L));
+        }
+    }
+
+    @Test
+    void testSaveAll_RollsOverSegments() throws IOException {
+        try (SegmentedWeatherDataStore store = open(3)) {
+            for (long timestamp = 1; timestamp <= 5; timestamp++) store.saveAll(observations(timestamp, timestamp));
+        }
+
+        // Reopened with a different capacity, the existing segments keep theirs
+        try (SegmentedWeatherDataStore store = open(100)) {
+            assertEquals(store.findByStationWmoOrderByTimestampAsc(26242).stream().map(WeatherData::getId).toList(),
+                    List.of(2L, 4L, 6L, 8L, 10L));
+            assertEquals(store.getAsOf(26038, 4L).getAirTemp(), 4D);
+            assertEquals(store.getAsOf(26242, 1000L).getAirTemp(), 5D);
+            store.saveAll(observations(6L, 6D));
+            assertEquals(store.getAsOf(26242, 6L).getId(), 12L);
+        }
+        try (var files = Files.list(directory)) {
+            assertEquals(files.filter(file -> file.toString().endsWith(".log")).count(), 4L);
+        }
+    }
+
+    @Test
+    void testGetAsOf_ServesStationWhichStoppedReporting() throws IOException {
+        try (SegmentedWeatherDataStore store = open(3)) {
+            store.saveAll(observations(1L, 1D));
+            for (long timestamp = 2; timestamp <= 10; timestamp++) {
+                store.saveAll(List.of(new WeatherData(26038, "Tallinn-Harku", timestamp, 5D, "Clear", timestamp)));
+                if (timestamp == 5) store.saveAll(List.of(new WeatherData(41803, "Pärnu", 0D, 5D, "Clear", 5L)));
+            }
+            store.saveAll(observations(11L, 11D).subList(0, 1));
+
+            assertEquals(store.getAsOf(26242, 10L).getAirTemp(), 1D);
+            assertEquals(store.findNewerThan(26242, 1L), List.of());
+            assertEquals(store.findNewerThan(26038, 9L).stream().map(WeatherData::getTimestamp).toList(),
+                    List.of(10L, 11L));
+            assertNull(store.getAsOf(41803, 4L));
+        }
+
+        // The positions of the last records are restored when the log is reopened
+        try (SegmentedWeatherDataStore store = open(3)) {
+            assertEquals(store.getAsOf(26242, 1000L).getAirTemp(), 1D);
+            assertEquals(store.getAsOf(26038, 7L).getAirTemp(), 7D);
+            assertEquals(store.findNewerThan(41803, 0L).size(), 1);
+            assertEquals(store.findByStationWmoOrderByTimestampAsc(26038).size(), 11);
+        }
+    }
+
+    @Test
+    void testOpen_RecoversTornSegment() throws IOException {
+        try (SegmentedWeatherDataStore store = open(1024)) {
+            store.saveAll(observations(100L, 1D));
+            store.saveAll(observations(200L, 2D));
+        }
+
+        // Tear the last record of the segment and the last line of the dictionary
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("segment-0000000000.log").toFile(),
+                "rw")) {
+            file.seek(LogSegment.HEADER_SIZE + 3L * LogSegment.RECORD_SIZE + 16);
+            file.writeDouble(-40D);
+        }
+        Files.writeString(directory.resolve("dictionary.txt"), "Torn", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        try (SegmentedWeatherDataStore store = open(1024)) {
+            assertEquals(store.getAsOf(26242, 200L).getTimestamp(), 100L);
+            assertEquals(store.getAsOf(26038, 200L).getTimestamp(), 200L);
+            assertEquals(store.saveAll(observations(200L, 2D)).size(), 1);
+            assertEquals(store.saveAll(List.of(new WeatherData(26038, "Tallinn-Harku", 1D, 1D, "Mist", 300L)))
+                    .size(), 1);
+            assertEquals(store.getAsOf(26038, 300L).getPhenomenon(), "Mist");
+        }
+        assertFalse(Files.readString(directory.resolve("dictionary.txt")).contains("Torn"));
+    }
+}
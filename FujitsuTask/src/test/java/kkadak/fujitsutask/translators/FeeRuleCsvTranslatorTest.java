@@ -0,0 +1,39 @@
+package kkadak.fujitsutask.translators;
+
+import kkadak.fujitsutask.model.FeeRuleDefinition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+
+class FeeRuleCsvTranslatorTest {
+
+    @Test
+    void testParse() {
+        List<FeeRuleDefinition> definitions = FeeRuleCsvTranslator.parse("""
+                vehicle, type, metric, value, amount, city
+                car, base, , , 3.5, Tallinn
+
+                bike, until, airtemp, -10, 1,
+                bike, pattern, , glaze|hail, forbid
+                """);
+
+        assertEquals(definitions.size(), 3);
+        assertEquals(definitions.get(0).getType(), "base");
+        assertEquals(definitions.get(0).getCity(), "Tallinn");
+        assertNull(definitions.get(0).getMetric());
+        assertEquals(definitions.get(1).getValue(), "-10");
+        assertEquals(definitions.get(1).getVehicle(), "bike");
+        assertEquals(definitions.get(2).getValue(), "glaze|hail");
+        assertEquals(definitions.get(2).getAmount(), "forbid");
+        assertNull(definitions.get(2).getCity());
+    }
+
+    @Test
+    void testParse_ThrowsExceptionForUnknownColumn() {
+        assertThrowsExactly(IllegalArgumentException.class, () -> FeeRuleCsvTranslator.parse("type,fee\nbase,1"));
+    }
+}
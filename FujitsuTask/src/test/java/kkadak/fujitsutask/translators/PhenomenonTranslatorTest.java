@@ -0,0 +1,33 @@
+package kkadak.fujitsutask.translators;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PhenomenonTranslatorTest {
+
+    @Test
+    void testNormalize() {
+        assertEquals(PhenomenonTranslator.normalize("Light snow shower"), "light snow shower");
+        assertEquals(PhenomenonTranslator.normalize("  Light\tSNOW   shower\n"), "light snow shower");
+        assertEquals(PhenomenonTranslator.normalize(" "), "");
+        assertEquals(PhenomenonTranslator.normalize(""), "");
+        assertNull(PhenomenonTranslator.normalize(null));
+    }
+
+    @Test
+    void testNormalizePattern() {
+        assertEquals(PhenomenonTranslator.normalizePattern(" Glaze | HAIL||thunder "), "glaze|hail|thunder");
+        assertEquals(PhenomenonTranslator.normalizePattern("Light  snow"), "light snow");
+        assertEquals(PhenomenonTranslator.normalizePattern(" | "), "");
+        assertNull(PhenomenonTranslator.normalizePattern(null));
+    }
+
+    @Test
+    void testNormalize_ReturnsNormalizedPhenomenonAsIs() {
+        String phenomenon = "light snow shower";
+        assertSame(PhenomenonTranslator.normalize(phenomenon), phenomenon);
+    }
+}
@@ -57,6 +57,7 @@ class StringEnumTranslatorTest {
         assertEquals(StringEnumTranslator.getValueTypeFromStr("from"), ExtraFeeRuleValueType.FROM);
         assertEquals(StringEnumTranslator.getValueTypeFromStr("until"), ExtraFeeRuleValueType.UNTIL);
         assertEquals(StringEnumTranslator.getValueTypeFromStr("phenomenon"), ExtraFeeRuleValueType.PHENOMENON);
+        assertEquals(StringEnumTranslator.getValueTypeFromStr("Pattern"), ExtraFeeRuleValueType.PATTERN);
         assertEquals(StringEnumTranslator.getValueTypeFromStr("a"), ExtraFeeRuleValueType.UNKNOWN);
         assertEquals(StringEnumTranslator.getValueTypeFromStr(null), ExtraFeeRuleValueType.UNKNOWN);
     }